@@ -0,0 +1,108 @@
+package com.mapr.grafana.plugin.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    public static final String TARGET_QUERY_EXECUTOR = "targetQueryExecutor";
+    public static final String QUERY_IO_EXECUTOR = "queryIoExecutor";
+    public static final String TIME_SLICE_SCAN_EXECUTOR = "timeSliceScanExecutor";
+    public static final String SHARED_SCAN_EXECUTOR = "sharedScanExecutor";
+
+    /**
+     * Creates bounded executor, which is used to query targets of a single Grafana request concurrently. When both
+     * pool and queue are exhausted, target is rejected and skipped from the response, since the target queried by the
+     * calling thread would escape the request timeout.
+     *
+     * @param poolSize      maximum number of targets, which are queried concurrently.
+     * @param queueCapacity maximum number of targets, which are waiting for a free thread.
+     * @return target query executor.
+     */
+    @Bean(name = TARGET_QUERY_EXECUTOR)
+    public ExecutorService targetQueryExecutor(@Value("${query.target.pool-size:8}") int poolSize,
+                                               @Value("${query.target.queue-capacity:100}") int queueCapacity) {
+
+        return newBoundedExecutor("target-query-", poolSize, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates bounded executor, which performs whole Grafana requests when '/query' endpoint works in asynchronous
+     * mode, so servlet threads are released right after the request is accepted. When both pool and queue are
+     * exhausted, request is rejected instead of being performed by servlet thread.
+     *
+     * @param poolSize      maximum number of requests, which are performed concurrently.
+     * @param queueCapacity maximum number of requests, which are waiting for a free thread.
+     * @return query I/O executor.
+     */
+    @Bean(name = QUERY_IO_EXECUTOR)
+    @ConditionalOnProperty(name = "query.async.enabled", havingValue = "true")
+    public ExecutorService queryIoExecutor(@Value("${query.async.pool-size:32}") int poolSize,
+                                           @Value("${query.async.queue-capacity:500}") int queueCapacity) {
+
+        return newBoundedExecutor("query-io-", poolSize, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates bounded executor, which scans time slices of a single target concurrently. It is separate from the
+     * target query executor, so targets never wait for slices queued behind other targets. When both pool and queue
+     * are exhausted, slice is rejected and scanned by the target thread once the slices before it are consumed.
+     *
+     * @param poolSize      maximum number of slices, which are scanned concurrently.
+     * @param queueCapacity maximum number of slices, which are waiting for a free thread.
+     * @return time slice scan executor.
+     */
+    @Bean(name = TIME_SLICE_SCAN_EXECUTOR)
+    public ExecutorService timeSliceScanExecutor(@Value("${query.slicing.pool-size:16}") int poolSize,
+                                                 @Value("${query.slicing.queue-capacity:200}") int queueCapacity) {
+
+        return newBoundedExecutor("time-slice-scan-", poolSize, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates bounded executor, which performs the scans shared by the concurrent targets of the same query. Targets
+     * wait for the shared scan rather than perform it, so the target, which exceeded its request timeout, is detached
+     * without cancelling the scan of the other targets. When both pool and queue are exhausted, scan is rejected and
+     * performed by the target thread.
+     *
+     * @param poolSize      maximum number of scans, which are performed concurrently.
+     * @param queueCapacity maximum number of scans, which are waiting for a free thread.
+     * @return shared scan executor.
+     */
+    @Bean(name = SHARED_SCAN_EXECUTOR)
+    public ExecutorService sharedScanExecutor(@Value("${query.shared-scan.pool-size:16}") int poolSize,
+                                              @Value("${query.shared-scan.queue-capacity:100}") int queueCapacity) {
+
+        return newBoundedExecutor("shared-scan-", poolSize, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ExecutorService newBoundedExecutor(String threadNamePrefix, int poolSize, int queueCapacity,
+                                                      RejectedExecutionHandler rejectedExecutionHandler) {
+
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), daemonThreadFactory(threadNamePrefix),
+                rejectedExecutionHandler);
+    }
+
+    private static ThreadFactory daemonThreadFactory(String threadNamePrefix) {
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -62,6 +62,39 @@ public class JacksonConfig {
         }
     }
 
+    /**
+     * Custom serializer for time series, which writes datapoints straight from the bucket arrays of the series without
+     * creating {@link AbstractGrafanaTimeSeries.Datapoint} instances. Example:
+     * {"target": "likes", "datapoints": [[134.5, 1450754220000], [12.0, 1450754280000]], "meta": {...}}.
+     */
+    private class TimeSeriesSerializer extends JsonSerializer<AbstractGrafanaTimeSeries> {
+
+        @Override
+        public void serialize(AbstractGrafanaTimeSeries series, JsonGenerator jsonGenerator,
+                              SerializerProvider serializerProvider) throws IOException {
+
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeStringField("target", series.getTarget());
+
+            jsonGenerator.writeArrayFieldStart("datapoints");
+            for (int slot = 0; slot < series.getBucketCount(); slot++) {
+                if (series.hasDatapoint(slot)) {
+                    jsonGenerator.writeStartArray();
+                    jsonGenerator.writeNumber(series.getBucketValue(slot));
+                    jsonGenerator.writeNumber(series.getDatapointTimestamp(slot));
+                    jsonGenerator.writeEndArray();
+                }
+            }
+            jsonGenerator.writeEndArray();
+
+            if (series.getMeta() != null) {
+                serializerProvider.defaultSerializeField("meta", series.getMeta(), jsonGenerator);
+            }
+
+            jsonGenerator.writeEndObject();
+        }
+    }
+
     @Bean
     public Jackson2ObjectMapperBuilder objectMapperBuilder() {
 
@@ -78,6 +111,8 @@ public class JacksonConfig {
 
         builder.serializerByType(AbstractGrafanaTimeSeries.Datapoint.class, new DatapointSerializer());
 
+        builder.serializerByType(AbstractGrafanaTimeSeries.class, new TimeSeriesSerializer());
+
         return builder;
     }
 
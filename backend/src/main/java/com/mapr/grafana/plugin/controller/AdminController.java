@@ -0,0 +1,45 @@
+package com.mapr.grafana.plugin.controller;
+
+import com.mapr.grafana.plugin.service.MapRDBService;
+import com.mapr.grafana.plugin.service.impl.TargetResultCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Administrative endpoints, which allow to inspect the state of the plugin backend. Unlike the datasource endpoints,
+ * they do not allow cross-origin requests, so pages opened by Grafana users can not flush the cache.
+ */
+@RestController
+public class AdminController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminController.class);
+
+    private final MapRDBService mapRDBService;
+    private final TargetResultCache resultCache;
+
+    @Autowired
+    public AdminController(MapRDBService mapRDBService, TargetResultCache resultCache) {
+        this.mapRDBService = mapRDBService;
+        this.resultCache = resultCache;
+    }
+
+    @GetMapping("/admin/stats")
+    public Map<String, Long> statistics() {
+        return mapRDBService.statistics();
+    }
+
+    @DeleteMapping("/admin/cache")
+    public ResponseEntity flushCache() {
+        log.debug("Flush cache request");
+        resultCache.flush();
+        return ResponseEntity.noContent().build();
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.mapr.grafana.plugin.controller;
+
+import com.mapr.grafana.plugin.config.ExecutorConfig;
+import com.mapr.grafana.plugin.model.GrafanaMetrics;
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.service.MapRDBService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.validation.Valid;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Handles 'query' requests asynchronously. Request is handed over to the dedicated query I/O executor, so the servlet
+ * thread is released right away and is able to serve other requests while MapR-DB is scanned. Enabled when
+ * 'query.async.enabled' property is set to 'true'.
+ *
+ * @see QueryController
+ */
+@CrossOrigin
+@RestController
+@ConditionalOnProperty(name = "query.async.enabled", havingValue = "true")
+public class AsyncQueryController {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncQueryController.class);
+
+    private final MapRDBService mapRDBService;
+    private final ExecutorService queryIoExecutor;
+    private final long timeoutMs;
+
+    @Autowired
+    public AsyncQueryController(MapRDBService mapRDBService,
+                                @Qualifier(ExecutorConfig.QUERY_IO_EXECUTOR) ExecutorService queryIoExecutor,
+                                @Value("${query.async.timeout-ms:35000}") long timeoutMs) {
+
+        this.mapRDBService = mapRDBService;
+        this.queryIoExecutor = queryIoExecutor;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @PostMapping("/query")
+    public DeferredResult<Set<GrafanaMetrics>> query(@Valid @RequestBody GrafanaQueryRequest queryRequest) {
+
+        log.debug("Grafana async query request: {}", queryRequest);
+        DeferredResult<Set<GrafanaMetrics>> result = new DeferredResult<>(timeoutMs);
+        result.onTimeout(() -> {
+            log.warn("Grafana query request was not completed within {} ms: {}", timeoutMs, queryRequest);
+            result.setErrorResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+        });
+
+        try {
+            CompletableFuture.supplyAsync(() -> mapRDBService.query(queryRequest), queryIoExecutor)
+                    .whenComplete((metrics, throwable) -> {
+                        if (throwable != null) {
+                            result.setErrorResult(throwable.getCause() != null ? throwable.getCause() : throwable);
+                        } else {
+                            result.setResult(metrics);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            log.warn("Query I/O executor is saturated. Grafana query request is rejected: {}", queryRequest);
+            result.setErrorResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+
+        return result;
+    }
+}
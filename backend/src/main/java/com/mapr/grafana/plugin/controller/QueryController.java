@@ -6,6 +6,7 @@ import com.mapr.grafana.plugin.service.MapRDBService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -15,10 +16,14 @@ import javax.validation.Valid;
 import java.util.Set;
 
 /**
- * Handles 'query' requests and returns metrics based on input.
+ * Handles 'query' requests and returns metrics based on input. Request is performed by the servlet thread, which is
+ * blocked until all of the targets are queried. Enabled unless 'query.async.enabled' property is set to 'true'.
+ *
+ * @see AsyncQueryController
  */
 @CrossOrigin
 @RestController
+@ConditionalOnProperty(name = "query.async.enabled", havingValue = "false", matchIfMissing = true)
 public class QueryController {
 
     private static final Logger log = LoggerFactory.getLogger(QueryController.class);
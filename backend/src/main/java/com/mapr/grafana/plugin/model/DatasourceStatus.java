@@ -16,6 +16,12 @@ public class DatasourceStatus {
 
     private String[] errors;
 
+    @JsonProperty("last_probe_timestamp")
+    private Long lastProbeTimestamp;
+
+    @JsonProperty("last_probe_latency_ms")
+    private Long lastProbeLatencyMs;
+
     private DatasourceStatus(boolean ok, String... errors) {
         this.ok = ok;
         this.errors = errors;
@@ -37,6 +43,19 @@ public class DatasourceStatus {
         return error(t.getMessage());
     }
 
+    /**
+     * Records when the status was determined and how long it took.
+     *
+     * @param timestamp epoch millis of the probe.
+     * @param latencyMs duration of the probe.
+     * @return this status.
+     */
+    public DatasourceStatus probedAt(long timestamp, long latencyMs) {
+        this.lastProbeTimestamp = timestamp;
+        this.lastProbeLatencyMs = latencyMs;
+        return this;
+    }
+
     public boolean isOk() {
         return ok;
     }
@@ -53,11 +72,29 @@ public class DatasourceStatus {
         this.errors = errors;
     }
 
+    public Long getLastProbeTimestamp() {
+        return lastProbeTimestamp;
+    }
+
+    public void setLastProbeTimestamp(Long lastProbeTimestamp) {
+        this.lastProbeTimestamp = lastProbeTimestamp;
+    }
+
+    public Long getLastProbeLatencyMs() {
+        return lastProbeLatencyMs;
+    }
+
+    public void setLastProbeLatencyMs(Long lastProbeLatencyMs) {
+        this.lastProbeLatencyMs = lastProbeLatencyMs;
+    }
+
     @Override
     public String toString() {
         return "DatasourceStatus{" +
                 "ok=" + ok +
                 ", error=" + Arrays.toString(errors) +
+                ", lastProbeTimestamp=" + lastProbeTimestamp +
+                ", lastProbeLatencyMs=" + lastProbeLatencyMs +
                 '}';
     }
 }
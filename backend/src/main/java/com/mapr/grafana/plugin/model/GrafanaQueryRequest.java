@@ -34,6 +34,33 @@ public class GrafanaQueryRequest {
             this.to = to;
         }
 
+        /**
+         * Returns copy of the range, which is expanded to the boundaries of intervals of the specified length. Interval
+         * boundaries are multiples of interval length since the epoch.
+         *
+         * @param intervalMs interval length.
+         * @return aligned copy of the range.
+         */
+        public Range alignedTo(long intervalMs) {
+
+            Range aligned = new Range();
+            aligned.from = from;
+            aligned.to = to;
+            if (intervalMs <= 0) {
+                return aligned;
+            }
+
+            if (from != null) {
+                aligned.from = new Date(Math.floorDiv(from.getTime(), intervalMs) * intervalMs);
+            }
+
+            if (to != null) {
+                aligned.to = new Date(-Math.floorDiv(-to.getTime(), intervalMs) * intervalMs);
+            }
+
+            return aligned;
+        }
+
         @Override
         public String toString() {
             return "Range{" +
@@ -16,9 +16,22 @@ public class GrafanaQueryTarget {
     public static final String FIELD_MIN_METRIC = "Field min";
     public static final String FIELD_MAX_METRIC = "Field max";
     public static final String FIELD_AVG_METRIC = "Field avg";
+    public static final String FIELD_P50_METRIC = "Field p50";
+    public static final String FIELD_P95_METRIC = "Field p95";
+    public static final String FIELD_P99_METRIC = "Field p99";
+    public static final String FIELD_PERCENTILE_METRIC = "Field percentile";
+    public static final String FIELD_DISTINCT_COUNT_METRIC = "Field distinct count";
+    public static final String FIELD_HISTOGRAM_METRIC = "Field histogram";
+
+    public static final String NO_DOWNSAMPLING = "None";
+    public static final String LTTB_DOWNSAMPLING = "LTTB";
+
+    public static final String LINEAR_HISTOGRAM_SCALE = "Linear";
+    public static final String LOG_HISTOGRAM_SCALE = "Log";
 
     public static final String RAW_DOCUMENT_TYPE = "Raw Document";
     public static final String TIME_SERIES_TYPE = "Timeseries";
+    public static final String TOP_VALUES_TYPE = "Top values";
 
     @NotNull
     private String refId;
@@ -56,6 +69,63 @@ public class GrafanaQueryTarget {
 
     private String metric;
 
+    /**
+     * Name of the secondary index, which is hinted to the query, or 'auto' to choose the index, which covers the time
+     * field and the fields of the condition.
+     */
+    private String indexHint;
+
+    /**
+     * Whether the response should contain the query plans, which were used to query the target.
+     */
+    private boolean explain;
+
+    /**
+     * Percentile of the 'Field percentile' metric, from 0 to 100.
+     */
+    private Double percentile;
+
+    /**
+     * Downsampling of the 'Field value' metric: 'None' keeps value of the earliest document per interval, 'LTTB' keeps
+     * at most 'maxDataPoints' of the request, which are chosen to preserve peaks of the series.
+     */
+    private String downsampling;
+
+    /**
+     * Field path, which values split the time series target into the series per value.
+     */
+    private String groupBy;
+
+    /**
+     * Maximum number of the series per value of the 'groupBy' field, which are chosen by the number of values. Other
+     * values are aggregated into the single series.
+     */
+    private Integer groupLimit;
+
+    /**
+     * Number of the most frequent values of the metric field, which are queried by the 'Top values' target.
+     */
+    private Integer topK;
+
+    /**
+     * Scale of the bins of the 'Field histogram' metric: 'Linear' bins have the same width, 'Log' bins have the same
+     * ratio of bounds.
+     */
+    private String histogramScale;
+
+    /**
+     * Number of the bins of the 'Field histogram' metric.
+     */
+    private Integer histogramBins;
+
+    /**
+     * Range of the bins of the 'Field histogram' metric. Values outside of the range are counted in the first or the
+     * last bin.
+     */
+    private Double histogramMin;
+
+    private Double histogramMax;
+
     public String getRefId() {
         return refId;
     }
@@ -136,6 +206,94 @@ public class GrafanaQueryTarget {
         this.metric = metric;
     }
 
+    public String getIndexHint() {
+        return indexHint;
+    }
+
+    public void setIndexHint(String indexHint) {
+        this.indexHint = indexHint;
+    }
+
+    public boolean isExplain() {
+        return explain;
+    }
+
+    public void setExplain(boolean explain) {
+        this.explain = explain;
+    }
+
+    public Double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(Double percentile) {
+        this.percentile = percentile;
+    }
+
+    public String getDownsampling() {
+        return downsampling;
+    }
+
+    public void setDownsampling(String downsampling) {
+        this.downsampling = downsampling;
+    }
+
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    public void setGroupBy(String groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public Integer getGroupLimit() {
+        return groupLimit;
+    }
+
+    public void setGroupLimit(Integer groupLimit) {
+        this.groupLimit = groupLimit;
+    }
+
+    public Integer getTopK() {
+        return topK;
+    }
+
+    public void setTopK(Integer topK) {
+        this.topK = topK;
+    }
+
+    public String getHistogramScale() {
+        return histogramScale;
+    }
+
+    public void setHistogramScale(String histogramScale) {
+        this.histogramScale = histogramScale;
+    }
+
+    public Integer getHistogramBins() {
+        return histogramBins;
+    }
+
+    public void setHistogramBins(Integer histogramBins) {
+        this.histogramBins = histogramBins;
+    }
+
+    public Double getHistogramMin() {
+        return histogramMin;
+    }
+
+    public void setHistogramMin(Double histogramMin) {
+        this.histogramMin = histogramMin;
+    }
+
+    public Double getHistogramMax() {
+        return histogramMax;
+    }
+
+    public void setHistogramMax(Double histogramMax) {
+        this.histogramMax = histogramMax;
+    }
+
     @Override
     public String toString() {
         return "GrafanaQueryTarget{" +
@@ -149,6 +307,17 @@ public class GrafanaQueryTarget {
                 ", target='" + target + '\'' +
                 ", metricField='" + metricField + '\'' +
                 ", metric='" + metric + '\'' +
+                ", indexHint='" + indexHint + '\'' +
+                ", explain=" + explain +
+                ", percentile=" + percentile +
+                ", downsampling='" + downsampling + '\'' +
+                ", groupBy='" + groupBy + '\'' +
+                ", groupLimit=" + groupLimit +
+                ", topK=" + topK +
+                ", histogramScale='" + histogramScale + '\'' +
+                ", histogramBins=" + histogramBins +
+                ", histogramMin=" + histogramMin +
+                ", histogramMax=" + histogramMax +
                 '}';
     }
 }
@@ -1,6 +1,7 @@
 package com.mapr.grafana.plugin.model;
 
 import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -12,6 +13,9 @@ public class GrafanaRawDocuments<T> implements GrafanaMetrics {
 
     private Set<T> datapoints = new HashSet<>();
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private QueryExplanation explain;
+
     @JsonGetter("type")
     public String getType() {
         return "docs";
@@ -29,11 +33,20 @@ public class GrafanaRawDocuments<T> implements GrafanaMetrics {
         this.datapoints.add(datapoint);
     }
 
+    public QueryExplanation getExplain() {
+        return explain;
+    }
+
+    public void setExplain(QueryExplanation explain) {
+        this.explain = explain;
+    }
+
     @Override
     public String toString() {
         return "GrafanaRawDocuments{" +
                 "type=" + getType() +
                 "datapoints=" + datapoints +
+                ", explain=" + explain +
                 '}';
     }
 }
@@ -0,0 +1,165 @@
+package com.mapr.grafana.plugin.model;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mapr.grafana.plugin.model.timeseries.TimeSeriesMeta;
+import com.mapr.grafana.plugin.util.FieldExtractor;
+import com.mapr.grafana.plugin.util.SpaceSavingSketch;
+import org.ojai.Document;
+import org.ojai.FieldPath;
+import org.ojai.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents the most frequent values of the field as Grafana table of the value, its estimated count and the error of
+ * the count. Values are counted by {@link SpaceSavingSketch}, so memory does not depend on the number of distinct
+ * values. Elements of the array fields, such as hashtags, are counted separately, keyed the same way as the scalar
+ * values, see {@link FieldExtractor#key(Value)}.
+ */
+public class GrafanaTopValues implements GrafanaMetrics {
+
+    /**
+     * Number of counters of the sketch per requested value. Count error is bounded by
+     * <code>total / (COUNTERS_PER_VALUE * k)</code>.
+     */
+    public static final int COUNTERS_PER_VALUE = 10;
+
+    private final String fieldPath;
+    private final FieldPath path;
+    private final int k;
+    private final SpaceSavingSketch sketch;
+
+    /**
+     * Paths of the array elements of the field, which are parsed once per index.
+     */
+    private final List<FieldPath> elementPaths = new ArrayList<>();
+    private long skippedDocuments;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private TimeSeriesMeta meta;
+
+    /**
+     * @param fieldPath path of the counted field.
+     * @param k         number of the top values.
+     */
+    public GrafanaTopValues(String fieldPath, int k) {
+        this.fieldPath = fieldPath;
+        this.path = FieldPath.parseFrom(fieldPath);
+        this.k = k;
+        this.sketch = new SpaceSavingSketch(COUNTERS_PER_VALUE * k);
+    }
+
+    /**
+     * Counts the values of the field of the document. Documents without the field are skipped.
+     */
+    public void addDocument(Document document) {
+
+        Value value = document.getValue(path);
+        if (value == null) {
+            skippedDocuments++;
+            return;
+        }
+
+        if (value.getType() != Value.Type.ARRAY) {
+            sketch.add(FieldExtractor.key(value));
+            return;
+        }
+
+        int size = value.getList().size();
+        for (int i = 0; i < size; i++) {
+            Value element = document.getValue(elementPath(i));
+            if (element != null) {
+                sketch.add(FieldExtractor.key(element));
+            }
+        }
+    }
+
+    private FieldPath elementPath(int index) {
+        while (elementPaths.size() <= index) {
+            elementPaths.add(FieldPath.parseFrom(fieldPath + "[" + elementPaths.size() + "]"));
+        }
+        return elementPaths.get(index);
+    }
+
+    @JsonGetter("type")
+    public String getType() {
+        return "table";
+    }
+
+    public List<Column> getColumns() {
+        return Arrays.asList(new Column(fieldPath, "string"), new Column("Count", "number"),
+                new Column("Error", "number"));
+    }
+
+    public List<List<Object>> getRows() {
+
+        List<List<Object>> rows = new ArrayList<>();
+        for (SpaceSavingSketch.Counter counter : sketch.top(k)) {
+            rows.add(Arrays.asList(counter.getValue(), counter.getCount(), counter.getError()));
+        }
+
+        return rows;
+    }
+
+    public TimeSeriesMeta getMeta() {
+        return meta;
+    }
+
+    public void setMeta(TimeSeriesMeta meta) {
+        this.meta = meta;
+    }
+
+    @JsonIgnore
+    public boolean isTruncated() {
+        return meta != null && meta.isTruncated();
+    }
+
+    /**
+     * Returns number of documents, which were skipped since they had no counted field.
+     */
+    @JsonIgnore
+    public long getSkippedDocuments() {
+        return skippedDocuments;
+    }
+
+    /**
+     * Returns approximate heap size of the counters, which is used to bound the caches.
+     */
+    @JsonIgnore
+    public long getSizeBytes() {
+        return (long) sketch.getCapacity() * 64;
+    }
+
+    public static class Column {
+
+        private final String text;
+        private final String type;
+
+        public Column(String text, String type) {
+            this.text = text;
+            this.type = type;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GrafanaTopValues{" +
+                "fieldPath='" + fieldPath + '\'' +
+                ", k=" + k +
+                ", sketch=" + sketch +
+                ", meta=" + meta +
+                '}';
+    }
+}
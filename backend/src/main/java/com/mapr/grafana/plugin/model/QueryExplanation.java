@@ -0,0 +1,41 @@
+package com.mapr.grafana.plugin.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * Describes how the target was queried. Contains the index, which was hinted to the optimizer, and the plans reported
+ * by MapR-DB for each of the queries of the target, such as the slices of the time range.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryExplanation {
+
+    @JsonProperty("index_hint")
+    private final String indexHint;
+
+    private final List<JsonNode> plans;
+
+    public QueryExplanation(String indexHint, List<JsonNode> plans) {
+        this.indexHint = indexHint;
+        this.plans = plans;
+    }
+
+    public String getIndexHint() {
+        return indexHint;
+    }
+
+    public List<JsonNode> getPlans() {
+        return plans;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryExplanation{" +
+                "indexHint='" + indexHint + '\'' +
+                ", plans=" + plans +
+                '}';
+    }
+}
@@ -1,16 +1,22 @@
 package com.mapr.grafana.plugin.model.timeseries;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mapr.grafana.plugin.util.FieldExtractor;
+import com.mapr.grafana.plugin.util.DocumentReaderExtractor;
 import org.ojai.Document;
-import org.ojai.types.ODate;
-import org.ojai.types.OTime;
-import org.ojai.types.OTimestamp;
+import org.ojai.DocumentReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
 
 /**
- * Represents abstract time series metrics.
+ * Represents abstract time series metrics. Datapoints are kept in primitive arrays of buckets, which are aligned to
+ * the epoch multiples of the interval, so each document is mapped to its bucket by arithmetic. Buckets do not depend
+ * on the queried range, so series computed for different ranges can be stitched together.
  */
 public abstract class AbstractGrafanaTimeSeries implements GrafanaTimeSeries {
 
@@ -43,18 +49,76 @@ public abstract class AbstractGrafanaTimeSeries implements GrafanaTimeSeries {
         }
     }
 
-    protected List<Datapoint> datapoints = new ArrayList<>();
+    /**
+     * Maximum number of buckets of the series, which bounds the memory used by a single series.
+     */
+    public static final int MAX_BUCKETS = 1_000_000;
+
+    /**
+     * Maximum number of buckets, which are allocated in advance for the queried range. Series of the larger ranges
+     * grow on demand, so sparse data does not allocate buckets for the whole range.
+     */
+    private static final int MAX_PRESIZED_BUCKETS = 100_000;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Number of skipped documents between the log messages.
+     */
+    private static final long SKIPPED_LOG_PERIOD = 1000;
+
+    protected static final String MISSING_TIME_REASON = "time field is missing or is not a timestamp";
+    private static final String MISSING_METRIC_REASON = "metric field is missing or is not a number";
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractGrafanaTimeSeries.class);
+
     protected String target;
     protected String timeFieldPath;
+    protected String metricFieldPath;
     protected long intervalMs;
+    protected TimeSeriesMeta meta;
+    protected FieldExtractor timeExtractor;
+    protected FieldExtractor metricExtractor;
+
+    /**
+     * Aggregated values of the buckets. Bucket of the slot <code>i</code> starts at
+     * <code>(firstBucket + i) * intervalMs</code> since the epoch.
+     */
+    protected double[] values = new double[0];
+
+    /**
+     * Number of documents of the buckets. Buckets without documents have no datapoints.
+     */
+    protected long[] counts = new long[0];
+
+    /**
+     * Timestamp of the latest value, which was added to the series, or {@link Long#MIN_VALUE} if there is none.
+     */
+    protected long lastValueTimestamp = Long.MIN_VALUE;
+
+    private long firstBucket;
+    private long skippedDocuments;
+    private DocumentReaderExtractor readerExtractor;
 
     public AbstractGrafanaTimeSeries() {
     }
 
     public AbstractGrafanaTimeSeries(String target, String timeFieldPath, long intervalMs) {
+        this(target, timeFieldPath, null, intervalMs);
+    }
+
+    /**
+     * @param target          name of the series.
+     * @param timeFieldPath   time field path.
+     * @param metricFieldPath metric field path or <code>null</code> if the series does not use metric values.
+     * @param intervalMs      interval of the buckets.
+     */
+    public AbstractGrafanaTimeSeries(String target, String timeFieldPath, String metricFieldPath, long intervalMs) {
         this.target = target;
         this.timeFieldPath = timeFieldPath;
-        this.intervalMs = intervalMs;
+        this.metricFieldPath = metricFieldPath;
+        this.timeExtractor = FieldExtractor.of(timeFieldPath);
+        this.metricExtractor = (metricFieldPath != null) ? FieldExtractor.of(metricFieldPath) : null;
+        this.intervalMs = Math.max(1, intervalMs);
     }
 
     public String getTarget() {
@@ -65,40 +129,370 @@ public abstract class AbstractGrafanaTimeSeries implements GrafanaTimeSeries {
         this.target = target;
     }
 
+    /**
+     * Returns datapoints of the non-empty buckets ordered by timestamp. Note, that datapoints are created on each
+     * invocation, use {@link #getBucketCount()} and friends to access buckets without allocation.
+     *
+     * @return datapoints of the series.
+     */
     public List<Datapoint> getDatapoints() {
-        return Collections.unmodifiableList(datapoints);
+
+        List<Datapoint> datapoints = new ArrayList<>();
+        for (int slot = 0; slot < values.length; slot++) {
+            if (hasDatapoint(slot)) {
+                datapoints.add(new Datapoint(getBucketValue(slot), getDatapointTimestamp(slot)));
+            }
+        }
+
+        return datapoints;
     }
 
-    protected Long getDocumentTimestamp(Document document, String timeFieldPath) {
+    @JsonIgnore
+    public int getDatapointCount() {
 
-        if (timeFieldPath == null || timeFieldPath.isEmpty()) {
-            throw new IllegalArgumentException("Time field path can not be null.");
+        int datapointCount = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                datapointCount++;
+            }
         }
 
-        Object dateObject = document.getValue(timeFieldPath).getObject();
-        if (dateObject == null) {
-            throw new IllegalArgumentException("Time field can not contain null values.");
+        return datapointCount;
+    }
+
+    /**
+     * Returns number of values, which were added to the buckets of the series.
+     */
+    @JsonIgnore
+    public long getValueCount() {
+
+        long valueCount = 0;
+        for (long count : counts) {
+            valueCount += count;
         }
 
-        if (dateObject instanceof ODate) {
-            return ((ODate) dateObject).toDate().getTime();
-        } else if (dateObject instanceof OTime) {
-            return ((OTime) dateObject).toDate().getTime();
-        } else if (dateObject instanceof OTimestamp) {
-            return ((OTimestamp) dateObject).toDate().getTime();
-        } else if (dateObject instanceof String) {
-            return Long.valueOf((String) dateObject);
-        } else if (dateObject instanceof Double) { // TODO add support of time patterns
-            return ((Double) dateObject).longValue();
+        return valueCount;
+    }
+
+    /**
+     * Returns timestamp of the last non-empty bucket or <code>null</code> if the series is empty.
+     */
+    @JsonIgnore
+    public Long getLastDatapointTimestamp() {
+
+        for (int slot = values.length - 1; slot >= 0; slot--) {
+            if (hasDatapoint(slot)) {
+                return getBucketTimestamp(slot);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns timestamp of the latest value, which was added to the series, or <code>null</code> if no values were
+     * added. Unlike {@link #getLastDatapointTimestamp()}, it is not rounded down to the bucket, so when the documents
+     * are added in time order, it tells exactly how far the scan got.
+     */
+    @JsonIgnore
+    public Long getLastValueTimestamp() {
+        return (lastValueTimestamp != Long.MIN_VALUE) ? lastValueTimestamp : null;
+    }
+
+    /**
+     * Returns number of bucket slots, some of which may be empty.
+     */
+    @JsonIgnore
+    public int getBucketCount() {
+        return values.length;
+    }
+
+    /**
+     * Returns approximate heap size of a single bucket slot, which is used to bound the caches of the series.
+     */
+    @JsonIgnore
+    public int getBucketSizeBytes() {
+        return Double.BYTES + Long.BYTES;
+    }
+
+    public boolean hasDatapoint(int slot) {
+        return counts[slot] > 0;
+    }
+
+    public long getBucketTimestamp(int slot) {
+        return (firstBucket + slot) * intervalMs;
+    }
+
+    /**
+     * Returns timestamp of the datapoint of the non-empty bucket. Datapoints are placed at the start of their
+     * buckets, unless the series selects a value of the particular document.
+     */
+    public long getDatapointTimestamp(int slot) {
+        return getBucketTimestamp(slot);
+    }
+
+    public double getBucketValue(int slot) {
+        return bucketValue(slot);
+    }
+
+    /**
+     * Computes datapoint value of the non-empty bucket. Implementations, which keep intermediate state in the
+     * buckets, override it to produce the final value.
+     */
+    protected double bucketValue(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Returns description of the scan, which the series was computed from, or <code>null</code> if it was not
+     * recorded.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public TimeSeriesMeta getMeta() {
+        return meta;
+    }
+
+    public void setMeta(TimeSeriesMeta meta) {
+        this.meta = meta;
+    }
+
+    @JsonIgnore
+    public boolean isTruncated() {
+        return meta != null && meta.isTruncated();
+    }
+
+    /**
+     * Allocates buckets for the specified range in advance, so documents of the range are mapped to buckets without
+     * any allocation. Buckets are aligned to the epoch multiples of the interval. Has no effect if the series already
+     * contains buckets or the range is too large.
+     *
+     * @param from range start in epoch millis.
+     * @param to   range end in epoch millis, inclusive.
+     */
+    public void allocateBuckets(long from, long to) {
+
+        long fromBucket = Math.floorDiv(from, intervalMs);
+        long buckets = Math.floorDiv(to, intervalMs) - fromBucket + 1;
+        if (values.length > 0 || buckets <= 0 || buckets > maxPresizedBuckets()) {
+            return;
+        }
+
+        this.firstBucket = fromBucket;
+        this.values = new double[(int) buckets];
+        this.counts = new long[(int) buckets];
+        onBucketsResized(0, (int) buckets);
+    }
+
+    /**
+     * Adds datapoints of the buckets, which are already completed. Note, that documents of the completed buckets must
+     * not be added afterwards.
+     *
+     * @param completed datapoints of the completed buckets.
+     */
+    public void addCompletedDatapoints(Collection<Datapoint> completed) {
+        for (Datapoint datapoint : completed) {
+            int slot = slot(datapoint.getTimestamp());
+            values[slot] = datapoint.getValue();
+            counts[slot] = 1;
+        }
+    }
+
+    /**
+     * Returns slot of the bucket, which the specified timestamp belongs to. Bucket arrays grow if the timestamp is
+     * outside of the allocated buckets.
+     *
+     * @throws IllegalArgumentException if the series would exceed {@link #maxBuckets()} buckets.
+     */
+    protected int slot(long timestamp) {
+
+        long bucket = Math.floorDiv(timestamp, intervalMs);
+        long index = bucket - firstBucket;
+        if (index >= 0 && index < values.length) {
+            return (int) index;
+        }
+
+        return grow(bucket);
+    }
+
+    private int grow(long bucket) {
+
+        if (values.length == 0) {
+            this.firstBucket = bucket;
+            this.values = new double[INITIAL_CAPACITY];
+            this.counts = new long[INITIAL_CAPACITY];
+            onBucketsResized(0, INITIAL_CAPACITY);
+            return 0;
+        }
+
+        long lastBucket = firstBucket + values.length - 1;
+        long required = Math.max(lastBucket, bucket) - Math.min(firstBucket, bucket) + 1;
+        int maxBuckets = maxBuckets();
+        if (required > maxBuckets) {
+            throw new IllegalArgumentException("Time series '" + target + "' can not contain more than " +
+                    maxBuckets + " buckets of " + intervalMs + " ms");
+        }
+
+        // Spare capacity is added in the direction of growth
+        int capacity = (int) Math.min(maxBuckets, Math.max(required, 2L * values.length));
+        long newFirstBucket = (bucket < firstBucket) ? lastBucket - capacity + 1 : firstBucket;
+        int offset = (int) (firstBucket - newFirstBucket);
+
+        double[] newValues = new double[capacity];
+        long[] newCounts = new long[capacity];
+        System.arraycopy(values, 0, newValues, offset, values.length);
+        System.arraycopy(counts, 0, newCounts, offset, counts.length);
+
+        this.firstBucket = newFirstBucket;
+        this.values = newValues;
+        this.counts = newCounts;
+        onBucketsResized(offset, capacity);
+
+        return (int) (bucket - newFirstBucket);
+    }
+
+    /**
+     * Returns maximum number of buckets of the series. Implementations, which keep large per-bucket state, lower it,
+     * so the memory of a single series stays bounded.
+     */
+    protected int maxBuckets() {
+        return MAX_BUCKETS;
+    }
+
+    /**
+     * Returns maximum number of buckets, which are allocated in advance by {@link #allocateBuckets(long, long)}.
+     */
+    protected int maxPresizedBuckets() {
+        return MAX_PRESIZED_BUCKETS;
+    }
+
+    /**
+     * Invoked after bucket arrays are allocated or grown, so implementations, which keep additional per-bucket state,
+     * can resize it accordingly.
+     *
+     * @param offset   slot of the previous first bucket in the resized arrays.
+     * @param capacity new number of bucket slots.
+     */
+    protected void onBucketsResized(int offset, int capacity) {
+    }
+
+    /**
+     * Adds the time and metric values of the document. Documents without valid values are skipped.
+     *
+     * @param document document which will be converted to datapoint.
+     */
+    @Override
+    public void addDocument(Document document) {
+
+        if (document == null) {
+            skip("document is null");
+            return;
+        }
+
+        long timestamp = timeExtractor.timestamp(document);
+        if (timestamp == FieldExtractor.MISSING_TIMESTAMP) {
+            skip(MISSING_TIME_REASON);
+            return;
+        }
+
+        double value = 0;
+        if (metricExtractor != null) {
+            value = metricExtractor.doubleValue(document);
+            if (Double.isNaN(value)) {
+                skip(MISSING_METRIC_REASON);
+                return;
+            }
+        }
+
+        addValue(timestamp, value);
+    }
+
+    /**
+     * Adds the time and metric values, which are read from the event stream of the document, so the document is not
+     * materialized.
+     *
+     * @param reader reader positioned before the start of the document.
+     * @throws IllegalArgumentException if the field paths of the series are not supported by
+     *                                  {@link DocumentReaderExtractor}.
+     */
+    public void addDocumentReader(DocumentReader reader) {
+
+        if (readerExtractor == null) {
+            readerExtractor = new DocumentReaderExtractor(timeFieldPath, metricFieldPath);
+        }
+
+        if (readerExtractor.read(reader)) {
+            addValue(readerExtractor.getTimestamp(), readerExtractor.getValue());
         } else {
-            return (Long) dateObject;
+            skip(readerExtractor.getTimestamp() == FieldExtractor.MISSING_TIMESTAMP
+                    ? MISSING_TIME_REASON
+                    : MISSING_METRIC_REASON);
         }
     }
 
+    /**
+     * Returns whether the documents can be added using {@link #addDocumentReader(DocumentReader)}.
+     */
+    @JsonIgnore
+    public boolean isDocumentReaderSupported() {
+        return DocumentReaderExtractor.supports(timeFieldPath) &&
+                (metricFieldPath == null || DocumentReaderExtractor.supports(metricFieldPath));
+    }
+
+    /**
+     * Adds the values to the bucket of the timestamp.
+     *
+     * @param timestamp epoch millis.
+     * @param value     metric value, which is ignored by the series without metric field.
+     */
+    public void addValue(long timestamp, double value) {
+
+        int slot;
+        try {
+            slot = slot(timestamp);
+        } catch (IllegalArgumentException e) {
+            skip(e.getMessage());
+            return;
+        }
+
+        accumulate(slot, timestamp, value);
+        lastValueTimestamp = Math.max(lastValueTimestamp, timestamp);
+    }
+
+    /**
+     * Accumulates the value in the bucket of the slot.
+     *
+     * @param slot      slot of the bucket of the timestamp.
+     * @param timestamp epoch millis.
+     * @param value     metric value.
+     */
+    protected abstract void accumulate(int slot, long timestamp, double value);
+
+    /**
+     * Counts the document, which can not be added to the series. Only every {@link #SKIPPED_LOG_PERIOD}th skipped
+     * document is logged, so bad rows do not flood the log and do not format documents on the hot path.
+     *
+     * @param reason why the document was skipped.
+     */
+    protected void skip(String reason) {
+        skippedDocuments++;
+        if (skippedDocuments % SKIPPED_LOG_PERIOD == 1) {
+            log.debug("Skipped {} documents of time series '{}' so far. Last reason: {}", skippedDocuments, target,
+                    reason);
+        }
+    }
+
+    /**
+     * Returns number of documents, which were not added to the series since they had no valid time or metric value.
+     */
+    @JsonIgnore
+    public long getSkippedDocuments() {
+        return skippedDocuments;
+    }
+
     @Override
     public String toString() {
         return "AbstractGrafanaTimeSeries{" +
-                "datapoints=" + datapoints +
+                "datapoints=" + getDatapoints() +
                 ", target='" + target + '\'' +
                 ", timeFieldPath='" + timeFieldPath + '\'' +
                 ", intervalMs=" + intervalMs +
@@ -0,0 +1,125 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import java.util.Collection;
+
+/**
+ * Time series, which buckets are aggregated by the {@link MetricAccumulator}. States of all buckets are kept in a
+ * single array, so the series of the same metric and interval, which are computed from different documents, can be
+ * merged bucket by bucket.
+ */
+public class AccumulatorTimeSeries extends AbstractGrafanaTimeSeries {
+
+    /**
+     * Maximum number of doubles of the bucket states, which bounds memory of the series with large states, such as
+     * percentile digests.
+     */
+    private static final int MAX_STATE_DOUBLES = 8_000_000;
+    private static final int MAX_PRESIZED_STATE_DOUBLES = 1_000_000;
+
+    protected final MetricAccumulator accumulator;
+    private final int stateSize;
+
+    /**
+     * States of the buckets. State of the slot <code>i</code> starts at <code>i * stateSize</code>.
+     */
+    private double[] states = new double[0];
+
+    /**
+     * @param accumulator     accumulator of the bucket values.
+     * @param target          name of the series.
+     * @param timeFieldPath   time field path.
+     * @param metricFieldPath metric field path or <code>null</code> if the accumulator does not use metric values.
+     * @param intervalMs      interval of the buckets.
+     */
+    public AccumulatorTimeSeries(MetricAccumulator accumulator, String target, String timeFieldPath,
+                                 String metricFieldPath, long intervalMs) {
+
+        super(target, timeFieldPath, metricFieldPath, intervalMs);
+        this.accumulator = accumulator;
+        this.stateSize = accumulator.stateSize();
+    }
+
+    @Override
+    protected void accumulate(int slot, long timestamp, double value) {
+        accumulator.add(states, slot * stateSize, timestamp, value);
+        counts[slot]++;
+    }
+
+    @Override
+    protected double bucketValue(int slot) {
+        return accumulator.finish(states, slot * stateSize);
+    }
+
+    @Override
+    public void addCompletedDatapoints(Collection<Datapoint> completed) {
+        for (Datapoint datapoint : completed) {
+            int slot = slot(datapoint.getTimestamp());
+            accumulator.restore(states, slot * stateSize, datapoint.getTimestamp(), datapoint.getValue());
+            counts[slot] = 1;
+        }
+    }
+
+    /**
+     * Merges buckets of the other series of the same metric and interval, which was computed from the other
+     * documents, into this series.
+     *
+     * @param other series to merge.
+     * @throws IllegalArgumentException if the series have different accumulators or intervals, or the merged series
+     *                                  would exceed {@link #maxBuckets()} buckets.
+     */
+    public void merge(AccumulatorTimeSeries other) {
+
+        if (!accumulator.equals(other.accumulator) || intervalMs != other.intervalMs) {
+            throw new IllegalArgumentException("Series '" + other.target + "' can not be merged into '" + target +
+                    "' since they have different metrics or intervals");
+        }
+
+        for (int otherSlot = 0; otherSlot < other.getBucketCount(); otherSlot++) {
+            if (other.hasDatapoint(otherSlot)) {
+                int slot = slot(other.getBucketTimestamp(otherSlot));
+                accumulator.merge(states, slot * stateSize, other.states, otherSlot * stateSize);
+                counts[slot] += other.counts[otherSlot];
+            }
+        }
+
+        lastValueTimestamp = Math.max(lastValueTimestamp, other.lastValueTimestamp);
+    }
+
+    @Override
+    public int getBucketSizeBytes() {
+        return super.getBucketSizeBytes() + stateSize * Double.BYTES;
+    }
+
+    @Override
+    protected int maxBuckets() {
+        return Math.min(MAX_BUCKETS, MAX_STATE_DOUBLES / stateSize);
+    }
+
+    @Override
+    protected int maxPresizedBuckets() {
+        return Math.min(super.maxPresizedBuckets(), MAX_PRESIZED_STATE_DOUBLES / stateSize);
+    }
+
+    @Override
+    protected void onBucketsResized(int offset, int capacity) {
+
+        double[] resized = new double[capacity * stateSize];
+        for (int slot = 0; slot < capacity; slot++) {
+            accumulator.reset(resized, slot * stateSize);
+        }
+
+        System.arraycopy(states, 0, resized, offset * stateSize, states.length);
+        this.states = resized;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "metricFieldPath='" + metricFieldPath + '\'' +
+                ", datapoints=" + getDatapoints() +
+                ", target='" + target + '\'' +
+                ", timeFieldPath='" + timeFieldPath + '\'' +
+                ", intervalMs=" + intervalMs +
+                '}';
+    }
+}
@@ -0,0 +1,32 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import com.mapr.grafana.plugin.model.GrafanaMetrics;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Metrics of a single target, which are returned to Grafana as several series, such as the series per group or per
+ * histogram bin.
+ */
+public interface CompositeTimeSeries extends GrafanaMetrics {
+
+    /**
+     * Returns series, which replace the composite series in the response.
+     */
+    List<AbstractGrafanaTimeSeries> getSeries();
+
+    /**
+     * Adds the queried metrics of the target to the response metrics, replacing the composite series by its series.
+     *
+     * @param metrics response metrics.
+     * @param queried queried metrics of the target.
+     */
+    static void addTo(Collection<GrafanaMetrics> metrics, GrafanaMetrics queried) {
+        if (queried instanceof CompositeTimeSeries) {
+            metrics.addAll(((CompositeTimeSeries) queried).getSeries());
+        } else {
+            metrics.add(queried);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mapr.grafana.plugin.util.FieldExtractor;
+import org.ojai.Document;
+import org.ojai.Value;
+
+/**
+ * Approximate number of distinct values of the metric field per bucket, which is estimated by
+ * {@link HyperLogLogAccumulator}. Metric values of any type are hashed, so distinct strings, such as user names, can be
+ * counted as well as numbers.
+ */
+public class DistinctCountTimeSeries extends AccumulatorTimeSeries {
+
+    private final HyperLogLogAccumulator sketch;
+
+    public DistinctCountTimeSeries(HyperLogLogAccumulator accumulator, String target, String timeFieldPath,
+                                   String metricFieldPath, long intervalMs) {
+
+        super(accumulator, target, timeFieldPath, metricFieldPath, intervalMs);
+        this.sketch = accumulator;
+    }
+
+    /**
+     * Adds the hash of the metric value. Documents without time or metric value are skipped.
+     *
+     * @param document document which will be converted to datapoint.
+     */
+    @Override
+    public void addDocument(Document document) {
+
+        if (document == null) {
+            skip("document is null");
+            return;
+        }
+
+        long timestamp = timeExtractor.timestamp(document);
+        if (timestamp == FieldExtractor.MISSING_TIMESTAMP) {
+            skip(MISSING_TIME_REASON);
+            return;
+        }
+
+        Value value = document.getValue(metricExtractor.getPath());
+        if (value == null) {
+            skip("metric field is missing");
+            return;
+        }
+
+        addHash(timestamp, FieldExtractor.hash(value));
+    }
+
+    /**
+     * Adds the hash of the value to the sketch of the bucket of the timestamp.
+     *
+     * @param timestamp epoch millis.
+     * @param hash      64-bit hash of the metric value, see {@link FieldExtractor#hash(Value)}.
+     */
+    public void addHash(long timestamp, long hash) {
+        addValue(timestamp, sketch.encode(hash));
+    }
+
+    /**
+     * Document reader extracts numeric values only, so distinct values are counted from the documents.
+     */
+    @JsonIgnore
+    @Override
+    public boolean isDocumentReaderSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,232 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import java.util.Collection;
+
+/**
+ * Time series of the metric field values, which are downsampled to a single value per interval using
+ * Largest-Triangle-Three-Buckets selection. Buckets keep only the minimum and maximum values with their timestamps and
+ * the running sum, so documents can be added in any order. When datapoints are requested, the extreme of each bucket,
+ * which forms the largest triangle with the value selected for the previous bucket and the average of the next one,
+ * is chosen, so peaks of the series remain visible. Datapoint is placed at the timestamp of the chosen extreme rather
+ * than at the start of its bucket.
+ * <p>
+ * Interval of the series is expected to be computed by {@link #intervalFor(long, long, long)}, so the number of
+ * datapoints does not exceed 'maxDataPoints' of the request.
+ */
+public class DownsampledFieldValueTimeSeries extends AbstractGrafanaTimeSeries {
+
+    /**
+     * Number of buckets, which may be added to the range by its alignment to the interval.
+     */
+    private static final long ALIGNMENT_BUCKETS = 3;
+
+    // Minimum values of the buckets are kept in the 'values' array
+    private double[] maxValues = new double[0];
+    private long[] minTimestamps = new long[0];
+    private long[] maxTimestamps = new long[0];
+    private double[] sums = new double[0];
+
+    private volatile Selection selected;
+
+    /**
+     * Values and timestamps of the extremes, which are selected for the buckets.
+     */
+    private static class Selection {
+
+        private final double[] values;
+        private final long[] timestamps;
+
+        Selection(int capacity) {
+            this.values = new double[capacity];
+            this.timestamps = new long[capacity];
+        }
+    }
+
+    public DownsampledFieldValueTimeSeries(String target, String timeFieldPath, String metricFieldPath,
+                                           long intervalMs) {
+        super(target, timeFieldPath, metricFieldPath, intervalMs);
+    }
+
+    /**
+     * Computes interval of the series, so the range aligned to the interval contains at most the specified number of
+     * buckets. Interval is a multiple of the requested one, so buckets of the slightly different ranges are the same.
+     *
+     * @param rangeMs       length of the queried range.
+     * @param intervalMs    interval requested by Grafana.
+     * @param maxDataPoints maximum number of datapoints.
+     * @return interval of the buckets, which is not less than the requested one.
+     */
+    public static long intervalFor(long rangeMs, long intervalMs, long maxDataPoints) {
+
+        long interval = Math.max(1, intervalMs);
+        long buckets = Math.max(1, maxDataPoints - ALIGNMENT_BUCKETS);
+        long required = (Math.max(0, rangeMs) + buckets - 1) / buckets;
+        if (required <= interval) {
+            return interval;
+        }
+
+        return ((required + interval - 1) / interval) * interval;
+    }
+
+    @Override
+    protected void accumulate(int slot, long timestamp, double value) {
+
+        if (counts[slot] == 0) {
+            values[slot] = value;
+            maxValues[slot] = value;
+            minTimestamps[slot] = timestamp;
+            maxTimestamps[slot] = timestamp;
+        } else {
+
+            // Equal extremes keep the earliest timestamp, so the result does not depend on the order of documents
+            if (value < values[slot] || (value == values[slot] && timestamp < minTimestamps[slot])) {
+                values[slot] = value;
+                minTimestamps[slot] = timestamp;
+            }
+
+            if (value > maxValues[slot] || (value == maxValues[slot] && timestamp < maxTimestamps[slot])) {
+                maxValues[slot] = value;
+                maxTimestamps[slot] = timestamp;
+            }
+        }
+
+        sums[slot] += value;
+        counts[slot]++;
+        this.selected = null;
+    }
+
+    /**
+     * Completed datapoints are added as single values of their buckets, so they are selected as is, along with their
+     * timestamps.
+     */
+    @Override
+    public void addCompletedDatapoints(Collection<Datapoint> completed) {
+        for (Datapoint datapoint : completed) {
+            addValue(datapoint.getTimestamp(), datapoint.getValue());
+        }
+    }
+
+    @Override
+    protected double bucketValue(int slot) {
+        return selection().values[slot];
+    }
+
+    @Override
+    public long getDatapointTimestamp(int slot) {
+        return selection().timestamps[slot];
+    }
+
+    private Selection selection() {
+
+        Selection selection = selected;
+        if (selection == null) {
+            selection = select();
+            this.selected = selection;
+        }
+
+        return selection;
+    }
+
+    /**
+     * Selects minimum or maximum value of each non-empty bucket in order of buckets. The first bucket keeps the
+     * extreme, which is the farthest from its average.
+     */
+    private Selection select() {
+
+        Selection selection = new Selection(values.length);
+        long previousTimestamp = 0;
+        double previousValue = 0;
+        int slot = nextSlot(-1);
+        boolean first = true;
+        while (slot >= 0) {
+
+            int next = nextSlot(slot);
+            boolean maxSelected;
+            if (first) {
+                double average = average(slot);
+                maxSelected = maxValues[slot] - average >= average - values[slot];
+                first = false;
+            } else {
+
+                int averageSlot = (next >= 0) ? next : slot;
+                long averageTimestamp = getBucketTimestamp(averageSlot) + intervalMs / 2;
+                double averageValue = average(averageSlot);
+
+                double minArea = area(previousTimestamp, previousValue, minTimestamps[slot], values[slot],
+                        averageTimestamp, averageValue);
+                double maxArea = area(previousTimestamp, previousValue, maxTimestamps[slot], maxValues[slot],
+                        averageTimestamp, averageValue);
+                maxSelected = maxArea >= minArea;
+            }
+
+            selection.values[slot] = maxSelected ? maxValues[slot] : values[slot];
+            selection.timestamps[slot] = maxSelected ? maxTimestamps[slot] : minTimestamps[slot];
+            previousTimestamp = selection.timestamps[slot];
+            previousValue = selection.values[slot];
+            slot = next;
+        }
+
+        return selection;
+    }
+
+    private int nextSlot(int slot) {
+        for (int next = slot + 1; next < values.length; next++) {
+            if (hasDatapoint(next)) {
+                return next;
+            }
+        }
+
+        return -1;
+    }
+
+    private double average(int slot) {
+        return sums[slot] / counts[slot];
+    }
+
+    /**
+     * Doubled area of the triangle. Timestamps are taken relative to the first vertex, so epoch millis do not lose
+     * precision when multiplied by values.
+     */
+    private static double area(long aTimestamp, double aValue, long bTimestamp, double bValue, long cTimestamp,
+                               double cValue) {
+
+        double bTime = bTimestamp - aTimestamp;
+        double cTime = cTimestamp - aTimestamp;
+        return Math.abs(bTime * (cValue - aValue) - cTime * (bValue - aValue));
+    }
+
+    @Override
+    public int getBucketSizeBytes() {
+        return super.getBucketSizeBytes() + 2 * Double.BYTES + 2 * Long.BYTES;
+    }
+
+    @Override
+    protected void onBucketsResized(int offset, int capacity) {
+
+        double[] resizedMaxValues = new double[capacity];
+        long[] resizedMinTimestamps = new long[capacity];
+        long[] resizedMaxTimestamps = new long[capacity];
+        double[] resizedSums = new double[capacity];
+        System.arraycopy(maxValues, 0, resizedMaxValues, offset, maxValues.length);
+        System.arraycopy(minTimestamps, 0, resizedMinTimestamps, offset, minTimestamps.length);
+        System.arraycopy(maxTimestamps, 0, resizedMaxTimestamps, offset, maxTimestamps.length);
+        System.arraycopy(sums, 0, resizedSums, offset, sums.length);
+
+        this.maxValues = resizedMaxValues;
+        this.minTimestamps = resizedMinTimestamps;
+        this.maxTimestamps = resizedMaxTimestamps;
+        this.sums = resizedSums;
+        this.selected = null;
+    }
+
+    @Override
+    public String toString() {
+        return "DownsampledFieldValueTimeSeries{" +
+                "metricFieldPath='" + metricFieldPath + '\'' +
+                ", datapoints=" + getDatapoints() +
+                ", target='" + target + '\'' +
+                ", timeFieldPath='" + timeFieldPath + '\'' +
+                ", intervalMs=" + intervalMs +
+                '}';
+    }
+}
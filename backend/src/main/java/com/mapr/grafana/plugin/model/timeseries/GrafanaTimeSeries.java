@@ -6,7 +6,7 @@ import org.ojai.Document;
 public interface GrafanaTimeSeries extends GrafanaMetrics {
 
     /**
-     * Note, that datapoints should be ordered by timestamp. Thus, order of method invocation may be significant.
+     * Note, that documents can be added in any order, unless the implementation states otherwise.
      *
      * @param document document which will be converted to datapoint.
      */
@@ -0,0 +1,204 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import com.mapr.grafana.plugin.util.FieldExtractor;
+import org.ojai.Document;
+import org.ojai.FieldPath;
+import org.ojai.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Splits the documents of a single scan into the series per value of the group field, so one target yields a series
+ * per author or status. Number of groups is bounded: once {@link #maxGroups} series are created, documents of the new
+ * values are aggregated into the 'other' series. After the scan, {@link #selectTopGroups()} keeps the
+ * {@link #groupLimit} groups with the most values and merges the rest into the 'other' series, so the chart shows the
+ * top groups and the remainder.
+ * <p>
+ * Series of the groups, including the 'other' one, are created on the first document of the group, so the memory of
+ * the grouped series grows with the groups, which are actually present.
+ * <p>
+ * Grouped series is not a response metric by itself, it is replaced by the series of its groups.
+ */
+public class GroupedTimeSeries implements GrafanaTimeSeries, CompositeTimeSeries {
+
+    public static final int DEFAULT_GROUP_LIMIT = 10;
+    public static final String OTHER_GROUP_SUFFIX = " (other)";
+
+    private final String target;
+    private final String groupByPath;
+    private final FieldPath groupBy;
+    private final Function<String, AccumulatorTimeSeries> seriesFactory;
+    private final int maxGroups;
+    private final int groupLimit;
+
+    private final Map<String, AccumulatorTimeSeries> groups = new HashMap<>();
+    private AccumulatorTimeSeries other;
+    private long overflowDocuments;
+    private long skippedDocuments;
+    private List<AbstractGrafanaTimeSeries> series;
+
+    /**
+     * @param target        name of the target, which prefixes names of the series.
+     * @param groupByPath   path of the group field.
+     * @param seriesFactory creates empty series of the target by series name. Series must have the same metric and
+     *                      interval, so they can be merged.
+     * @param maxGroups     maximum number of the groups, which are aggregated separately during the scan.
+     * @param groupLimit    maximum number of the groups, which are returned as separate series.
+     */
+    public GroupedTimeSeries(String target, String groupByPath, Function<String, AccumulatorTimeSeries> seriesFactory,
+                             int maxGroups, int groupLimit) {
+
+        if (maxGroups < 1 || groupLimit < 1) {
+            throw new IllegalArgumentException("Maximum number of groups and group limit must be positive");
+        }
+
+        this.target = target;
+        this.groupByPath = groupByPath;
+        this.groupBy = FieldPath.parseFrom(groupByPath);
+        this.seriesFactory = seriesFactory;
+        this.maxGroups = maxGroups;
+        this.groupLimit = groupLimit;
+    }
+
+    /**
+     * Adds the document to the series of its group. Documents without the group field are skipped.
+     *
+     * @param document document which will be converted to datapoint.
+     */
+    @Override
+    public void addDocument(Document document) {
+
+        if (series != null) {
+            throw new IllegalStateException("Documents can not be added after the top groups are selected");
+        }
+
+        Value value = (document != null) ? document.getValue(groupBy) : null;
+        if (value == null) {
+            skippedDocuments++;
+            return;
+        }
+
+        String group = FieldExtractor.key(value);
+        AccumulatorTimeSeries groupSeries = groups.get(group);
+        if (groupSeries == null) {
+
+            if (groups.size() >= maxGroups) {
+                overflowDocuments++;
+                other().addDocument(document);
+                return;
+            }
+
+            groupSeries = seriesFactory.apply(target + " " + group);
+            groups.put(group, groupSeries);
+        }
+
+        groupSeries.addDocument(document);
+    }
+
+    /**
+     * Keeps {@link #groupLimit} groups with the most values and merges the other groups into the 'other' series.
+     * Documents can not be added afterwards.
+     */
+    public void selectTopGroups() {
+
+        if (series != null) {
+            return;
+        }
+
+        Map<AccumulatorTimeSeries, Long> valueCounts = new IdentityHashMap<>();
+        groups.values().forEach(groupSeries -> valueCounts.put(groupSeries, groupSeries.getValueCount()));
+        Comparator<AccumulatorTimeSeries> byValueCount = Comparator.comparingLong(valueCounts::get);
+
+        // Min-heap of the top groups, which evicts the smallest group once it exceeds the limit
+        PriorityQueue<AccumulatorTimeSeries> top = new PriorityQueue<>(groupLimit + 1, byValueCount);
+        for (AccumulatorTimeSeries groupSeries : groups.values()) {
+            top.add(groupSeries);
+            if (top.size() > groupLimit) {
+                other().merge(top.poll());
+            }
+        }
+
+        List<AccumulatorTimeSeries> sorted = new ArrayList<>(top);
+        sorted.sort(byValueCount.reversed());
+        List<AbstractGrafanaTimeSeries> selected = new ArrayList<>(sorted);
+        if (other != null && other.getValueCount() > 0) {
+            selected.add(other);
+        }
+
+        this.series = Collections.unmodifiableList(selected);
+        groups.clear();
+    }
+
+    private AccumulatorTimeSeries other() {
+        if (other == null) {
+            other = seriesFactory.apply(target + OTHER_GROUP_SUFFIX);
+        }
+
+        return other;
+    }
+
+    /**
+     * Returns series of the top groups ordered by the number of values, followed by the 'other' series if it is not
+     * empty.
+     *
+     * @throws IllegalStateException if the top groups are not selected yet.
+     */
+    @Override
+    public List<AbstractGrafanaTimeSeries> getSeries() {
+
+        if (series == null) {
+            throw new IllegalStateException("Top groups of '" + target + "' are not selected yet");
+        }
+
+        return series;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getGroupByPath() {
+        return groupByPath;
+    }
+
+    /**
+     * Returns number of documents, which were aggregated into the 'other' series, since the number of groups had
+     * already reached the maximum.
+     */
+    public long getOverflowDocuments() {
+        return overflowDocuments;
+    }
+
+    /**
+     * Returns number of documents, which were skipped since they had no group field.
+     */
+    public long getSkippedDocuments() {
+        return skippedDocuments;
+    }
+
+    /**
+     * Returns whether the series were computed by the truncated scan.
+     */
+    public boolean isTruncated() {
+        return series != null && series.stream().anyMatch(AbstractGrafanaTimeSeries::isTruncated);
+    }
+
+    @Override
+    public String toString() {
+        return "GroupedTimeSeries{" +
+                "target='" + target + '\'' +
+                ", groupByPath='" + groupByPath + '\'' +
+                ", maxGroups=" + maxGroups +
+                ", groupLimit=" + groupLimit +
+                ", series=" + series +
+                '}';
+    }
+}
@@ -0,0 +1,136 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Bins of the value histogram within <code>[min, max)</code>, which have either the same width or the same ratio of
+ * bounds. Values outside of the range are counted in the first or the last bin, so every value is counted.
+ */
+public final class HistogramBins {
+
+    public static final int MAX_BINS = 200;
+
+    /**
+     * Significant digits of the bin labels.
+     */
+    private static final MathContext LABEL_PRECISION = new MathContext(6);
+
+    private final boolean log;
+    private final double min;
+    private final double max;
+    private final int count;
+
+    // Bounds are mapped to the bin index by (scaled(value) - scaledMin) * scale
+    private final double scaledMin;
+    private final double scale;
+
+    private HistogramBins(boolean log, double min, double max, int count) {
+
+        if (count < 1 || count > MAX_BINS) {
+            throw new IllegalArgumentException("Number of bins must be within [1, " + MAX_BINS + "], but was " + count);
+        }
+
+        if (!(min < max) || Double.isInfinite(min) || Double.isInfinite(max)) {
+            throw new IllegalArgumentException("Histogram range must be finite and not empty, but was [" + min + ", " +
+                    max + ")");
+        }
+
+        if (log && !(min > 0)) {
+            throw new IllegalArgumentException("Log-scale histogram range must be positive, but was [" + min + ", " +
+                    max + ")");
+        }
+
+        this.log = log;
+        this.min = min;
+        this.max = max;
+        this.count = count;
+        this.scaledMin = scaled(min);
+        this.scale = count / (scaled(max) - scaledMin);
+    }
+
+    /**
+     * Creates bins of the same width.
+     *
+     * @throws IllegalArgumentException if the range is empty or the number of bins is out of range.
+     */
+    public static HistogramBins linear(double min, double max, int count) {
+        return new HistogramBins(false, min, max, count);
+    }
+
+    /**
+     * Creates bins, which upper bound is the same multiple of the lower bound, so values of the long-tailed
+     * distributions, such as response sizes, are resolved across several orders of magnitude.
+     *
+     * @throws IllegalArgumentException if the range is empty or not positive, or the number of bins is out of range.
+     */
+    public static HistogramBins log(double min, double max, int count) {
+        return new HistogramBins(true, min, max, count);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns index of the bin of the value.
+     */
+    public int indexOf(double value) {
+
+        if (!(value > min)) {
+            return 0;
+        }
+
+        int index = (int) ((scaled(value) - scaledMin) * scale);
+        return Math.min(index, count - 1);
+    }
+
+    /**
+     * Returns lower bound of the bin.
+     */
+    public double lowerBound(int bin) {
+        double scaledBound = scaledMin + bin / scale;
+        return (bin == 0) ? min : (log ? Math.exp(scaledBound) : scaledBound);
+    }
+
+    /**
+     * Returns lower bound of the bin as the numeric label of its series, which Grafana heatmap sorts the bins by.
+     */
+    public String label(int bin) {
+        return new BigDecimal(lowerBound(bin)).round(LABEL_PRECISION).stripTrailingZeros().toPlainString();
+    }
+
+    private double scaled(double value) {
+        return log ? Math.log(value) : value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HistogramBins that = (HistogramBins) o;
+        return log == that.log &&
+                Double.compare(that.min, min) == 0 &&
+                Double.compare(that.max, max) == 0 &&
+                count == that.count;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Boolean.hashCode(log);
+        result = 31 * result + Double.hashCode(min);
+        result = 31 * result + Double.hashCode(max);
+        result = 31 * result + count;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramBins{" +
+                "log=" + log +
+                ", min=" + min +
+                ", max=" + max +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,117 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Histogram of the metric field values per bucket, which is returned in the 'time series buckets' format of Grafana
+ * heatmap: a series per histogram bin, named by its lower bound, with the number of values of the bin per bucket.
+ * Bin counts of all buckets are kept in a single array, so each value is counted by an increment of its slot.
+ * <p>
+ * Datapoint value of the histogram series itself is the number of values of the bucket. Bins are not kept by the
+ * datapoints, so histograms are not restored from the completed datapoints by the incremental store.
+ */
+public class HistogramTimeSeries extends AbstractGrafanaTimeSeries implements CompositeTimeSeries {
+
+    /**
+     * Maximum number of bin counts, which bounds memory of the series with many bins.
+     */
+    private static final int MAX_BIN_COUNTS = 8_000_000;
+    private static final int MAX_PRESIZED_BIN_COUNTS = 1_000_000;
+
+    private final HistogramBins bins;
+    private final int binCount;
+
+    /**
+     * Counts of the bins. Counts of the slot <code>i</code> start at <code>i * binCount</code>.
+     */
+    private long[] binCounts = new long[0];
+
+    public HistogramTimeSeries(HistogramBins bins, String target, String timeFieldPath, String metricFieldPath,
+                               long intervalMs) {
+
+        super(target, timeFieldPath, metricFieldPath, intervalMs);
+        this.bins = bins;
+        this.binCount = bins.getCount();
+    }
+
+    @Override
+    protected void accumulate(int slot, long timestamp, double value) {
+        binCounts[slot * binCount + bins.indexOf(value)]++;
+        counts[slot]++;
+    }
+
+    @Override
+    protected double bucketValue(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * Returns series per histogram bin, which contain datapoints of all non-empty buckets, including the buckets
+     * without values of the bin, so the heatmap has no gaps. Series share the metadata of the histogram.
+     */
+    @JsonIgnore
+    @Override
+    public List<AbstractGrafanaTimeSeries> getSeries() {
+
+        List<AbstractGrafanaTimeSeries> series = new ArrayList<>(binCount);
+        for (int bin = 0; bin < binCount; bin++) {
+
+            List<Datapoint> datapoints = new ArrayList<>();
+            for (int slot = 0; slot < counts.length; slot++) {
+                if (hasDatapoint(slot)) {
+                    datapoints.add(new Datapoint(binCounts[slot * binCount + bin], getBucketTimestamp(slot)));
+                }
+            }
+
+            AccumulatorTimeSeries binSeries = new AccumulatorTimeSeries(MetricAccumulators.COUNT, bins.label(bin),
+                    timeFieldPath, null, intervalMs);
+            binSeries.addCompletedDatapoints(datapoints);
+            binSeries.setMeta(meta);
+            series.add(binSeries);
+        }
+
+        return series;
+    }
+
+    @JsonIgnore
+    public HistogramBins getBins() {
+        return bins;
+    }
+
+    @Override
+    public int getBucketSizeBytes() {
+        return super.getBucketSizeBytes() + binCount * Long.BYTES;
+    }
+
+    @Override
+    protected int maxBuckets() {
+        return Math.min(MAX_BUCKETS, MAX_BIN_COUNTS / binCount);
+    }
+
+    @Override
+    protected int maxPresizedBuckets() {
+        return Math.min(super.maxPresizedBuckets(), MAX_PRESIZED_BIN_COUNTS / binCount);
+    }
+
+    @Override
+    protected void onBucketsResized(int offset, int capacity) {
+        long[] resized = new long[capacity * binCount];
+        System.arraycopy(binCounts, 0, resized, offset * binCount, binCounts.length);
+        this.binCounts = resized;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramTimeSeries{" +
+                "metricFieldPath='" + metricFieldPath + '\'' +
+                ", bins=" + bins +
+                ", datapoints=" + getDatapoints() +
+                ", target='" + target + '\'' +
+                ", timeFieldPath='" + timeFieldPath + '\'' +
+                ", intervalMs=" + intervalMs +
+                '}';
+    }
+}
@@ -0,0 +1,187 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+/**
+ * Estimates number of distinct values using HyperLogLog sketch of <code>2^precision</code> registers, so the state of
+ * a bucket does not depend on the number of its values. Standard error of the estimate is about
+ * <code>1.04 / sqrt(2^precision)</code>, which is 1.6% for the precision of 12.
+ * <p>
+ * Values, which are added to the accumulator, are not the metric values, but register updates of their 64-bit hashes,
+ * see {@link #encode(long)}. Registers take 6 bits and are packed by {@link #REGISTERS_PER_DOUBLE} into the integer
+ * values of the doubles, which are exact, so the state is compact and is merged by the maximum of each register.
+ * <p>
+ * State: datapoint value of the restored state or {@link Double#NaN} and packed registers.
+ */
+public class HyperLogLogAccumulator implements MetricAccumulator {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    static final int REGISTERS_PER_DOUBLE = 8;
+
+    private static final int REGISTER_BITS = 6;
+    private static final long REGISTER_MASK = (1L << REGISTER_BITS) - 1;
+
+    private static final int RESTORED = 0;
+    private static final int REGISTERS = 1;
+
+    private final int precision;
+    private final int registers;
+
+    /**
+     * @param precision number of bits of the hash, which select the register, from {@link #MIN_PRECISION} to
+     *                  {@link #MAX_PRECISION}.
+     * @throws IllegalArgumentException if the precision is out of range.
+     */
+    public HyperLogLogAccumulator(int precision) {
+
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be within [" + MIN_PRECISION + ", " + MAX_PRECISION +
+                    "], but was " + precision);
+        }
+
+        this.precision = precision;
+        this.registers = 1 << precision;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Encodes the register update of the hash as the value, which can be added to the accumulator.
+     *
+     * @param hash 64-bit hash of the metric value.
+     * @return register index and rank of the hash.
+     */
+    public double encode(long hash) {
+
+        int index = (int) (hash >>> (Long.SIZE - precision));
+
+        // Guard bit limits the rank, so it always fits into the register
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        int rank = Long.numberOfLeadingZeros(remaining) + 1;
+
+        return ((long) index << REGISTER_BITS) | rank;
+    }
+
+    @Override
+    public int stateSize() {
+        return REGISTERS + registers / REGISTERS_PER_DOUBLE;
+    }
+
+    @Override
+    public void reset(double[] state, int offset) {
+        state[offset + RESTORED] = Double.NaN;
+        for (int i = offset + REGISTERS; i < offset + stateSize(); i++) {
+            state[i] = 0;
+        }
+    }
+
+    @Override
+    public void add(double[] state, int offset, long timestamp, double value) {
+
+        long update = (long) value;
+        int index = (int) (update >>> REGISTER_BITS);
+        long rank = update & REGISTER_MASK;
+
+        int packed = offset + REGISTERS + index / REGISTERS_PER_DOUBLE;
+        int shift = (index % REGISTERS_PER_DOUBLE) * REGISTER_BITS;
+        long bits = (long) state[packed];
+        if (((bits >>> shift) & REGISTER_MASK) < rank) {
+            state[packed] = (bits & ~(REGISTER_MASK << shift)) | (rank << shift);
+        }
+    }
+
+    @Override
+    public void merge(double[] state, int offset, double[] other, int otherOffset) {
+
+        for (int i = REGISTERS; i < stateSize(); i++) {
+
+            long bits = (long) state[offset + i];
+            long otherBits = (long) other[otherOffset + i];
+            if (bits == otherBits || otherBits == 0) {
+                continue;
+            }
+
+            long merged = 0;
+            for (int shift = 0; shift < REGISTERS_PER_DOUBLE * REGISTER_BITS; shift += REGISTER_BITS) {
+                merged |= Math.max((bits >>> shift) & REGISTER_MASK, (otherBits >>> shift) & REGISTER_MASK) << shift;
+            }
+            state[offset + i] = merged;
+        }
+    }
+
+    /**
+     * Computes the raw HyperLogLog estimate, which is replaced by linear counting of the empty registers for small
+     * cardinalities. Large range correction is not required for 64-bit hashes.
+     */
+    @Override
+    public double finish(double[] state, int offset) {
+
+        if (!Double.isNaN(state[offset + RESTORED])) {
+            return state[offset + RESTORED];
+        }
+
+        double sum = 0;
+        int empty = 0;
+        for (int i = REGISTERS; i < stateSize(); i++) {
+            long bits = (long) state[offset + i];
+            for (int shift = 0; shift < REGISTERS_PER_DOUBLE * REGISTER_BITS; shift += REGISTER_BITS) {
+                long rank = (bits >>> shift) & REGISTER_MASK;
+                sum += Math.scalb(1.0, (int) -rank);
+                if (rank == 0) {
+                    empty++;
+                }
+            }
+        }
+
+        double estimate = alpha() * registers * registers / sum;
+        if (estimate <= 2.5 * registers && empty > 0) {
+            estimate = registers * Math.log((double) registers / empty);
+        }
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * Restored state keeps the datapoint value as is, since the registers can not be recovered from the estimate.
+     */
+    @Override
+    public void restore(double[] state, int offset, long timestamp, double value) {
+        reset(state, offset);
+        state[offset + RESTORED] = value;
+    }
+
+    private double alpha() {
+        switch (registers) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registers);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HyperLogLogAccumulator that = (HyperLogLogAccumulator) o;
+        return precision == that.precision;
+    }
+
+    @Override
+    public int hashCode() {
+        return precision;
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLogAccumulator{" +
+                "precision=" + precision +
+                '}';
+    }
+}
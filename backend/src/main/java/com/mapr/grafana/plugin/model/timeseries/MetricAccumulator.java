@@ -0,0 +1,67 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+/**
+ * Mergeable aggregation of the metric values of a single bucket. State of the bucket is a fixed number of doubles,
+ * see {@link #stateSize()}, which are kept at the offset of the shared array, so series store states of all buckets in
+ * a single array without per-bucket objects.
+ * <p>
+ * Implementations must guarantee, that merging the states of two parts of the values produces the same result as
+ * adding all of the values to a single state, so buckets can be computed by independent scans and combined afterwards.
+ * Accumulators are stateless and can be shared between the series.
+ */
+public interface MetricAccumulator {
+
+    /**
+     * Returns number of doubles of the state of a single bucket.
+     */
+    int stateSize();
+
+    /**
+     * Resets the state to the empty one, which does not contain any value.
+     *
+     * @param state  array of states.
+     * @param offset offset of the bucket state.
+     */
+    void reset(double[] state, int offset);
+
+    /**
+     * Adds the value to the state.
+     *
+     * @param state     array of states.
+     * @param offset    offset of the bucket state.
+     * @param timestamp epoch millis of the value.
+     * @param value     metric value.
+     */
+    void add(double[] state, int offset, long timestamp, double value);
+
+    /**
+     * Merges the other state into the state. Values of the other state are treated as added after the values of the
+     * state.
+     *
+     * @param state       array of states, which is updated.
+     * @param offset      offset of the updated bucket state.
+     * @param other       array of the merged states.
+     * @param otherOffset offset of the merged bucket state.
+     */
+    void merge(double[] state, int offset, double[] other, int otherOffset);
+
+    /**
+     * Computes value of the datapoint of the non-empty state.
+     *
+     * @param state  array of states.
+     * @param offset offset of the bucket state.
+     * @return datapoint value.
+     */
+    double finish(double[] state, int offset);
+
+    /**
+     * Sets the state, which is finished to the value of the completed datapoint. Such states can not be merged with
+     * the states of the values of the same bucket.
+     *
+     * @param state     array of states.
+     * @param offset    offset of the bucket state.
+     * @param timestamp timestamp of the datapoint.
+     * @param value     datapoint value.
+     */
+    void restore(double[] state, int offset, long timestamp, double value);
+}
@@ -0,0 +1,236 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.mapr.grafana.plugin.model.GrafanaQueryTarget.*;
+
+/**
+ * Accumulators of the time series metrics, see {@link com.mapr.grafana.plugin.model.GrafanaQueryTarget} constants.
+ */
+public final class MetricAccumulators {
+
+    /**
+     * Number of values. State: count.
+     */
+    public static final MetricAccumulator COUNT = new SingleValueAccumulator(0) {
+
+        @Override
+        public void add(double[] state, int offset, long timestamp, double value) {
+            state[offset]++;
+        }
+
+        @Override
+        public void merge(double[] state, int offset, double[] other, int otherOffset) {
+            state[offset] += other[otherOffset];
+        }
+    };
+
+    /**
+     * Minimum value. State: minimum.
+     */
+    public static final MetricAccumulator MIN = new SingleValueAccumulator(Double.POSITIVE_INFINITY) {
+
+        @Override
+        public void add(double[] state, int offset, long timestamp, double value) {
+            state[offset] = Math.min(state[offset], value);
+        }
+
+        @Override
+        public void merge(double[] state, int offset, double[] other, int otherOffset) {
+            state[offset] = Math.min(state[offset], other[otherOffset]);
+        }
+    };
+
+    /**
+     * Maximum value. State: maximum.
+     */
+    public static final MetricAccumulator MAX = new SingleValueAccumulator(Double.NEGATIVE_INFINITY) {
+
+        @Override
+        public void add(double[] state, int offset, long timestamp, double value) {
+            state[offset] = Math.max(state[offset], value);
+        }
+
+        @Override
+        public void merge(double[] state, int offset, double[] other, int otherOffset) {
+            state[offset] = Math.max(state[offset], other[otherOffset]);
+        }
+    };
+
+    /**
+     * Average value. State: running sum and count.
+     */
+    public static final MetricAccumulator AVG = new MetricAccumulator() {
+
+        @Override
+        public int stateSize() {
+            return 2;
+        }
+
+        @Override
+        public void reset(double[] state, int offset) {
+            state[offset] = 0;
+            state[offset + 1] = 0;
+        }
+
+        @Override
+        public void add(double[] state, int offset, long timestamp, double value) {
+            state[offset] += value;
+            state[offset + 1]++;
+        }
+
+        @Override
+        public void merge(double[] state, int offset, double[] other, int otherOffset) {
+            state[offset] += other[otherOffset];
+            state[offset + 1] += other[otherOffset + 1];
+        }
+
+        @Override
+        public double finish(double[] state, int offset) {
+            return state[offset] / state[offset + 1];
+        }
+
+        @Override
+        public void restore(double[] state, int offset, long timestamp, double value) {
+            state[offset] = value;
+            state[offset + 1] = 1;
+        }
+    };
+
+    /**
+     * Value of the earliest document. Values with the same timestamp keep the first added one. State: value and its
+     * timestamp, which is exact for epoch millis.
+     */
+    public static final MetricAccumulator VALUE = new MetricAccumulator() {
+
+        @Override
+        public int stateSize() {
+            return 2;
+        }
+
+        @Override
+        public void reset(double[] state, int offset) {
+            state[offset] = Double.NaN;
+            state[offset + 1] = Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public void add(double[] state, int offset, long timestamp, double value) {
+            if (timestamp < state[offset + 1]) {
+                state[offset] = value;
+                state[offset + 1] = timestamp;
+            }
+        }
+
+        @Override
+        public void merge(double[] state, int offset, double[] other, int otherOffset) {
+            if (other[otherOffset + 1] < state[offset + 1]) {
+                state[offset] = other[otherOffset];
+                state[offset + 1] = other[otherOffset + 1];
+            }
+        }
+
+        @Override
+        public double finish(double[] state, int offset) {
+            return state[offset];
+        }
+
+        @Override
+        public void restore(double[] state, int offset, long timestamp, double value) {
+            state[offset] = value;
+            state[offset + 1] = timestamp;
+        }
+    };
+
+    public static final MetricAccumulator P50 = new PercentileAccumulator(50);
+    public static final MetricAccumulator P95 = new PercentileAccumulator(95);
+    public static final MetricAccumulator P99 = new PercentileAccumulator(99);
+
+    private static final Map<String, MetricAccumulator> METRIC_ACCUMULATORS;
+
+    static {
+        Map<String, MetricAccumulator> accumulators = new HashMap<>();
+        accumulators.put(DOCUMENT_COUNT_METRIC, COUNT);
+        accumulators.put(FIELD_VALUE_METRIC, VALUE);
+        accumulators.put(FIELD_MIN_METRIC, MIN);
+        accumulators.put(FIELD_MAX_METRIC, MAX);
+        accumulators.put(FIELD_AVG_METRIC, AVG);
+        accumulators.put(FIELD_P50_METRIC, P50);
+        accumulators.put(FIELD_P95_METRIC, P95);
+        accumulators.put(FIELD_P99_METRIC, P99);
+        METRIC_ACCUMULATORS = Collections.unmodifiableMap(accumulators);
+    }
+
+    private MetricAccumulators() {
+    }
+
+    /**
+     * Returns accumulator of the metric. Note, that 'Field percentile' and 'Field distinct count' metrics require
+     * parameters, see {@link #percentile(double)} and {@link #distinctCount(int)}.
+     *
+     * @param metric one of the metric constants of {@link com.mapr.grafana.plugin.model.GrafanaQueryTarget}.
+     * @return accumulator or empty optional if the metric is not supported.
+     */
+    public static Optional<MetricAccumulator> forMetric(String metric) {
+        return Optional.ofNullable(METRIC_ACCUMULATORS.get(metric));
+    }
+
+    /**
+     * Creates accumulator of the percentile, which is estimated by the digest of the bounded size.
+     *
+     * @param percentile percentile, from 0 to 100.
+     * @return accumulator of the percentile.
+     * @throws IllegalArgumentException if the percentile is out of range.
+     */
+    public static MetricAccumulator percentile(double percentile) {
+        return new PercentileAccumulator(percentile);
+    }
+
+    /**
+     * Creates accumulator of the number of distinct values, which is estimated by the HyperLogLog sketch of the fixed
+     * size. Note, that values must be added as the hashes, see {@link DistinctCountTimeSeries}.
+     *
+     * @param precision number of bits of the hash, which select the register of the sketch, see
+     *                  {@link HyperLogLogAccumulator}.
+     * @return accumulator of the distinct count.
+     * @throws IllegalArgumentException if the precision is out of range.
+     */
+    public static HyperLogLogAccumulator distinctCount(int precision) {
+        return new HyperLogLogAccumulator(precision);
+    }
+
+    /**
+     * Accumulator, which state is its datapoint value.
+     */
+    private abstract static class SingleValueAccumulator implements MetricAccumulator {
+
+        private final double empty;
+
+        SingleValueAccumulator(double empty) {
+            this.empty = empty;
+        }
+
+        @Override
+        public int stateSize() {
+            return 1;
+        }
+
+        @Override
+        public void reset(double[] state, int offset) {
+            state[offset] = empty;
+        }
+
+        @Override
+        public double finish(double[] state, int offset) {
+            return state[offset];
+        }
+
+        @Override
+        public void restore(double[] state, int offset, long timestamp, double value) {
+            state[offset] = value;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+/**
+ * Estimates percentile of the values using the merging t-digest of the fixed capacity, so the state of a bucket does
+ * not depend on the number of its values. Values are appended to the buffer of the digest as centroids of a single
+ * value, and the buffer is compressed, once it is full, by merging adjacent centroids, which are allowed to grow only
+ * in the middle of the distribution. So the tails, which high percentiles are estimated from, keep small centroids.
+ * <p>
+ * State: number of centroids, total weight, minimum, maximum and {@link #CAPACITY} pairs of centroid mean and weight.
+ * Centroids are not sorted until the state is compressed.
+ */
+public class PercentileAccumulator implements MetricAccumulator {
+
+    /**
+     * Compression of the digest. Compressed digest contains at most about this number of centroids.
+     */
+    static final int COMPRESSION = 100;
+
+    /**
+     * Number of centroids of the state, which leaves the buffer of at least the half of the capacity after the
+     * compression.
+     */
+    static final int CAPACITY = 2 * COMPRESSION + 2;
+
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    private static final int CENTROIDS = 4;
+
+    private final double quantile;
+
+    /**
+     * @param percentile percentile of the values, from 0 to 100.
+     * @throws IllegalArgumentException if the percentile is out of range.
+     */
+    public PercentileAccumulator(double percentile) {
+
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be within [0, 100], but was " + percentile);
+        }
+
+        this.quantile = percentile / 100;
+    }
+
+    @Override
+    public int stateSize() {
+        return CENTROIDS + 2 * CAPACITY;
+    }
+
+    @Override
+    public void reset(double[] state, int offset) {
+        state[offset + COUNT] = 0;
+        state[offset + TOTAL] = 0;
+        state[offset + MIN] = Double.POSITIVE_INFINITY;
+        state[offset + MAX] = Double.NEGATIVE_INFINITY;
+    }
+
+    @Override
+    public void add(double[] state, int offset, long timestamp, double value) {
+        append(state, offset, value, 1);
+        state[offset + MIN] = Math.min(state[offset + MIN], value);
+        state[offset + MAX] = Math.max(state[offset + MAX], value);
+    }
+
+    @Override
+    public void merge(double[] state, int offset, double[] other, int otherOffset) {
+
+        int count = (int) other[otherOffset + COUNT];
+        for (int i = 0; i < count; i++) {
+            int centroid = otherOffset + CENTROIDS + 2 * i;
+            append(state, offset, other[centroid], other[centroid + 1]);
+        }
+
+        state[offset + MIN] = Math.min(state[offset + MIN], other[otherOffset + MIN]);
+        state[offset + MAX] = Math.max(state[offset + MAX], other[otherOffset + MAX]);
+    }
+
+    /**
+     * Estimates the percentile by linear interpolation between the centers of the centroids. Minimum and maximum are
+     * kept exactly, so they bound the estimate at the tails. State is not modified, so series can be read
+     * concurrently.
+     */
+    @Override
+    public double finish(double[] state, int offset) {
+
+        double[] digest = new double[stateSize()];
+        System.arraycopy(state, offset, digest, 0, digest.length);
+        compress(digest, 0);
+
+        int count = (int) digest[COUNT];
+        double total = digest[TOTAL];
+        double position = quantile * total;
+
+        // Knots are the minimum at the position 0, centers of the centroids and the maximum at the total weight
+        double previousPosition = 0;
+        double previousValue = digest[MIN];
+        double weightSoFar = 0;
+        for (int i = 0; i < count; i++) {
+
+            double mean = digest[CENTROIDS + 2 * i];
+            double weight = digest[CENTROIDS + 2 * i + 1];
+            double center = weightSoFar + weight / 2;
+            if (position <= center) {
+                return interpolate(previousPosition, previousValue, center, mean, position);
+            }
+
+            previousPosition = center;
+            previousValue = mean;
+            weightSoFar += weight;
+        }
+
+        return interpolate(previousPosition, previousValue, total, digest[MAX], position);
+    }
+
+    @Override
+    public void restore(double[] state, int offset, long timestamp, double value) {
+        reset(state, offset);
+        add(state, offset, timestamp, value);
+    }
+
+    private static double interpolate(double fromPosition, double fromValue, double toPosition, double toValue,
+                                      double position) {
+
+        if (toPosition <= fromPosition) {
+            return toValue;
+        }
+
+        return fromValue + (toValue - fromValue) * (position - fromPosition) / (toPosition - fromPosition);
+    }
+
+    private static void append(double[] state, int offset, double mean, double weight) {
+
+        if (state[offset + COUNT] == CAPACITY) {
+            compress(state, offset);
+        }
+
+        int centroid = offset + CENTROIDS + 2 * (int) state[offset + COUNT];
+        state[centroid] = mean;
+        state[centroid + 1] = weight;
+        state[offset + COUNT]++;
+        state[offset + TOTAL] += weight;
+    }
+
+    /**
+     * Sorts centroids by mean and merges the adjacent ones, while the merged centroid fits into a unit of the scale
+     * function <code>k(q) = COMPRESSION / (2 * PI) * asin(2q - 1)</code>.
+     */
+    private static void compress(double[] state, int offset) {
+
+        int count = (int) state[offset + COUNT];
+        if (count <= 1) {
+            return;
+        }
+
+        int centroids = offset + CENTROIDS;
+        sortByMean(state, centroids, count);
+
+        double total = state[offset + TOTAL];
+        double mean = state[centroids];
+        double weight = state[centroids + 1];
+        double weightSoFar = 0;
+        double limit = total * quantileLimit(0);
+        int compressed = 0;
+        for (int i = 1; i < count; i++) {
+
+            double nextMean = state[centroids + 2 * i];
+            double nextWeight = state[centroids + 2 * i + 1];
+            if (weightSoFar + weight + nextWeight <= limit) {
+                weight += nextWeight;
+                mean += (nextMean - mean) * nextWeight / weight;
+                continue;
+            }
+
+            state[centroids + 2 * compressed] = mean;
+            state[centroids + 2 * compressed + 1] = weight;
+            compressed++;
+
+            weightSoFar += weight;
+            limit = total * quantileLimit(weightSoFar / total);
+            mean = nextMean;
+            weight = nextWeight;
+        }
+
+        state[centroids + 2 * compressed] = mean;
+        state[centroids + 2 * compressed + 1] = weight;
+        state[offset + COUNT] = compressed + 1;
+    }
+
+    /**
+     * Returns the largest quantile, which the centroid starting at the specified quantile may reach.
+     */
+    private static double quantileLimit(double quantile) {
+
+        // Scale function ends at COMPRESSION / 4, so the last unit of the scale is not bounded
+        double k = COMPRESSION / (2 * Math.PI) * Math.asin(2 * quantile - 1);
+        if (k + 1 >= COMPRESSION / 4.0) {
+            return 1;
+        }
+
+        return (Math.sin((k + 1) * 2 * Math.PI / COMPRESSION) + 1) / 2;
+    }
+
+    /**
+     * Heap sort of the pairs of mean and weight by mean, which does not allocate.
+     */
+    private static void sortByMean(double[] state, int from, int count) {
+
+        for (int root = count / 2 - 1; root >= 0; root--) {
+            siftDown(state, from, root, count);
+        }
+
+        for (int end = count - 1; end > 0; end--) {
+            swap(state, from, 0, end);
+            siftDown(state, from, 0, end);
+        }
+    }
+
+    private static void siftDown(double[] state, int from, int root, int count) {
+
+        int parent = root;
+        while (2 * parent + 1 < count) {
+
+            int child = 2 * parent + 1;
+            if (child + 1 < count && state[from + 2 * (child + 1)] > state[from + 2 * child]) {
+                child++;
+            }
+
+            if (state[from + 2 * parent] >= state[from + 2 * child]) {
+                return;
+            }
+
+            swap(state, from, parent, child);
+            parent = child;
+        }
+    }
+
+    private static void swap(double[] state, int from, int i, int j) {
+
+        int first = from + 2 * i;
+        int second = from + 2 * j;
+
+        double mean = state[first];
+        double weight = state[first + 1];
+        state[first] = state[second];
+        state[first + 1] = state[second + 1];
+        state[second] = mean;
+        state[second + 1] = weight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PercentileAccumulator that = (PercentileAccumulator) o;
+        return Double.compare(that.quantile, quantile) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(quantile);
+    }
+
+    @Override
+    public String toString() {
+        return "PercentileAccumulator{" +
+                "percentile=" + quantile * 100 +
+                '}';
+    }
+}
@@ -0,0 +1,96 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mapr.grafana.plugin.model.QueryExplanation;
+
+/**
+ * Describes how the time series was computed. Truncated series only cover the documents, which were scanned before
+ * the scan budget was exhausted. <code>scanned_until</code> is the timestamp of the last scanned document, so the
+ * datapoints before its bucket are complete, while the bucket itself and the later ones are missing or incomplete.
+ * Documents without valid time or metric value are counted as <code>skipped_documents</code>.
+ * Explanation of the queries is only present if it was requested by the target.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TimeSeriesMeta {
+
+    public static final String DOCUMENT_LIMIT_REASON = "document_limit";
+    public static final String TIME_LIMIT_REASON = "time_limit";
+
+    private boolean truncated;
+
+    @JsonProperty("truncation_reason")
+    private String truncationReason;
+
+    @JsonProperty("scanned_documents")
+    private long scannedDocuments;
+
+    @JsonProperty("scanned_until")
+    private Long scannedUntil;
+
+    @JsonProperty("skipped_documents")
+    private Long skippedDocuments;
+
+    private QueryExplanation explain;
+
+    private TimeSeriesMeta(boolean truncated, String truncationReason, long scannedDocuments, Long scannedUntil) {
+        this.truncated = truncated;
+        this.truncationReason = truncationReason;
+        this.scannedDocuments = scannedDocuments;
+        this.scannedUntil = scannedUntil;
+    }
+
+    public static TimeSeriesMeta complete(long scannedDocuments) {
+        return new TimeSeriesMeta(false, null, scannedDocuments, null);
+    }
+
+    public static TimeSeriesMeta truncated(String reason, long scannedDocuments, Long scannedUntil) {
+        return new TimeSeriesMeta(true, reason, scannedDocuments, scannedUntil);
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public String getTruncationReason() {
+        return truncationReason;
+    }
+
+    public long getScannedDocuments() {
+        return scannedDocuments;
+    }
+
+    public Long getScannedUntil() {
+        return scannedUntil;
+    }
+
+    public Long getSkippedDocuments() {
+        return skippedDocuments;
+    }
+
+    public TimeSeriesMeta skipped(long skippedDocuments) {
+        this.skippedDocuments = skippedDocuments;
+        return this;
+    }
+
+    public QueryExplanation getExplain() {
+        return explain;
+    }
+
+    public TimeSeriesMeta explainedBy(QueryExplanation explain) {
+        this.explain = explain;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesMeta{" +
+                "truncated=" + truncated +
+                ", truncationReason='" + truncationReason + '\'' +
+                ", scannedDocuments=" + scannedDocuments +
+                ", scannedUntil=" + scannedUntil +
+                ", skippedDocuments=" + skippedDocuments +
+                ", explain=" + explain +
+                '}';
+    }
+}
@@ -4,6 +4,7 @@ import com.mapr.grafana.plugin.model.DatasourceStatus;
 import com.mapr.grafana.plugin.model.GrafanaMetrics;
 import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -15,4 +16,9 @@ public interface MapRDBService {
 
     Set<GrafanaMetrics> query(GrafanaQueryRequest queryRequest);
 
+    /**
+     * @return counters of the query execution, such as number of performed and coalesced MapR-DB scans.
+     */
+    Map<String, Long> statistics();
+
 }
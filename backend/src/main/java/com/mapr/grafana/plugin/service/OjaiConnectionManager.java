@@ -0,0 +1,53 @@
+package com.mapr.grafana.plugin.service;
+
+import com.mapr.grafana.plugin.model.DatasourceStatus;
+import org.ojai.store.Connection;
+
+/**
+ * Owns the OJAI connection, which is shared across all of the requests. Implementations are responsible of keeping the
+ * connection healthy and re-establishing it when it fails.
+ */
+public interface OjaiConnectionManager {
+
+    /**
+     * Lease of the shared OJAI connection. Connection, which is replaced after failed validation, is closed once all
+     * of its leases are released, so queries, which are still using it, are not broken by the replacement.
+     */
+    interface ConnectionLease extends AutoCloseable {
+
+        /**
+         * Returns leased connection. Note, that returned connection must not be closed by the caller.
+         */
+        Connection getConnection();
+
+        /**
+         * Releases the lease. Connection must not be used afterwards.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Leases shared OJAI connection for the duration of the query.
+     *
+     * @return lease of the shared OJAI connection, which must be closed once the query is completed.
+     * @throws IllegalStateException in case when connection is not established.
+     */
+    ConnectionLease lease();
+
+    /**
+     * Returns status, which was determined by the last check of the connection. Does not access the cluster, unless
+     * the connection is not checked in the background.
+     *
+     * @return cached status of the connection along with the time and latency of the last check.
+     */
+    DatasourceStatus getStatus();
+
+    /**
+     * Checks the connection right away and re-establishes it if the check fails.
+     *
+     * @return status of the connection after the check.
+     */
+    DatasourceStatus validate();
+
+}
@@ -0,0 +1,151 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.timeseries.AbstractGrafanaTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.AbstractGrafanaTimeSeries.Datapoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps datapoints of the completed buckets of time series, so refresh of the dashboard only scans the documents
+ * after the watermark instead of the whole range. Bucket is considered completed when it ends before the watermark,
+ * which lags behind the current time by the late data window. Documents, which arrive later than the late data window,
+ * are not reflected in the completed buckets.
+ * <p>
+ * Stitching relies on buckets being aligned to the epoch multiples of the interval, see
+ * {@link AbstractGrafanaTimeSeries}.
+ */
+@Component
+public class IncrementalTimeSeriesStore {
+
+    private static class Checkpoint {
+
+        final long from;
+        final long watermark;
+        final List<Datapoint> completed;
+
+        Checkpoint(long from, long watermark, List<Datapoint> completed) {
+            this.from = from;
+            this.watermark = watermark;
+            this.completed = completed;
+        }
+    }
+
+    private final boolean enabled;
+    private final long lateDataWindowMs;
+    private final LongSupplier clock;
+    private final Map<TargetQueryKey, Checkpoint> checkpoints;
+
+    private final LongAdder resumedScans = new LongAdder();
+    private final LongAdder fullScans = new LongAdder();
+
+    @Autowired
+    public IncrementalTimeSeriesStore(@Value("${query.incremental.enabled:false}") boolean enabled,
+                                      @Value("${query.incremental.late-data-window-ms:60000}") long lateDataWindowMs,
+                                      @Value("${query.incremental.max-series:1000}") int maxSeries) {
+
+        this(enabled, lateDataWindowMs, maxSeries, System::currentTimeMillis);
+    }
+
+    IncrementalTimeSeriesStore(boolean enabled, long lateDataWindowMs, int maxSeries, LongSupplier clock) {
+        this.enabled = enabled;
+        this.lateDataWindowMs = lateDataWindowMs;
+        this.clock = clock;
+        this.checkpoints = new LinkedHashMap<TargetQueryKey, Checkpoint>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TargetQueryKey, Checkpoint> eldest) {
+                return size() > maxSeries;
+            }
+        };
+    }
+
+    /**
+     * Creates store, which never keeps any datapoints.
+     *
+     * @return disabled store.
+     */
+    public static IncrementalTimeSeriesStore disabled() {
+        return new IncrementalTimeSeriesStore(false, 0, 0, System::currentTimeMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds completed buckets of the previous query of the same series to the specified series and returns the range,
+     * which is left to scan. If there are no suitable completed buckets, the whole range is returned.
+     *
+     * @param seriesKey key of the series, which does not depend on the range.
+     * @param range     aligned range of the query, which must have both bounds.
+     * @param series    empty series.
+     * @return range which must be scanned to complete the series.
+     */
+    public synchronized GrafanaQueryRequest.Range resume(TargetQueryKey seriesKey, GrafanaQueryRequest.Range range,
+                                                         AbstractGrafanaTimeSeries series) {
+
+        Checkpoint checkpoint = checkpoints.get(seriesKey);
+        long from = range.getFrom().getTime();
+        long to = range.getTo().getTime();
+        if (checkpoint == null || checkpoint.from > from || checkpoint.watermark <= from || checkpoint.watermark > to) {
+            fullScans.increment();
+            return range;
+        }
+
+        series.addCompletedDatapoints(checkpoint.completed.stream()
+                .filter(datapoint -> datapoint.getTimestamp() >= from)
+                .collect(Collectors.toList()));
+        resumedScans.increment();
+
+        GrafanaQueryRequest.Range tail = new GrafanaQueryRequest.Range();
+        tail.setFrom(new Date(checkpoint.watermark));
+        tail.setTo(range.getTo());
+
+        return tail;
+    }
+
+    /**
+     * Stores completed buckets of the series, so they can be reused by the next query.
+     *
+     * @param seriesKey  key of the series, which does not depend on the range.
+     * @param range      aligned range of the query, which must have both bounds.
+     * @param intervalMs interval of the series buckets.
+     * @param series     series, which contains all of the documents of the range.
+     * @param truncated  whether the scan was truncated by the limit, so buckets may be incomplete.
+     */
+    public synchronized void checkpoint(TargetQueryKey seriesKey, GrafanaQueryRequest.Range range, long intervalMs,
+                                        AbstractGrafanaTimeSeries series, boolean truncated) {
+
+        long from = range.getFrom().getTime();
+        long settled = Math.min(range.getTo().getTime(), clock.getAsLong() - lateDataWindowMs);
+        long watermark = Math.floorDiv(settled, intervalMs) * intervalMs;
+        if (truncated || watermark <= from) {
+            checkpoints.remove(seriesKey);
+            return;
+        }
+
+        List<Datapoint> completed = series.getDatapoints().stream()
+                .filter(datapoint -> datapoint.getTimestamp() < watermark)
+                .map(datapoint -> new Datapoint(datapoint.getValue(), datapoint.getTimestamp()))
+                .collect(Collectors.toList());
+
+        checkpoints.put(seriesKey, new Checkpoint(from, watermark, completed));
+    }
+
+    public synchronized Map<String, Long> statistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("incremental.resumedScans", resumedScans.sum());
+        statistics.put("incremental.fullScans", fullScans.sum());
+        statistics.put("incremental.series", (long) checkpoints.size());
+        return statistics;
+    }
+}
@@ -0,0 +1,251 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mapr.db.Admin;
+import com.mapr.db.MapRDB;
+import com.mapr.db.index.IndexDesc;
+import com.mapr.db.index.IndexFieldDesc;
+import org.apache.hadoop.fs.Path;
+import org.ojai.FieldPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses secondary index, which is hinted to the query of the target. Explicit index name of the target is used as
+ * is. Index is chosen automatically if the target asks for {@link #AUTO_HINT} or if automatic selection is enabled by
+ * default and the target does not specify a hint.
+ * <p>
+ * Automatically chosen index must be enabled and lead with the time field or one of the fields of the condition, so
+ * the predicate can be turned into the index range scan. Among such indexes, the one which covers all of the queried
+ * fields is preferred, since documents are read from the index without lookups of the primary table. Next, indexes
+ * which include more of the predicate fields into their keys are preferred. Indexes of the table are listed once per
+ * configured period.
+ */
+@Component
+public class IndexSelector {
+
+    public static final String AUTO_HINT = "auto";
+
+    private static final Logger log = LoggerFactory.getLogger(IndexSelector.class);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static class Listed {
+
+        final List<IndexDesc> indexes;
+        final long listedAt;
+
+        Listed(List<IndexDesc> indexes, long listedAt) {
+            this.indexes = indexes;
+            this.listedAt = listedAt;
+        }
+    }
+
+    private final boolean autoSelectByDefault;
+    private final long ttlMs;
+    private final Function<String, Collection<IndexDesc>> indexLister;
+    private final LongSupplier clock;
+    private final Map<String, Listed> listedIndexes = new ConcurrentHashMap<>();
+
+    private final LongAdder explicitHints = new LongAdder();
+    private final LongAdder selectedHints = new LongAdder();
+    private final LongAdder listings = new LongAdder();
+
+    @Autowired
+    public IndexSelector(@Value("${query.index.auto-select.enabled:false}") boolean autoSelectByDefault,
+                         @Value("${query.index.ttl-ms:600000}") long ttlMs) {
+
+        this(autoSelectByDefault, ttlMs, IndexSelector::listIndexes, System::currentTimeMillis);
+    }
+
+    IndexSelector(boolean autoSelectByDefault, long ttlMs, Function<String, Collection<IndexDesc>> indexLister,
+                  LongSupplier clock) {
+
+        this.autoSelectByDefault = autoSelectByDefault;
+        this.ttlMs = ttlMs;
+        this.indexLister = indexLister;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates selector, which only passes explicit index names of the targets and never lists indexes of the table.
+     *
+     * @return selector without automatic selection.
+     */
+    public static IndexSelector explicitOnly() {
+        return new IndexSelector(false, 0, table -> Collections.emptyList(), System::currentTimeMillis);
+    }
+
+    /**
+     * Returns name of the index, which should be hinted to the query.
+     *
+     * @param table         table path.
+     * @param hint          index hint of the target: index name, {@link #AUTO_HINT} or empty.
+     * @param timeField     time field path, which is constrained by the range condition. May be <code>null</code>.
+     * @param condition     JSON condition of the target. May be <code>null</code>.
+     * @param queriedFields fields, which are projected by the query.
+     * @return index name or empty optional if the query should be left to the optimizer.
+     */
+    public Optional<String> select(String table, String hint, String timeField, String condition,
+                                   Collection<String> queriedFields) {
+
+        boolean hintSpecified = hint != null && !hint.trim().isEmpty();
+        if (hintSpecified && !AUTO_HINT.equalsIgnoreCase(hint.trim())) {
+            explicitHints.increment();
+            return Optional.of(hint.trim());
+        }
+
+        if (!hintSpecified && !autoSelectByDefault) {
+            return Optional.empty();
+        }
+
+        Set<String> predicateFields = new LinkedHashSet<>(conditionFields(condition));
+        if (timeField != null && !timeField.isEmpty()) {
+            predicateFields.add(normalize(timeField));
+        }
+
+        Set<String> requiredFields = new HashSet<>(predicateFields);
+        if (queriedFields != null) {
+            queriedFields.stream().filter(Objects::nonNull).map(IndexSelector::normalize).forEach(requiredFields::add);
+        }
+
+        Optional<String> selected = indexes(table).stream()
+                .filter(index -> !index.isDisabled())
+                .filter(index -> predicateFields.contains(leadingField(index)))
+                .sorted(Comparator.comparing((IndexDesc index) -> !covers(index, requiredFields))
+                        .thenComparing(index -> -keyFields(index, predicateFields))
+                        .thenComparing(IndexDesc::getIndexName))
+                .map(IndexDesc::getIndexName)
+                .findFirst();
+
+        selected.ifPresent(name -> {
+            selectedHints.increment();
+            log.debug("Selected index '{}' of table '{}' for fields: {}", name, table, predicateFields);
+        });
+
+        return selected;
+    }
+
+    public Map<String, Long> statistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("indexes.explicitHints", explicitHints.sum());
+        statistics.put("indexes.selectedHints", selectedHints.sum());
+        statistics.put("indexes.listings", listings.sum());
+        return statistics;
+    }
+
+    /**
+     * Extracts field paths, which are referenced by the JSON condition. Condition operators start with '$', so every
+     * other object key is a field path.
+     *
+     * @param condition JSON condition.
+     * @return normalized field paths or empty set if condition is not specified or can not be parsed.
+     */
+    static Set<String> conditionFields(String condition) {
+
+        Set<String> fields = new LinkedHashSet<>();
+        if (condition == null || condition.isEmpty()) {
+            return fields;
+        }
+
+        try {
+            collectFields(mapper.readTree(condition), fields);
+        } catch (IOException e) {
+            log.debug("Can not extract fields of the condition: '{}'", condition);
+        }
+
+        return fields;
+    }
+
+    private static void collectFields(JsonNode node, Set<String> fields) {
+
+        if (node.isArray()) {
+            node.forEach(element -> collectFields(element, fields));
+            return;
+        }
+
+        Iterator<Map.Entry<String, JsonNode>> children = node.fields();
+        while (children.hasNext()) {
+            Map.Entry<String, JsonNode> child = children.next();
+            if (child.getKey().startsWith("$")) {
+                collectFields(child.getValue(), fields);
+            } else {
+                fields.add(normalize(child.getKey()));
+            }
+        }
+    }
+
+    private List<IndexDesc> indexes(String table) {
+
+        long now = clock.getAsLong();
+        Listed listed = listedIndexes.get(table);
+        if (listed != null && listed.listedAt + ttlMs > now) {
+            return listed.indexes;
+        }
+
+        List<IndexDesc> indexes;
+        try {
+            listings.increment();
+            indexes = new ArrayList<>(indexLister.apply(table));
+        } catch (Exception e) {
+            log.warn("Can not list indexes of table '{}'. Cause: {}", table, e.getMessage());
+            indexes = Collections.emptyList();
+        }
+
+        listedIndexes.put(table, new Listed(indexes, now));
+        return indexes;
+    }
+
+    private static boolean covers(IndexDesc index, Set<String> requiredFields) {
+
+        Set<String> fields = new HashSet<>(indexedFields(index));
+        if (index.getIncludedFields() != null) {
+            index.getIncludedFields().forEach(field -> fields.add(field.getFieldPath().asPathString()));
+        }
+
+        return fields.containsAll(requiredFields);
+    }
+
+    private static long keyFields(IndexDesc index, Set<String> predicateFields) {
+        return indexedFields(index).stream().filter(predicateFields::contains).count();
+    }
+
+    private static String leadingField(IndexDesc index) {
+        List<String> indexed = indexedFields(index);
+        return (indexed.isEmpty()) ? null : indexed.get(0);
+    }
+
+    private static List<String> indexedFields(IndexDesc index) {
+
+        if (index.getIndexedFields() == null) {
+            return Collections.emptyList();
+        }
+
+        return index.getIndexedFields().stream()
+                .map(IndexFieldDesc::getFieldPath)
+                .map(FieldPath::asPathString)
+                .collect(Collectors.toList());
+    }
+
+    private static String normalize(String fieldPath) {
+        return FieldPath.parseFrom(fieldPath).asPathString();
+    }
+
+    private static Collection<IndexDesc> listIndexes(String table) {
+        try (Admin admin = MapRDB.newAdmin()) {
+            return admin.getTableIndexes(new Path(table));
+        }
+    }
+}
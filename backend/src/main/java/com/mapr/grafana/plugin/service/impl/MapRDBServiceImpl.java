@@ -4,31 +4,43 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.mapr.db.MapRDB;
+import com.mapr.grafana.plugin.config.ExecutorConfig;
 import com.mapr.db.exceptions.TableNotFoundException;
 import com.mapr.grafana.plugin.model.*;
-import com.mapr.grafana.plugin.model.timeseries.AggregationTimeSeries;
-import com.mapr.grafana.plugin.model.timeseries.DocumentCountTimeSeries;
-import com.mapr.grafana.plugin.model.timeseries.FieldAverageTimeSeries;
-import com.mapr.grafana.plugin.model.timeseries.GrafanaTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.AbstractGrafanaTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.AccumulatorTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.CompositeTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.DistinctCountTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.DownsampledFieldValueTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.GroupedTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.HistogramBins;
+import com.mapr.grafana.plugin.model.timeseries.HistogramTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.HyperLogLogAccumulator;
+import com.mapr.grafana.plugin.model.timeseries.MetricAccumulator;
+import com.mapr.grafana.plugin.model.timeseries.MetricAccumulators;
+import com.mapr.grafana.plugin.model.timeseries.TimeSeriesMeta;
 import com.mapr.grafana.plugin.service.MapRDBService;
+import com.mapr.grafana.plugin.service.OjaiConnectionManager;
 import com.mapr.grafana.plugin.util.MetricsQueryBuilder;
+import com.mapr.grafana.plugin.util.SingleFlight;
+import com.mapr.grafana.plugin.util.TimeFieldType;
 import org.ojai.Document;
-import org.ojai.DocumentStream;
-import org.ojai.exceptions.OjaiException;
+import org.ojai.DocumentReader;
 import org.ojai.store.Connection;
-import org.ojai.store.DriverManager;
 import org.ojai.store.Query;
+import org.ojai.store.QueryResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.mapr.grafana.plugin.model.GrafanaQueryTarget.*;
@@ -40,102 +52,300 @@ import static com.mapr.grafana.plugin.model.GrafanaQueryTarget.*;
 @Service
 public class MapRDBServiceImpl implements MapRDBService {
 
-    // FIXME use @Value
-    public static final long CONNECTION_ATTEMPTS = 1;
-    public static final long CONNECTION_RETRY_TIMEOUT_MS = 1000;
-
     public static final long DEFAULT_RAW_DOCUMENT_LIMIT = 500;
     public static final long MAX_RAW_DOCUMENT_LIMIT = 5000;
+    public static final int DEFAULT_TOP_K = 20;
+    public static final int MAX_TOP_K = 1000;
+    public static final int DEFAULT_HISTOGRAM_BINS = 20;
+
+    /**
+     * Maximum size of the bucket of the metric, which can be grouped. Count, min, max, avg and value fit it, while
+     * percentiles and distinct counts take kilobytes per bucket.
+     */
+    private static final int MAX_GROUPED_BUCKET_SIZE_BYTES = 64;
 
     private static final Logger log = LoggerFactory.getLogger(MapRDBServiceImpl.class);
 
-    private static final String CONNECTION_URL = "ojai:mapr:";
     private static final ObjectMapper mapper = new ObjectMapper();
 
-    private Connection connection;
-    private DatasourceStatus status;
+    private final OjaiConnectionManager connectionManager;
+    private final ExecutorService targetQueryExecutor;
+    private final long requestTimeoutMs;
+    private final TargetResultCache resultCache;
+    private final IncrementalTimeSeriesStore incrementalStore;
+    private final TimeFieldTypeDetector timeFieldTypeDetector;
+    private final TimeSlicedScanner timeSlicedScanner;
+    private final ScanBudget scanBudget;
+    private final IndexSelector indexSelector;
+    private final boolean unorderedAggregation;
+    private final boolean documentReaderAggregation;
+    private final boolean targetFusion;
+    private final HyperLogLogAccumulator distinctCountAccumulator;
+    private final int maxGroups;
+    private final SingleFlight<TargetQueryKey, Optional<GrafanaMetrics>> inFlightQueries;
+    private final SingleFlight<List<TargetQueryKey>, Map<TargetQueryKey, Optional<GrafanaMetrics>>>
+            fusedInFlightQueries;
+
+    private final LongAdder orderedScans = new LongAdder();
+    private final LongAdder orderedScanMs = new LongAdder();
+    private final LongAdder unorderedScans = new LongAdder();
+    private final LongAdder unorderedScanMs = new LongAdder();
+    private final LongAdder fusedScans = new LongAdder();
+    private final LongAdder fusedTargets = new LongAdder();
+
+    @Autowired
+    public MapRDBServiceImpl(OjaiConnectionManager connectionManager,
+                             @Qualifier(ExecutorConfig.TARGET_QUERY_EXECUTOR) ExecutorService targetQueryExecutor,
+                             @Qualifier(ExecutorConfig.SHARED_SCAN_EXECUTOR) ExecutorService sharedScanExecutor,
+                             TargetResultCache resultCache,
+                             IncrementalTimeSeriesStore incrementalStore,
+                             TimeFieldTypeDetector timeFieldTypeDetector,
+                             TimeSlicedScanner timeSlicedScanner,
+                             ScanBudget scanBudget,
+                             IndexSelector indexSelector,
+                             QuerySettings settings) {
+
+        this.connectionManager = connectionManager;
+        this.targetQueryExecutor = targetQueryExecutor;
+        this.requestTimeoutMs = settings.getRequestTimeoutMs();
+        this.resultCache = resultCache;
+        this.incrementalStore = incrementalStore;
+        this.timeFieldTypeDetector = timeFieldTypeDetector;
+        this.timeSlicedScanner = timeSlicedScanner;
+        this.scanBudget = scanBudget;
+        this.indexSelector = indexSelector;
+        this.unorderedAggregation = settings.isUnorderedAggregation();
+        this.documentReaderAggregation = settings.isDocumentReaderAggregation();
+        this.targetFusion = settings.isTargetFusion();
+        this.distinctCountAccumulator = MetricAccumulators.distinctCount(settings.getDistinctCountPrecision());
+        this.maxGroups = settings.getMaxGroups();
+        this.inFlightQueries = new SingleFlight<>(sharedScanExecutor);
+        this.fusedInFlightQueries = new SingleFlight<>(sharedScanExecutor);
+    }
 
-    public MapRDBServiceImpl() {
-        tryEstablishOjaiConnection();
+    @Override
+    public DatasourceStatus status() {
+        DatasourceStatus status = connectionManager.getStatus();
+        log.debug("MapR-DB JSON Datasource status: {}", status);
+        return status;
     }
 
-    private void tryEstablishOjaiConnection() {
+    @Override
+    public Map<String, Long> statistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("scans.executed", inFlightQueries.getExecuted());
+        statistics.put("scans.coalesced", inFlightQueries.getCoalesced());
+        statistics.put("scans.inFlight", (long) inFlightQueries.getInFlight());
+        statistics.put("scans.timeSeries.ordered", orderedScans.sum());
+        statistics.put("scans.timeSeries.orderedMs", orderedScanMs.sum());
+        statistics.put("scans.timeSeries.unordered", unorderedScans.sum());
+        statistics.put("scans.timeSeries.unorderedMs", unorderedScanMs.sum());
+        statistics.put("scans.fused", fusedScans.sum());
+        statistics.put("scans.fusedTargets", fusedTargets.sum());
+        statistics.put("scans.fusedCoalesced", fusedInFlightQueries.getCoalesced());
+        statistics.putAll(resultCache.statistics());
+        statistics.putAll(incrementalStore.statistics());
+        statistics.putAll(timeFieldTypeDetector.statistics());
+        statistics.putAll(timeSlicedScanner.statistics());
+        statistics.putAll(indexSelector.statistics());
+        return statistics;
+    }
+
+    @Override
+    public Set<GrafanaMetrics> query(GrafanaQueryRequest queryRequest) {
+
+        log.debug("Performing query: {}", queryRequest);
+
+        long start = System.currentTimeMillis();
+        long deadline = start + requestTimeoutMs;
+
+        List<GrafanaQueryTarget> targets = new ArrayList<>();
+        queryRequest.getTargets().stream()
+                .filter(target -> target.getTable() != null && !target.getTable().isEmpty())
+                .forEach(targets::add);
 
-        for (int i = 0; i < CONNECTION_ATTEMPTS && this.connection == null; i++) {
-            log.debug("Trying to create OJAI connection. Attempt: '{}'", i);
+        Map<GrafanaQueryTarget, Future<Optional<GrafanaMetrics>>> targetFutures = new LinkedHashMap<>();
+        for (List<GrafanaQueryTarget> group : groupTargets(queryRequest, targets)) {
             try {
-                // Create an OJAI connection to MapR cluster
-                MapRDB.tableExists("/foo"); // Trying to access the cluster to test the connection
-                this.connection = DriverManager.getConnection(CONNECTION_URL);
-                this.status = DatasourceStatus.ok();
-            } catch (OjaiException e) {
-                this.status = DatasourceStatus.error("Can not create OJAI connection", e.getMessage());
+                if (group.size() == 1) {
+                    GrafanaQueryTarget target = group.get(0);
+                    targetFutures.put(target, targetQueryExecutor.submit(() -> queryTarget(queryRequest, target)));
+                } else {
+                    Future<Map<GrafanaQueryTarget, Optional<GrafanaMetrics>>> groupFuture =
+                            targetQueryExecutor.submit(() -> queryFusedTargets(queryRequest, group));
+                    group.forEach(target -> targetFutures.put(target, new FusedTargetFuture(groupFuture, target)));
+                }
+            } catch (RejectedExecutionException e) {
+                // Targets are never queried by the request thread, which would escape the request timeout, so the
+                // response is partial while the pool is saturated
+                log.warn("Target query executor is saturated. Targets {} will be skipped",
+                        group.stream().map(GrafanaQueryTarget::getRefId).collect(Collectors.toList()));
             }
+        }
 
+        Set<GrafanaMetrics> metrics = new HashSet<>();
+        for (Map.Entry<GrafanaQueryTarget, Future<Optional<GrafanaMetrics>>> targetFuture : targetFutures.entrySet()) {
+
+            GrafanaQueryTarget target = targetFuture.getKey();
+            Future<Optional<GrafanaMetrics>> future = targetFuture.getValue();
             try {
-                Thread.sleep(CONNECTION_RETRY_TIMEOUT_MS);
+                long remainingMs = Math.max(0, deadline - System.currentTimeMillis());
+                future.get(remainingMs, TimeUnit.MILLISECONDS).ifPresent(m -> CompositeTimeSeries.addTo(metrics, m));
+            } catch (TimeoutException e) {
+                log.warn("Target '{}' was not queried within request timeout of {} ms and will be skipped",
+                        target.getRefId(), requestTimeoutMs);
+                future.cancel(true);
+            } catch (ExecutionException e) {
+                log.warn("Exception occurred while querying target: " + target, e.getCause());
             } catch (InterruptedException e) {
-                log.warn("InterruptedException while waiting for the next OJAI connection attempt", e);
+                log.warn("Interrupted while waiting for target '{}'", target.getRefId());
+                targetFutures.values().forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                break;
             }
         }
+
+        log.debug("Queried {} of {} targets in {} ms", metrics.size(), targetFutures.size(),
+                System.currentTimeMillis() - start);
+
+        return metrics;
     }
 
-    private void ensureConnectionEstablished() {
-        this.connection = null;
-        tryEstablishOjaiConnection();
-        if (this.connection == null) {
-            throw new IllegalStateException("OJAI connection can not be established after " +
-                    CONNECTION_ATTEMPTS + "attempts");
+    /**
+     * Queries the target with the leased connection. Shared scans hold their own leases, since they may still be
+     * scanning after the request is completed or all of their targets are detached.
+     */
+    private <T> T withConnection(Function<Connection, T> query) {
+        try (OjaiConnectionManager.ConnectionLease lease = connectionManager.lease()) {
+            return query.apply(lease.getConnection());
         }
     }
 
-    @Override
-    public DatasourceStatus status() {
-        this.connection = null;
-        tryEstablishOjaiConnection();
-        log.debug("MapR-DB JSON Datasource status: {}", status);
-        return status;
+    /**
+     * Groups time series targets, which can be computed by the same scan: targets of the same table, time field,
+     * metric field, condition, limit, index hint and series interval, which differ only in metric. Such targets scan
+     * the same documents, so the fused scan yields the same series, even if it is truncated. Other targets, including
+     * the targets grouped by field, form groups of their own. Targets are not fused if the series are resumed by the
+     * incremental store or aggregated from the document readers, since fused scans do neither.
+     */
+    private Collection<List<GrafanaQueryTarget>> groupTargets(GrafanaQueryRequest queryRequest,
+                                                              List<GrafanaQueryTarget> targets) {
+
+        Map<Object, List<GrafanaQueryTarget>> groups = new LinkedHashMap<>();
+        for (GrafanaQueryTarget target : targets) {
+
+            Object groupKey = target;
+            if (fusionApplicable() && TIME_SERIES_TYPE.equals(target.getType()) && !isGrouped(target)) {
+                groupKey = Arrays.asList(target.getTable(), target.getTimeField(), target.getMetricField(),
+                        target.getCondition(), target.getLimit(), target.getIndexHint(),
+                        seriesIntervalMs(queryRequest, target));
+            }
+
+            groups.computeIfAbsent(groupKey, key -> new ArrayList<>()).add(target);
+        }
+
+        return groups.values();
     }
 
-    @Override
-    public Set<GrafanaMetrics> query(GrafanaQueryRequest queryRequest) {
+    private boolean fusionApplicable() {
+        return targetFusion && !incrementalStore.isEnabled() && !documentReaderAggregation;
+    }
 
-        ensureConnectionEstablished();
-        log.debug("Performing query: {}", queryRequest);
+    /**
+     * Returns interval of the series buckets. 'Field value' targets with LTTB downsampling use wider buckets, so the
+     * series does not exceed 'maxDataPoints' of the request.
+     */
+    private static long seriesIntervalMs(GrafanaQueryRequest queryRequest, GrafanaQueryTarget target) {
 
-        return queryRequest.getTargets().stream()
-                .filter(target -> target.getTable() != null && !target.getTable().isEmpty())
-                .map(target -> {
-                    if (GrafanaQueryTarget.RAW_DOCUMENT_TYPE.equals(target.getType())) {
-                        return queryRawDocuments(queryRequest, target);
-                    } else if (GrafanaQueryTarget.TIME_SERIES_TYPE.equals(target.getType())) {
-                        return queryTimeSeries(queryRequest, target);
-                    } else {
-                        return Optional.<GrafanaMetrics>empty();
-                    }
-                })
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toSet());
+        GrafanaQueryRequest.Range range = queryRequest.getRange();
+        if (!isDownsampled(target) || queryRequest.getMaxDataPoints() == null || range.getFrom() == null ||
+                range.getTo() == null) {
+
+            return queryRequest.getIntervalMs();
+        }
+
+        long rangeMs = range.getTo().getTime() - range.getFrom().getTime();
+        return DownsampledFieldValueTimeSeries.intervalFor(rangeMs, queryRequest.getIntervalMs(),
+                queryRequest.getMaxDataPoints());
+    }
+
+    private static boolean isGrouped(GrafanaQueryTarget target) {
+        return target.getGroupBy() != null && !target.getGroupBy().isEmpty();
+    }
+
+    private static boolean isDownsampled(GrafanaQueryTarget target) {
+        return TIME_SERIES_TYPE.equals(target.getType()) && FIELD_VALUE_METRIC.equals(target.getMetric()) &&
+                LTTB_DOWNSAMPLING.equals(target.getDownsampling());
+    }
+
+    private Optional<GrafanaMetrics> queryTarget(GrafanaQueryRequest queryRequest, GrafanaQueryTarget target) {
+
+        long start = System.currentTimeMillis();
+        long intervalMs = seriesIntervalMs(queryRequest, target);
+
+        // Time series are queried within the range aligned to the interval, so requests for slightly different
+        // ranges, such as 'last 24h' opened by many users at once, are able to share the single scan and cached
+        // result. Buckets cover the aligned range anyway, while the other targets must not return documents outside
+        // of the requested range
+        GrafanaQueryRequest.Range range = GrafanaQueryTarget.TIME_SERIES_TYPE.equals(target.getType())
+                ? queryRequest.getRange().alignedTo(intervalMs)
+                : queryRequest.getRange();
+
+        Function<Connection, Optional<GrafanaMetrics>> scan;
+        if (GrafanaQueryTarget.RAW_DOCUMENT_TYPE.equals(target.getType())) {
+            scan = connection -> queryRawDocuments(connection, range, target).map(GrafanaMetrics.class::cast);
+        } else if (GrafanaQueryTarget.TIME_SERIES_TYPE.equals(target.getType())) {
+            scan = connection -> queryTimeSeries(connection, range, intervalMs, target);
+        } else if (GrafanaQueryTarget.TOP_VALUES_TYPE.equals(target.getType())) {
+            scan = connection -> queryTopValues(connection, range, target).map(GrafanaMetrics.class::cast);
+        } else {
+            return Optional.empty();
+        }
+
+        TargetQueryKey key = TargetQueryKey.of(target, range, intervalMs);
+        Optional<GrafanaMetrics> metrics = resultCache.get(key);
+        if (!metrics.isPresent()) {
+            metrics = inFlightQueries.execute(key, () -> {
+                Optional<GrafanaMetrics> scanned = withConnection(scan);
+                scanned.ifPresent(m -> resultCache.put(key, m));
+                return scanned;
+            });
+        }
+
+        log.debug("Target '{}' of type '{}' on table '{}' queried in {} ms", target.getRefId(), target.getType(),
+                target.getTable(), System.currentTimeMillis() - start);
+
+        return metrics;
     }
 
-    private Optional<GrafanaRawDocuments> queryRawDocuments(GrafanaQueryRequest queryRequest, GrafanaQueryTarget target) {
+    private Optional<GrafanaRawDocuments> queryRawDocuments(Connection connection, GrafanaQueryRequest.Range range,
+                                                            GrafanaQueryTarget target) {
 
         log.debug("Querying raw documents for target: {}", target);
         try {
 
+            Optional<String> indexHint = indexSelector.select(target.getTable(), target.getIndexHint(),
+                    target.getTimeField(), target.getCondition(), target.getSelectFields());
+
             Query query = MetricsQueryBuilder.forConnection(connection)
                     .select(target.getSelectFields())
                     .withJsonConditon(target.getCondition())
-                    .withTimeRange(target.getTimeField(), queryRequest.getRange())
+                    .withTimeRange(target.getTimeField(), range)
+                    .withTimeFieldType(detectTimeFieldType(connection, target))
                     .withLimit(target.getLimit(), DEFAULT_RAW_DOCUMENT_LIMIT, MAX_RAW_DOCUMENT_LIMIT)
+                    .withIndexHint(indexHint.orElse(null))
                     .constructQuery();
 
-            DocumentStream documentStream = connection.getStore(target.getTable()).findQuery(query.build());
-
             GrafanaRawDocuments<JsonNode> rawDocumentsMetric = new GrafanaRawDocuments<>();
-            for (Document document : documentStream) {
-                convertInnerDocsToString(document).ifPresent(rawDocumentsMetric::addDatapoint);
+            try (QueryResult queryResult = connection.getStore(target.getTable()).findQuery(query.build())) {
+
+                for (Document document : queryResult) {
+                    convertInnerDocsToString(document).ifPresent(rawDocumentsMetric::addDatapoint);
+                }
+
+                if (target.isExplain()) {
+                    rawDocumentsMetric.setExplain(explanation(indexHint, TimeSlicedScanner.queryPlans(queryResult)));
+                }
             }
 
             return Optional.of(rawDocumentsMetric);
@@ -148,6 +358,29 @@ public class MapRDBServiceImpl implements MapRDBService {
         return Optional.empty();
     }
 
+    private TimeFieldType detectTimeFieldType(Connection connection, GrafanaQueryTarget target) {
+
+        if (target.getTimeField() == null || target.getTimeField().isEmpty()) {
+            return TimeFieldType.UNKNOWN;
+        }
+
+        return timeFieldTypeDetector.detect(connection, target.getTable(), target.getTimeField());
+    }
+
+    private QueryExplanation explanation(Optional<String> indexHint, List<Document> queryPlans) {
+
+        List<JsonNode> plans = new ArrayList<>();
+        for (Document queryPlan : queryPlans) {
+            try {
+                plans.add(mapper.readTree(queryPlan.asJsonString()));
+            } catch (IOException e) {
+                log.warn("Can not convert query plan to JSON: {}", queryPlan);
+            }
+        }
+
+        return new QueryExplanation(indexHint.orElse(null), plans);
+    }
+
     private Optional<JsonNode> convertInnerDocsToString(Document document) {
 
         try {
@@ -181,9 +414,294 @@ public class MapRDBServiceImpl implements MapRDBService {
         return Optional.empty();
     }
 
-    private Optional<GrafanaMetrics> queryTimeSeries(GrafanaQueryRequest queryRequest, GrafanaQueryTarget target) {
+    /**
+     * Queries the group of time series targets, which differ only in metric, by the single scan. Targets, which are
+     * cached, are not scanned at all.
+     */
+    private Map<GrafanaQueryTarget, Optional<GrafanaMetrics>> queryFusedTargets(GrafanaQueryRequest queryRequest,
+                                                                                List<GrafanaQueryTarget> group) {
+
+        long start = System.currentTimeMillis();
+        long intervalMs = seriesIntervalMs(queryRequest, group.get(0));
+        GrafanaQueryRequest.Range range = queryRequest.getRange().alignedTo(intervalMs);
+
+        Map<GrafanaQueryTarget, Optional<GrafanaMetrics>> results = new HashMap<>();
+        Map<TargetQueryKey, List<GrafanaQueryTarget>> pending = new LinkedHashMap<>();
+        for (GrafanaQueryTarget target : group) {
+
+            TargetQueryKey key = TargetQueryKey.of(target, range, intervalMs);
+            Optional<GrafanaMetrics> cached = resultCache.get(key);
+            if (cached.isPresent()) {
+                results.put(target, cached);
+            } else {
+                pending.computeIfAbsent(key, k -> new ArrayList<>()).add(target);
+            }
+        }
+
+        if (pending.size() == 1) {
+            pending.values().iterator().next()
+                    .forEach(target -> results.put(target, queryTarget(queryRequest, target)));
+        } else if (!pending.isEmpty()) {
+
+            List<TargetQueryKey> keys = new ArrayList<>(pending.keySet());
+            Map<TargetQueryKey, Optional<GrafanaMetrics>> scanned = fusedInFlightQueries.execute(keys, () -> {
+
+                Map<TargetQueryKey, GrafanaQueryTarget> targets = new LinkedHashMap<>();
+                pending.forEach((key, keyTargets) -> targets.put(key, keyTargets.get(0)));
+
+                Map<TargetQueryKey, Optional<GrafanaMetrics>> metrics = withConnection(connection ->
+                        queryFusedTimeSeries(connection, range, intervalMs, targets));
+                metrics.forEach((key, m) -> m.ifPresent(series -> resultCache.put(key, series)));
+
+                return metrics;
+            });
+
+            pending.forEach((key, keyTargets) -> keyTargets.forEach(target ->
+                    results.put(target, scanned.getOrDefault(key, Optional.empty()))));
+
+            log.debug("{} targets on table '{}' queried by single scan in {} ms", keys.size(),
+                    group.get(0).getTable(), System.currentTimeMillis() - start);
+        }
+
+        return results;
+    }
+
+    /**
+     * Scans the table once and feeds each document to the series of every target. Targets of the group share the
+     * metric field, so the scan has the same predicates as the scan of a single target.
+     */
+    private Map<TargetQueryKey, Optional<GrafanaMetrics>> queryFusedTimeSeries(
+            Connection connection, GrafanaQueryRequest.Range range, long intervalMs,
+            Map<TargetQueryKey, GrafanaQueryTarget> targets) {
+
+        Map<TargetQueryKey, Optional<GrafanaMetrics>> results = new LinkedHashMap<>();
+        Map<GrafanaQueryTarget, AbstractGrafanaTimeSeries> seriesByTarget = new LinkedHashMap<>();
+        Set<String> metricFields = new LinkedHashSet<>();
+        targets.forEach((key, target) -> {
+
+            log.debug("Querying fused time series for target: {}", target);
+            Optional<AbstractGrafanaTimeSeries> series = createSeries(target, intervalMs);
+            results.put(key, series.map(GrafanaMetrics.class::cast));
+            series.ifPresent(s -> {
+
+                if (range.getFrom() != null && range.getTo() != null) {
+                    s.allocateBuckets(range.getFrom().getTime(), range.getTo().getTime());
+                }
+
+                seriesByTarget.put(target, s);
+                if (target.getMetricField() != null && !target.getMetricField().isEmpty()) {
+                    metricFields.add(target.getMetricField());
+                }
+            });
+        });
+
+        if (seriesByTarget.isEmpty()) {
+            return results;
+        }
+
+        // Targets of the group share table, time field, metric field, condition, limit and index hint, so any of them
+        // describes the scan. The one, which requests explanation, is preferred, so the plan is obtained for it
+        GrafanaQueryTarget scanTarget = seriesByTarget.keySet().stream()
+                .filter(GrafanaQueryTarget::isExplain)
+                .findFirst()
+                .orElse(seriesByTarget.keySet().iterator().next());
+        Optional<String> indexHint = indexSelector.select(scanTarget.getTable(), scanTarget.getIndexHint(),
+                scanTarget.getTimeField(), scanTarget.getCondition(), metricFields);
+
+        // 'Exists' predicate of the metric field is added the same way as for the single target
+        List<AbstractGrafanaTimeSeries> series = new ArrayList<>(seriesByTarget.values());
+        TimeSlicedScanner.ScanResult scanResult = scanTimeSeries(connection, range, intervalMs, scanTarget,
+                metricFields, indexHint, !indexHint.isPresent(), document -> {
+                    for (AbstractGrafanaTimeSeries s : series) {
+                        s.addDocument(document);
+                    }
+                }, null);
+
+        fusedScans.increment();
+        fusedTargets.add(series.size());
+        Long scannedUntil = lastValueTimestamp(series);
+        seriesByTarget.forEach((target, s) -> completeSeries(target, s, scanResult, scannedUntil, indexHint));
+
+        return results;
+    }
+
+    private Optional<GrafanaMetrics> queryTimeSeries(Connection connection, GrafanaQueryRequest.Range range,
+                                                     long intervalMs, GrafanaQueryTarget target) {
+
+        if (isGrouped(target)) {
+            return queryGroupedTimeSeries(connection, range, intervalMs, target);
+        }
 
         log.debug("Querying time series for target: {}", target);
+        Optional<AbstractGrafanaTimeSeries> created = createSeries(target, intervalMs);
+        if (!created.isPresent()) {
+            return Optional.empty();
+        }
+
+        AbstractGrafanaTimeSeries series = created.get();
+        GrafanaQueryRequest.Range scanRange = range;
+        TargetQueryKey seriesKey = TargetQueryKey.of(target, null, intervalMs);
+        boolean bounded = range.getFrom() != null && range.getTo() != null;
+        if (bounded) {
+            series.allocateBuckets(range.getFrom().getTime(), range.getTo().getTime());
+        }
+
+        // Composite series, such as histograms, are not restored from their datapoints, so they are not resumed.
+        // Watermark of the unbounded range is undefined, so it is scanned as a whole
+        boolean incremental = bounded && incrementalStore.isEnabled() && !(series instanceof CompositeTimeSeries);
+        if (incremental) {
+            scanRange = incrementalStore.resume(seriesKey, range, series);
+        }
+
+        Set<String> metricFields = (target.getMetricField() != null && !target.getMetricField().isEmpty())
+                ? Collections.singleton(target.getMetricField())
+                : Collections.emptySet();
+        Optional<String> indexHint = indexSelector.select(target.getTable(), target.getIndexHint(),
+                target.getTimeField(), target.getCondition(), metricFields);
+
+        // Series skip documents without the metric field by themselves, so 'exists' predicates, which may keep the
+        // optimizer from using the hinted index, are only added when no index is hinted
+        TimeSlicedScanner.ScanResult scanResult = scanTimeSeries(connection, scanRange, intervalMs, target,
+                metricFields, indexHint, !indexHint.isPresent(), series::addDocument,
+                series.isDocumentReaderSupported() ? series::addDocumentReader : null);
+
+        completeSeries(target, series, scanResult, series.getLastValueTimestamp(), indexHint);
+
+        if (incremental) {
+            incrementalStore.checkpoint(seriesKey, range, intervalMs, series, scanResult.isTruncated());
+        }
+
+        return Optional.of(series);
+    }
+
+    /**
+     * Counts the most frequent values of the metric field within the range by the sketch of the bounded size, so the
+     * table of the top values does not require all of the documents to be returned to Grafana. Sketch does not depend
+     * on the order of documents, so the range is scanned without sorting, bounded by the scan budget rather than the
+     * target limit, which would count an arbitrary prefix of the range.
+     */
+    private Optional<GrafanaTopValues> queryTopValues(Connection connection, GrafanaQueryRequest.Range range,
+                                                      GrafanaQueryTarget target) {
+
+        log.debug("Querying top values for target: {}", target);
+        if (target.getTimeField() == null || target.getTimeField().isEmpty() ||
+                target.getMetricField() == null || target.getMetricField().isEmpty() ||
+                (target.getTopK() != null && (target.getTopK() < 1 || target.getTopK() > MAX_TOP_K))) {
+
+            log.warn("Time field, metric field and number of values from 1 to {} are required for querying top " +
+                    "values. Invalid target: {}", MAX_TOP_K, target);
+
+            return Optional.empty();
+        }
+
+        GrafanaTopValues topValues = new GrafanaTopValues(target.getMetricField(),
+                (target.getTopK() != null) ? target.getTopK() : DEFAULT_TOP_K);
+
+        Set<String> metricFields = Collections.singleton(target.getMetricField());
+        Optional<String> indexHint = indexSelector.select(target.getTable(), target.getIndexHint(),
+                target.getTimeField(), target.getCondition(), metricFields);
+
+        Query query = MetricsQueryBuilder.forConnection(connection)
+                .select(target.getMetricField())
+                .withJsonConditon(target.getCondition())
+                .withTimeRange(target.getTimeField(), range)
+                .withTimeFieldType(detectTimeFieldType(connection, target))
+                .withIndexHint(indexHint.orElse(null))
+                .withSelectedFieldsRequired(!indexHint.isPresent())
+                .constructQuery()
+                .build();
+
+        TimeSlicedScanner.ScanResult scanResult = timeSlicedScanner.scanSequentially(connection, target.getTable(),
+                query, scanBudget.getDocumentLimit(), scanBudget.budgetDeadlineFrom(System.currentTimeMillis()),
+                target.isExplain(), topValues::addDocument);
+
+        TimeSeriesMeta meta = (scanResult.isTruncated())
+                ? TimeSeriesMeta.truncated(scanResult.getTruncationReason(), scanResult.getScanned(), null)
+                : TimeSeriesMeta.complete(scanResult.getScanned());
+        if (topValues.getSkippedDocuments() > 0) {
+            meta.skipped(topValues.getSkippedDocuments());
+        }
+        if (target.isExplain()) {
+            meta.explainedBy(explanation(indexHint, scanResult.getQueryPlans()));
+        }
+        topValues.setMeta(meta);
+
+        return Optional.of(topValues);
+    }
+
+    /**
+     * Scans the target once and splits the documents into the series per value of the 'groupBy' field. Grouped
+     * series are not resumed incrementally, since the top groups may change between the queries. Metrics, which keep
+     * large state per bucket, are not grouped.
+     */
+    private Optional<GrafanaMetrics> queryGroupedTimeSeries(Connection connection, GrafanaQueryRequest.Range range,
+                                                            long intervalMs, GrafanaQueryTarget target) {
+
+        log.debug("Querying grouped time series for target: {}", target);
+        if (isDownsampled(target) || FIELD_HISTOGRAM_METRIC.equals(target.getMetric()) ||
+                (target.getGroupLimit() != null && target.getGroupLimit() < 1)) {
+
+            log.warn("Downsampled series and histograms can not be grouped, and group limit must be positive. " +
+                    "Invalid target: {}", target);
+
+            return Optional.empty();
+        }
+
+        // Target is validated once, so series of the groups are created without checks. Series other than the
+        // downsampled ones are aggregated by accumulators, so the groups can be merged
+        Optional<AbstractGrafanaTimeSeries> validated = createSeries(target, intervalMs);
+        if (!validated.isPresent()) {
+            return Optional.empty();
+        }
+
+        // Every group keeps the state of its own buckets, so metrics of the large state, such as percentiles and
+        // distinct counts, would multiply it by the number of groups
+        if (validated.get().getBucketSizeBytes() > MAX_GROUPED_BUCKET_SIZE_BYTES) {
+            log.warn("Metric '{}' keeps {} bytes per bucket and can not be grouped. Invalid target: {}",
+                    target.getMetric(), validated.get().getBucketSizeBytes(), target);
+
+            return Optional.empty();
+        }
+
+        // Series of the groups are not presized, since most of the groups may be sparse
+        Function<String, AccumulatorTimeSeries> seriesFactory = name -> {
+            AccumulatorTimeSeries series = (AccumulatorTimeSeries) createSeries(target, intervalMs).get();
+            series.setTarget(name);
+            return series;
+        };
+
+        int groupLimit = (target.getGroupLimit() != null)
+                ? target.getGroupLimit()
+                : GroupedTimeSeries.DEFAULT_GROUP_LIMIT;
+        GroupedTimeSeries grouped = new GroupedTimeSeries(target.getTarget(), target.getGroupBy(), seriesFactory,
+                maxGroups, groupLimit);
+
+        Set<String> fields = new LinkedHashSet<>();
+        if (target.getMetricField() != null && !target.getMetricField().isEmpty()) {
+            fields.add(target.getMetricField());
+        }
+        fields.add(target.getGroupBy());
+        Optional<String> indexHint = indexSelector.select(target.getTable(), target.getIndexHint(),
+                target.getTimeField(), target.getCondition(), fields);
+
+        TimeSlicedScanner.ScanResult scanResult = scanTimeSeries(connection, range, intervalMs, target, fields,
+                indexHint, !indexHint.isPresent(), grouped::addDocument, null);
+
+        grouped.selectTopGroups();
+        Long scannedUntil = lastValueTimestamp(grouped.getSeries());
+        grouped.getSeries().forEach(series -> completeSeries(target, series, scanResult, scannedUntil, indexHint));
+
+        if (grouped.getOverflowDocuments() > 0 || grouped.getSkippedDocuments() > 0) {
+            log.debug("Target '{}' on table '{}' aggregated {} documents of the groups over the limit of {} into " +
+                            "the other values and skipped {} documents without group field", target.getRefId(),
+                    target.getTable(), grouped.getOverflowDocuments(), maxGroups, grouped.getSkippedDocuments());
+        }
+
+        return Optional.of(grouped);
+    }
+
+    private Optional<AbstractGrafanaTimeSeries> createSeries(GrafanaQueryTarget target, long intervalMs) {
+
         if (target.getTarget() == null || target.getTarget().isEmpty() ||
                 target.getTimeField() == null || target.getTimeField().isEmpty() ||
                 target.getMetric() == null || target.getMetric().isEmpty()) {
@@ -194,59 +712,217 @@ public class MapRDBServiceImpl implements MapRDBService {
             return Optional.empty();
         }
 
-        GrafanaTimeSeries series;
-        if (DOCUMENT_COUNT_METRIC.equals(target.getMetric())) {
-            series = new DocumentCountTimeSeries(target.getTarget(), target.getTimeField(), queryRequest.getIntervalMs());
-        } else if (FIELD_VALUE_METRIC.equals(target.getMetric())) {
+        if (!DOCUMENT_COUNT_METRIC.equals(target.getMetric()) &&
+                (target.getMetricField() == null || target.getMetricField().isEmpty())) {
+
+            log.warn("Metric field is required for querying '{}' metric. Invalid target: {}", target.getMetric(),
+                    target);
 
-            series = new AggregationTimeSeries((existing, incoming) -> existing, target.getTarget(),
-                    target.getTimeField(), target.getMetricField(), queryRequest.getIntervalMs());
+            return Optional.empty();
+        }
 
-        } else if (FIELD_MIN_METRIC.equals(target.getMetric())) {
+        if (isDownsampled(target)) {
+            return Optional.of(new DownsampledFieldValueTimeSeries(target.getTarget(), target.getTimeField(),
+                    target.getMetricField(), intervalMs));
+        }
 
-            series = new AggregationTimeSeries(
-                    (existing, incoming) -> existing.getValue() < incoming.getValue() ? existing : incoming,
-                    target.getTarget(), target.getTimeField(), target.getMetricField(), queryRequest.getIntervalMs());
+        if (FIELD_HISTOGRAM_METRIC.equals(target.getMetric())) {
+            return histogramBins(target).map(bins -> new HistogramTimeSeries(bins, target.getTarget(),
+                    target.getTimeField(), target.getMetricField(), intervalMs));
+        }
 
-        } else if (FIELD_MAX_METRIC.equals(target.getMetric())) {
+        if (FIELD_PERCENTILE_METRIC.equals(target.getMetric()) && (target.getPercentile() == null ||
+                !(target.getPercentile() >= 0 && target.getPercentile() <= 100))) {
 
-            series = new AggregationTimeSeries(
-                    (existing, incoming) -> existing.getValue() > incoming.getValue() ? existing : incoming,
-                    target.getTarget(), target.getTimeField(), target.getMetricField(), queryRequest.getIntervalMs());
+            log.warn("Percentile from 0 to 100 is required for querying '{}' metric. Invalid target: {}",
+                    target.getMetric(), target);
 
-        } else if (FIELD_AVG_METRIC.equals(target.getMetric())) {
+            return Optional.empty();
+        }
 
-            series = new FieldAverageTimeSeries(target.getTarget(), target.getTimeField(), target.getMetricField(),
-                    queryRequest.getIntervalMs());
+        if (FIELD_DISTINCT_COUNT_METRIC.equals(target.getMetric())) {
+            return Optional.of(new DistinctCountTimeSeries(distinctCountAccumulator, target.getTarget(),
+                    target.getTimeField(), target.getMetricField(), intervalMs));
+        }
 
-        } else {
+        Optional<MetricAccumulator> accumulator = FIELD_PERCENTILE_METRIC.equals(target.getMetric())
+                ? Optional.of(MetricAccumulators.percentile(target.getPercentile()))
+                : MetricAccumulators.forMetric(target.getMetric());
+        if (!accumulator.isPresent()) {
             log.warn("Specified metric '{}' is not supported.", target.getMetric());
             return Optional.empty();
         }
 
-        MetricsQueryBuilder queryBuilder = MetricsQueryBuilder.forConnection(connection)
-                .select(target.getTimeField())
-                .withJsonConditon(target.getCondition())
-                .withTimeRange(target.getTimeField(), queryRequest.getRange())
-                .withLimit(target.getLimit(), DEFAULT_RAW_DOCUMENT_LIMIT, MAX_RAW_DOCUMENT_LIMIT)
-                .orderBy(target.getTimeField());
+        // Document count does not read the metric field, so documents without it are counted as well
+        String metricField = DOCUMENT_COUNT_METRIC.equals(target.getMetric()) ? null : target.getMetricField();
+        AbstractGrafanaTimeSeries series = new AccumulatorTimeSeries(accumulator.get(), target.getTarget(),
+                target.getTimeField(), metricField, intervalMs);
 
-        if (target.getMetricField() != null && !target.getMetricField().isEmpty()) {
-            queryBuilder.select(target.getMetricField());
+        return Optional.of(series);
+    }
+
+    private static Optional<HistogramBins> histogramBins(GrafanaQueryTarget target) {
+
+        if (target.getHistogramMin() == null || target.getHistogramMax() == null) {
+            log.warn("Histogram range is required for querying '{}' metric. Invalid target: {}", target.getMetric(),
+                    target);
+
+            return Optional.empty();
         }
 
-        DocumentStream documentStream = connection.getStore(target.getTable()).findQuery(queryBuilder.constructQuery().build());
-        for (Document document : documentStream) {
-            series.addDocument(document);
+        int count = (target.getHistogramBins() != null) ? target.getHistogramBins() : DEFAULT_HISTOGRAM_BINS;
+        try {
+            return Optional.of(LOG_HISTOGRAM_SCALE.equals(target.getHistogramScale())
+                    ? HistogramBins.log(target.getHistogramMin(), target.getHistogramMax(), count)
+                    : HistogramBins.linear(target.getHistogramMin(), target.getHistogramMax(), count));
+        } catch (IllegalArgumentException e) {
+            log.warn("{}. Invalid target: {}", e.getMessage(), target);
+            return Optional.empty();
         }
+    }
 
-        return Optional.of(series);
+    /**
+     * Scans time field and metric fields of the target within the range.
+     *
+     * @param readerConsumer consumer of document readers or <code>null</code> if documents must be materialized.
+     */
+    private TimeSlicedScanner.ScanResult scanTimeSeries(Connection connection, GrafanaQueryRequest.Range scanRange,
+                                                        long intervalMs, GrafanaQueryTarget target,
+                                                        Collection<String> metricFields, Optional<String> indexHint,
+                                                        boolean metricFieldsRequired,
+                                                        Consumer<Document> documentConsumer,
+                                                        Consumer<DocumentReader> readerConsumer) {
+
+        // Aggregations do not keep documents, so streaming scans are only bounded by the scan budget. Otherwise one
+        // more document than the limit is queried, so truncation can be detected
+        boolean streaming = scanBudget.isStreaming();
+        long limit = (streaming) ? scanBudget.getMaxDocuments() : Math.min(target.getLimit(), MAX_RAW_DOCUMENT_LIMIT);
+        long deadline = scanBudget.deadlineFrom(System.currentTimeMillis());
+        TimeFieldType timeFieldType = detectTimeFieldType(connection, target);
+
+        Function<GrafanaQueryRequest.Range, Query> queryForRange = sliceRange -> {
+
+            MetricsQueryBuilder queryBuilder = MetricsQueryBuilder.forConnection(connection)
+                    .select(target.getTimeField())
+                    .withJsonConditon(target.getCondition())
+                    .withTimeRange(target.getTimeField(), sliceRange)
+                    .withTimeFieldType(timeFieldType)
+                    .withIndexHint(indexHint.orElse(null))
+                    .withSelectedFieldsRequired(metricFieldsRequired);
+
+            // Buckets of the series do not depend on the order of documents, so sorting can be skipped
+            if (!unorderedAggregation) {
+                queryBuilder.orderBy(target.getTimeField());
+            }
+
+            if (!streaming) {
+                queryBuilder.withLimit(limit + 1);
+            }
+
+            metricFields.forEach(queryBuilder::select);
+
+            return queryBuilder.constructQuery().build();
+        };
+
+        // Slices buffer their documents, so streaming scans, which are not bounded by the limit, use single stream.
+        // Readers are only valid while the stream is positioned at their document, so they are not sliced either
+        long scanStart = System.currentTimeMillis();
+        TimeSlicedScanner.ScanResult scanResult;
+        if (documentReaderAggregation && readerConsumer != null) {
+            scanResult = timeSlicedScanner.scanReadersSequentially(connection, target.getTable(),
+                    queryForRange.apply(scanRange), limit, deadline, target.isExplain(), readerConsumer);
+        } else if (streaming) {
+            scanResult = timeSlicedScanner.scanSequentially(connection, target.getTable(),
+                    queryForRange.apply(scanRange), limit, deadline, target.isExplain(), documentConsumer);
+        } else {
+            scanResult = timeSlicedScanner.scan(connection, target.getTable(), scanRange, intervalMs, timeFieldType,
+                    limit, deadline, queryForRange, target.isExplain(), documentConsumer);
+        }
+
+        long scanMs = System.currentTimeMillis() - scanStart;
+        (unorderedAggregation ? unorderedScans : orderedScans).increment();
+        (unorderedAggregation ? unorderedScanMs : orderedScanMs).add(scanMs);
+
+        return scanResult;
+    }
+
+    /**
+     * Returns timestamp of the latest value of the series, which were computed by the same scan, or
+     * <code>null</code> if they are empty. Documents are scanned in time order, so all of the documents before it were
+     * scanned, while the bucket it belongs to may be partial.
+     */
+    private static Long lastValueTimestamp(Collection<? extends AbstractGrafanaTimeSeries> series) {
+        return series.stream()
+                .map(AbstractGrafanaTimeSeries::getLastValueTimestamp)
+                .filter(Objects::nonNull)
+                .max(Long::compare)
+                .orElse(null);
+    }
+
+    private void completeSeries(GrafanaQueryTarget target, AbstractGrafanaTimeSeries series,
+                                TimeSlicedScanner.ScanResult scanResult, Long scannedUntil,
+                                Optional<String> indexHint) {
+
+        if (scanResult.isTruncated()) {
+
+            series.setMeta(TimeSeriesMeta.truncated(scanResult.getTruncationReason(), scanResult.getScanned(),
+                    unorderedAggregation ? null : scannedUntil));
+
+            log.warn("Scan of target '{}' on table '{}' was truncated by {} after {} documents", target.getRefId(),
+                    target.getTable(), scanResult.getTruncationReason(), scanResult.getScanned());
+        } else {
+            series.setMeta(TimeSeriesMeta.complete(scanResult.getScanned()));
+        }
+
+        if (series.getSkippedDocuments() > 0) {
+            series.getMeta().skipped(series.getSkippedDocuments());
+            log.debug("{} documents of target '{}' on table '{}' were skipped", series.getSkippedDocuments(),
+                    target.getRefId(), target.getTable());
+        }
+
+        if (target.isExplain()) {
+            series.getMeta().explainedBy(explanation(indexHint, scanResult.getQueryPlans()));
+        }
     }
 
-    @PreDestroy
-    public void destroy() {
-        if (this.connection != null) {
-            this.connection.close();
+    /**
+     * Future of the single target, which is queried as part of the fused group.
+     */
+    private static class FusedTargetFuture implements Future<Optional<GrafanaMetrics>> {
+
+        private final Future<Map<GrafanaQueryTarget, Optional<GrafanaMetrics>>> groupFuture;
+        private final GrafanaQueryTarget target;
+
+        FusedTargetFuture(Future<Map<GrafanaQueryTarget, Optional<GrafanaMetrics>>> groupFuture,
+                          GrafanaQueryTarget target) {
+            this.groupFuture = groupFuture;
+            this.target = target;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return groupFuture.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return groupFuture.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return groupFuture.isDone();
+        }
+
+        @Override
+        public Optional<GrafanaMetrics> get() throws InterruptedException, ExecutionException {
+            return groupFuture.get().getOrDefault(target, Optional.empty());
+        }
+
+        @Override
+        public Optional<GrafanaMetrics> get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return groupFuture.get(timeout, unit).getOrDefault(target, Optional.empty());
         }
     }
 
@@ -0,0 +1,297 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.db.exceptions.TableNotFoundException;
+import com.mapr.grafana.plugin.model.DatasourceStatus;
+import com.mapr.grafana.plugin.service.OjaiConnectionManager;
+import org.ojai.store.Connection;
+import org.ojai.store.DriverManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps single long-lived OJAI connection, which is shared across requests. Connection is revalidated in the
+ * background with the configured period. In case of failure connection is closed and re-established with exponential
+ * backoff, so the cluster is not hammered by connection attempts while it is unavailable. Result of the last
+ * validation is cached, so the datasource status is served without accessing the cluster.
+ * <p>
+ * Queries lease the connection, so the broken connection, which is replaced by the new one, is only closed once the
+ * queries, which are still using it, are completed.
+ */
+@Component
+public class OjaiConnectionManagerImpl implements OjaiConnectionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(OjaiConnectionManagerImpl.class);
+
+    private final Supplier<Connection> connectionFactory;
+    private final Consumer<Connection> connectionValidator;
+    private final long validationIntervalMs;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    private final ScheduledExecutorService validationScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ojai-connection-validator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile ManagedConnection connection;
+    private volatile DatasourceStatus status = DatasourceStatus.error("OJAI connection is not established yet");
+
+    private long backoffMs;
+    private long nextAttemptTimestamp;
+
+    @Autowired
+    public OjaiConnectionManagerImpl(@Value("${ojai.connection.url:ojai:mapr:}") String connectionUrl,
+                                     @Value("${ojai.connection.probe-table:/foo}") String probeTable,
+                                     @Value("${ojai.connection.validation-interval-ms:10000}") long validationIntervalMs,
+                                     @Value("${ojai.connection.initial-backoff-ms:1000}") long initialBackoffMs,
+                                     @Value("${ojai.connection.max-backoff-ms:60000}") long maxBackoffMs) {
+
+        this(() -> DriverManager.getConnection(connectionUrl), connection -> probe(connection, probeTable),
+                validationIntervalMs, initialBackoffMs, maxBackoffMs);
+    }
+
+    /**
+     * Creates connection manager with custom connection factory and validator.
+     *
+     * @param connectionFactory    creates new OJAI connections. Expected to throw an exception if cluster is not
+     *                             available.
+     * @param connectionValidator  checks the connection through the connection itself, both new and existing one.
+     *                             Expected to throw an exception if connection is broken.
+     * @param validationIntervalMs period of the background validation. Values of 0 or less disable the background
+     *                             validation, so the status is validated on every call.
+     * @param initialBackoffMs     delay before the first reconnection attempt after failure.
+     * @param maxBackoffMs         upper bound of the delay between reconnection attempts.
+     */
+    OjaiConnectionManagerImpl(Supplier<Connection> connectionFactory, Consumer<Connection> connectionValidator,
+                              long validationIntervalMs, long initialBackoffMs, long maxBackoffMs) {
+
+        this.connectionFactory = connectionFactory;
+        this.connectionValidator = connectionValidator;
+        this.validationIntervalMs = validationIntervalMs;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.backoffMs = initialBackoffMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        tryEstablishConnection();
+        if (validationIntervalMs > 0) {
+            validationScheduler.scheduleWithFixedDelay(this::validate, validationIntervalMs, validationIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public ConnectionLease lease() {
+
+        while (true) {
+
+            ManagedConnection current = this.connection;
+            if (current == null) {
+                current = tryEstablishConnection();
+            }
+
+            if (current == null) {
+                throw new IllegalStateException("OJAI connection is not established. Status: " + status);
+            }
+
+            // Connection may be retired right before it is leased, in which case the new one is leased instead
+            if (current.acquire()) {
+                return new Lease(current);
+            }
+        }
+    }
+
+    /**
+     * Returns status of the last validation. Without background validation the cached status would never be
+     * refreshed, so the connection is validated on every call instead.
+     */
+    @Override
+    public DatasourceStatus getStatus() {
+        return (validationIntervalMs > 0) ? status : validate();
+    }
+
+    @Override
+    public synchronized DatasourceStatus validate() {
+
+        ManagedConnection current = this.connection;
+        if (current == null) {
+            tryEstablishConnection();
+            return status;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            connectionValidator.accept(current.connection);
+            this.status = DatasourceStatus.ok().probedAt(start, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("OJAI connection validation failed. Connection will be re-established", e);
+            this.connection = null;
+            this.status = DatasourceStatus.error("OJAI connection validation failed", e.getMessage())
+                    .probedAt(start, System.currentTimeMillis() - start);
+            current.retire();
+            this.nextAttemptTimestamp = 0;
+            tryEstablishConnection();
+        }
+
+        return status;
+    }
+
+    /**
+     * Creates and validates new connection unless it is already established or the next attempt is not allowed yet
+     * due to backoff.
+     *
+     * @return established connection or <code>null</code> if it can not be established.
+     */
+    private synchronized ManagedConnection tryEstablishConnection() {
+
+        if (this.connection != null) {
+            return this.connection;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now < nextAttemptTimestamp) {
+            log.debug("Skipping OJAI connection attempt. Next attempt is allowed in {} ms", nextAttemptTimestamp - now);
+            return null;
+        }
+
+        Connection created = null;
+        try {
+            log.debug("Trying to create OJAI connection");
+            created = connectionFactory.get();
+            connectionValidator.accept(created);
+            this.connection = new ManagedConnection(created);
+            this.status = DatasourceStatus.ok().probedAt(now, System.currentTimeMillis() - now);
+            this.backoffMs = initialBackoffMs;
+            this.nextAttemptTimestamp = 0;
+        } catch (Exception e) {
+            log.warn("Can not create OJAI connection. Next attempt in {} ms. Cause: {}", backoffMs, e.getMessage());
+            this.status = DatasourceStatus.error("Can not create OJAI connection", e.getMessage())
+                    .probedAt(now, System.currentTimeMillis() - now);
+            if (created != null) {
+                closeQuietly(created);
+            }
+            this.nextAttemptTimestamp = now + backoffMs;
+            this.backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+        }
+
+        return this.connection;
+    }
+
+    /**
+     * Accesses the probe table through the connection, so the check fails if the connection itself is broken. Missing
+     * probe table still means that the cluster has responded.
+     */
+    private static void probe(Connection connection, String probeTable) {
+        try {
+            connection.getStore(probeTable).close();
+        } catch (TableNotFoundException e) {
+            log.debug("Probe table '{}' does not exist, but the cluster is available", probeTable);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (Exception e) {
+            log.debug("Exception occurred while closing broken OJAI connection", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        validationScheduler.shutdownNow();
+        ManagedConnection current = this.connection;
+        this.connection = null;
+        if (current != null) {
+            current.retire();
+        }
+    }
+
+    /**
+     * Connection along with the number of its leases. Retired connection is closed by whoever releases it last: either
+     * the validation, which retires it, or the last query, which uses it.
+     */
+    private static final class ManagedConnection {
+
+        private final Connection connection;
+        private final AtomicInteger leases = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired;
+
+        ManagedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * @return <code>false</code> if the connection is retired and must not be used.
+         */
+        boolean acquire() {
+
+            leases.incrementAndGet();
+            if (retired) {
+                release();
+                return false;
+            }
+
+            return true;
+        }
+
+        void release() {
+            if (leases.decrementAndGet() == 0 && retired) {
+                close();
+            }
+        }
+
+        void retire() {
+            retired = true;
+            if (leases.get() == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    private static final class Lease implements ConnectionLease {
+
+        private final ManagedConnection managed;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Lease(ManagedConnection managed) {
+            this.managed = managed;
+        }
+
+        @Override
+        public Connection getConnection() {
+            return managed.connection;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                managed.release();
+            }
+        }
+    }
+
+}
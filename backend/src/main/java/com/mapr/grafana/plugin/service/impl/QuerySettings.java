@@ -0,0 +1,132 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the query features, which are not backed by components of their own. Settings are immutable, so the
+ * service can be created with the settings, which differ from the defaults only in the features of interest:
+ * <pre>
+ *     QuerySettings.defaults().withTargetFusion(true)
+ * </pre>
+ */
+@Component
+public class QuerySettings {
+
+    private final long requestTimeoutMs;
+    private final boolean unorderedAggregation;
+    private final boolean documentReaderAggregation;
+    private final boolean targetFusion;
+    private final int distinctCountPrecision;
+    private final int maxGroups;
+
+    @Autowired
+    public QuerySettings(@Value("${query.request-timeout-ms:30000}") long requestTimeoutMs,
+                         @Value("${query.unordered-aggregation.enabled:false}") boolean unorderedAggregation,
+                         @Value("${query.document-reader.enabled:false}") boolean documentReaderAggregation,
+                         @Value("${query.fusion.enabled:false}") boolean targetFusion,
+                         @Value("${query.distinct-count.precision:12}") int distinctCountPrecision,
+                         @Value("${query.group-by.max-groups:100}") int maxGroups) {
+
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.unorderedAggregation = unorderedAggregation;
+        this.documentReaderAggregation = documentReaderAggregation;
+        this.targetFusion = targetFusion;
+        this.distinctCountPrecision = distinctCountPrecision;
+        this.maxGroups = maxGroups;
+    }
+
+    /**
+     * Creates settings with the same values as the defaults of the properties, so all of the features are disabled.
+     *
+     * @return default settings.
+     */
+    public static QuerySettings defaults() {
+        return new QuerySettings(30000, false, false, false, 12, 100);
+    }
+
+    public QuerySettings withRequestTimeoutMs(long requestTimeoutMs) {
+        return new QuerySettings(requestTimeoutMs, unorderedAggregation, documentReaderAggregation, targetFusion,
+                distinctCountPrecision, maxGroups);
+    }
+
+    public QuerySettings withUnorderedAggregation(boolean unorderedAggregation) {
+        return new QuerySettings(requestTimeoutMs, unorderedAggregation, documentReaderAggregation, targetFusion,
+                distinctCountPrecision, maxGroups);
+    }
+
+    public QuerySettings withDocumentReaderAggregation(boolean documentReaderAggregation) {
+        return new QuerySettings(requestTimeoutMs, unorderedAggregation, documentReaderAggregation, targetFusion,
+                distinctCountPrecision, maxGroups);
+    }
+
+    public QuerySettings withTargetFusion(boolean targetFusion) {
+        return new QuerySettings(requestTimeoutMs, unorderedAggregation, documentReaderAggregation, targetFusion,
+                distinctCountPrecision, maxGroups);
+    }
+
+    public QuerySettings withDistinctCountPrecision(int distinctCountPrecision) {
+        return new QuerySettings(requestTimeoutMs, unorderedAggregation, documentReaderAggregation, targetFusion,
+                distinctCountPrecision, maxGroups);
+    }
+
+    public QuerySettings withMaxGroups(int maxGroups) {
+        return new QuerySettings(requestTimeoutMs, unorderedAggregation, documentReaderAggregation, targetFusion,
+                distinctCountPrecision, maxGroups);
+    }
+
+    /**
+     * Returns time, which the targets of a single request are queried within.
+     */
+    public long getRequestTimeoutMs() {
+        return requestTimeoutMs;
+    }
+
+    /**
+     * Returns whether time series queries are not sorted by the time field.
+     */
+    public boolean isUnorderedAggregation() {
+        return unorderedAggregation;
+    }
+
+    /**
+     * Returns whether time series are aggregated from the document readers.
+     */
+    public boolean isDocumentReaderAggregation() {
+        return documentReaderAggregation;
+    }
+
+    /**
+     * Returns whether targets, which differ only in metric, are computed by the single scan.
+     */
+    public boolean isTargetFusion() {
+        return targetFusion;
+    }
+
+    /**
+     * Returns number of bits of the hash, which select the register of the distinct count sketch.
+     */
+    public int getDistinctCountPrecision() {
+        return distinctCountPrecision;
+    }
+
+    /**
+     * Returns maximum number of values of the 'groupBy' field, which are aggregated into the separate series.
+     */
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+
+    @Override
+    public String toString() {
+        return "QuerySettings{" +
+                "requestTimeoutMs=" + requestTimeoutMs +
+                ", unorderedAggregation=" + unorderedAggregation +
+                ", documentReaderAggregation=" + documentReaderAggregation +
+                ", targetFusion=" + targetFusion +
+                ", distinctCountPrecision=" + distinctCountPrecision +
+                ", maxGroups=" + maxGroups +
+                '}';
+    }
+}
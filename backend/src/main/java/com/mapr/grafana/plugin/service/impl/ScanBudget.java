@@ -0,0 +1,78 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounds streaming scans of time series aggregations. Aggregations do not keep scanned documents, so in streaming
+ * mode the whole range is scanned regardless of the target limit, until either the document or the time budget is
+ * exhausted. Series, which were computed from the truncated scan, are marked as truncated instead of silently
+ * reporting partial numbers.
+ * <p>
+ * Scans, which are not bounded by the target limit at all, such as the scans of the top values, are bounded by the
+ * budget regardless of the streaming mode.
+ */
+@Component
+public class ScanBudget {
+
+    private final boolean streaming;
+    private final long maxDocuments;
+    private final long maxScanMs;
+
+    @Autowired
+    public ScanBudget(@Value("${query.streaming.enabled:false}") boolean streaming,
+                      @Value("${query.streaming.max-documents:10000000}") long maxDocuments,
+                      @Value("${query.streaming.max-scan-ms:20000}") long maxScanMs) {
+
+        this.streaming = streaming;
+        this.maxDocuments = maxDocuments;
+        this.maxScanMs = maxScanMs;
+    }
+
+    /**
+     * Creates budget, which keeps time series scans bounded by the target limit.
+     *
+     * @return non-streaming budget.
+     */
+    public static ScanBudget disabled() {
+        return new ScanBudget(false, 0, 0);
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public long getMaxDocuments() {
+        return maxDocuments;
+    }
+
+    /**
+     * Returns maximum number of documents of the scan, which is bounded by the budget regardless of the streaming
+     * mode.
+     */
+    public long getDocumentLimit() {
+        return (maxDocuments > 0) ? maxDocuments : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns epoch millis, after which the scan bounded by the budget regardless of the streaming mode must be
+     * stopped.
+     *
+     * @param scanStart epoch millis of the scan start.
+     * @return scan deadline.
+     */
+    public long budgetDeadlineFrom(long scanStart) {
+        return (maxScanMs > 0) ? scanStart + maxScanMs : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns epoch millis, after which the streaming scan started at the specified time must be stopped.
+     *
+     * @param scanStart epoch millis of the scan start.
+     * @return scan deadline.
+     */
+    public long deadlineFrom(long scanStart) {
+        return (streaming && maxScanMs > 0) ? scanStart + maxScanMs : Long.MAX_VALUE;
+    }
+}
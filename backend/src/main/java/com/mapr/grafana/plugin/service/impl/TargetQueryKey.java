@@ -0,0 +1,147 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.GrafanaQueryTarget;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Normalized representation of the target query. Targets with equal keys produce equal metrics, so they can share
+ * single MapR-DB scan and cached result. Note, that time range is expected to be already aligned to the interval.
+ */
+public final class TargetQueryKey {
+
+    private final String type;
+    private final String table;
+    private final String condition;
+    private final String timeField;
+    private final Set<String> selectFields;
+    private final long limit;
+    private final String target;
+    private final String metric;
+    private final String metricField;
+    private final String indexHint;
+    private final boolean explain;
+    private final Double percentile;
+    private final String downsampling;
+    private final String groupBy;
+    private final Integer groupLimit;
+    private final Integer topK;
+    private final String histogramScale;
+    private final Integer histogramBins;
+    private final Double histogramMin;
+    private final Double histogramMax;
+    private final long intervalMs;
+    private final long from;
+    private final long to;
+
+    private TargetQueryKey(GrafanaQueryTarget target, GrafanaQueryRequest.Range range, long intervalMs) {
+        this.type = target.getType();
+        this.table = target.getTable();
+        this.condition = target.getCondition();
+        this.timeField = target.getTimeField();
+        this.selectFields = (target.getSelectFields() != null) ? new TreeSet<>(target.getSelectFields()) : null;
+        this.limit = target.getLimit();
+        this.target = target.getTarget();
+        this.metric = target.getMetric();
+        this.metricField = target.getMetricField();
+        this.indexHint = target.getIndexHint();
+        this.explain = target.isExplain();
+        this.percentile = target.getPercentile();
+        this.downsampling = target.getDownsampling();
+        this.groupBy = target.getGroupBy();
+        this.groupLimit = target.getGroupLimit();
+        this.topK = target.getTopK();
+        this.histogramScale = target.getHistogramScale();
+        this.histogramBins = target.getHistogramBins();
+        this.histogramMin = target.getHistogramMin();
+        this.histogramMax = target.getHistogramMax();
+        this.intervalMs = intervalMs;
+        this.from = (range != null && range.getFrom() != null) ? range.getFrom().getTime() : Long.MIN_VALUE;
+        this.to = (range != null && range.getTo() != null) ? range.getTo().getTime() : Long.MAX_VALUE;
+    }
+
+    public static TargetQueryKey of(GrafanaQueryTarget target, GrafanaQueryRequest.Range range, long intervalMs) {
+        return new TargetQueryKey(target, range, intervalMs);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TargetQueryKey that = (TargetQueryKey) o;
+        return limit == that.limit &&
+                intervalMs == that.intervalMs &&
+                from == that.from &&
+                to == that.to &&
+                explain == that.explain &&
+                Objects.equals(type, that.type) &&
+                Objects.equals(table, that.table) &&
+                Objects.equals(condition, that.condition) &&
+                Objects.equals(timeField, that.timeField) &&
+                Objects.equals(selectFields, that.selectFields) &&
+                Objects.equals(target, that.target) &&
+                Objects.equals(metric, that.metric) &&
+                Objects.equals(metricField, that.metricField) &&
+                Objects.equals(indexHint, that.indexHint) &&
+                Objects.equals(percentile, that.percentile) &&
+                Objects.equals(downsampling, that.downsampling) &&
+                Objects.equals(groupBy, that.groupBy) &&
+                Objects.equals(groupLimit, that.groupLimit) &&
+                Objects.equals(topK, that.topK) &&
+                Objects.equals(histogramScale, that.histogramScale) &&
+                Objects.equals(histogramBins, that.histogramBins) &&
+                Objects.equals(histogramMin, that.histogramMin) &&
+                Objects.equals(histogramMax, that.histogramMax);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, table, condition, timeField, selectFields, limit, target, metric, metricField,
+                indexHint, explain, percentile, downsampling, groupBy, groupLimit, topK, histogramScale, histogramBins,
+                histogramMin, histogramMax, intervalMs, from, to);
+    }
+
+    @Override
+    public String toString() {
+        return "TargetQueryKey{" +
+                "type='" + type + '\'' +
+                ", table='" + table + '\'' +
+                ", condition='" + condition + '\'' +
+                ", timeField='" + timeField + '\'' +
+                ", selectFields=" + selectFields +
+                ", limit=" + limit +
+                ", target='" + target + '\'' +
+                ", metric='" + metric + '\'' +
+                ", metricField='" + metricField + '\'' +
+                ", indexHint='" + indexHint + '\'' +
+                ", explain=" + explain +
+                ", percentile=" + percentile +
+                ", downsampling='" + downsampling + '\'' +
+                ", groupBy='" + groupBy + '\'' +
+                ", groupLimit=" + groupLimit +
+                ", topK=" + topK +
+                ", histogramScale='" + histogramScale + '\'' +
+                ", histogramBins=" + histogramBins +
+                ", histogramMin=" + histogramMin +
+                ", histogramMax=" + histogramMax +
+                ", intervalMs=" + intervalMs +
+                ", from=" + from +
+                ", to=" + to +
+                '}';
+    }
+}
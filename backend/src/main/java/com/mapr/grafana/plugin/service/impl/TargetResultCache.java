@@ -0,0 +1,195 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.model.GrafanaMetrics;
+import com.mapr.grafana.plugin.model.GrafanaRawDocuments;
+import com.mapr.grafana.plugin.model.GrafanaTopValues;
+import com.mapr.grafana.plugin.model.timeseries.AbstractGrafanaTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.GroupedTimeSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * LRU cache of target query results, which is bounded by the estimated size of cached metrics. Time to live of the
+ * entry depends on how close the end of the queried range is to the current time: results of the recent ranges are
+ * cached for a short period, since new documents are likely to appear, while results of the historical ranges are
+ * cached for a long period.
+ */
+@Component
+public class TargetResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TargetResultCache.class);
+
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+    private static final long RAW_DOCUMENT_BYTES_PER_CHAR = 4;
+
+    private static class Entry {
+
+        final GrafanaMetrics metrics;
+        final long sizeBytes;
+        final long expiresAt;
+
+        Entry(GrafanaMetrics metrics, long sizeBytes, long expiresAt) {
+            this.metrics = metrics;
+            this.sizeBytes = sizeBytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long recentWindowMs;
+    private final long recentTtlMs;
+    private final long historicalTtlMs;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<TargetQueryKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @Autowired
+    public TargetResultCache(@Value("${query.cache.enabled:false}") boolean enabled,
+                             @Value("${query.cache.max-bytes:67108864}") long maxBytes,
+                             @Value("${query.cache.recent-window-ms:300000}") long recentWindowMs,
+                             @Value("${query.cache.recent-ttl-ms:5000}") long recentTtlMs,
+                             @Value("${query.cache.historical-ttl-ms:3600000}") long historicalTtlMs) {
+
+        this(enabled, maxBytes, recentWindowMs, recentTtlMs, historicalTtlMs, System::currentTimeMillis);
+    }
+
+    TargetResultCache(boolean enabled, long maxBytes, long recentWindowMs, long recentTtlMs, long historicalTtlMs,
+                      LongSupplier clock) {
+
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.recentWindowMs = recentWindowMs;
+        this.recentTtlMs = recentTtlMs;
+        this.historicalTtlMs = historicalTtlMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates cache, which never stores any results.
+     *
+     * @return disabled cache.
+     */
+    public static TargetResultCache disabled() {
+        return new TargetResultCache(false, 0, 0, 0, 0, System::currentTimeMillis);
+    }
+
+    public synchronized Optional<GrafanaMetrics> get(TargetQueryKey key) {
+
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        if (entry.expiresAt <= clock.getAsLong()) {
+            remove(key, entry);
+            expirations.increment();
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(entry.metrics);
+    }
+
+    public synchronized void put(TargetQueryKey key, GrafanaMetrics metrics) {
+
+        // Truncated series depend on the load of the cluster at the time of the scan, so they are not reused
+        if (!enabled || metrics == null ||
+                (metrics instanceof AbstractGrafanaTimeSeries && ((AbstractGrafanaTimeSeries) metrics).isTruncated()) ||
+                (metrics instanceof GroupedTimeSeries && ((GroupedTimeSeries) metrics).isTruncated()) ||
+                (metrics instanceof GrafanaTopValues && ((GrafanaTopValues) metrics).isTruncated())) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        long ttlMs = (key.getTo() >= now - recentWindowMs) ? recentTtlMs : historicalTtlMs;
+        long sizeBytes = estimateSizeBytes(metrics);
+        if (ttlMs <= 0 || sizeBytes > maxBytes) {
+            return;
+        }
+
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            remove(key, existing);
+        }
+
+        entries.put(key, new Entry(metrics, sizeBytes, now + ttlMs));
+        currentBytes += sizeBytes;
+
+        Iterator<Map.Entry<TargetQueryKey, Entry>> eldest = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<TargetQueryKey, Entry> evicted = eldest.next();
+            eldest.remove();
+            currentBytes -= evicted.getValue().sizeBytes;
+            evictions.increment();
+        }
+    }
+
+    public synchronized void flush() {
+        log.info("Flushing target result cache. Entries: {}, size: {} bytes", entries.size(), currentBytes);
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized Map<String, Long> statistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("cache.hits", hits.sum());
+        statistics.put("cache.misses", misses.sum());
+        statistics.put("cache.evictions", evictions.sum());
+        statistics.put("cache.expirations", expirations.sum());
+        statistics.put("cache.entries", (long) entries.size());
+        statistics.put("cache.bytes", currentBytes);
+        return statistics;
+    }
+
+    private void remove(TargetQueryKey key, Entry entry) {
+        entries.remove(key);
+        currentBytes -= entry.sizeBytes;
+    }
+
+    /**
+     * Roughly estimates heap size of the metrics, which is used to bound the cache.
+     */
+    private static long estimateSizeBytes(GrafanaMetrics metrics) {
+
+        long sizeBytes = ENTRY_OVERHEAD_BYTES;
+        if (metrics instanceof AbstractGrafanaTimeSeries) {
+            AbstractGrafanaTimeSeries series = (AbstractGrafanaTimeSeries) metrics;
+            sizeBytes += (long) series.getBucketCount() * series.getBucketSizeBytes();
+        } else if (metrics instanceof GroupedTimeSeries) {
+            for (AbstractGrafanaTimeSeries series : ((GroupedTimeSeries) metrics).getSeries()) {
+                sizeBytes += estimateSizeBytes(series);
+            }
+        } else if (metrics instanceof GrafanaTopValues) {
+            sizeBytes += ((GrafanaTopValues) metrics).getSizeBytes();
+        } else if (metrics instanceof GrafanaRawDocuments) {
+            for (Object document : ((GrafanaRawDocuments<?>) metrics).getDatapoints()) {
+                sizeBytes += ENTRY_OVERHEAD_BYTES + String.valueOf(document).length() * RAW_DOCUMENT_BYTES_PER_CHAR;
+            }
+        }
+
+        return sizeBytes;
+    }
+}
@@ -0,0 +1,194 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.util.TimeFieldType;
+import org.ojai.Document;
+import org.ojai.DocumentStream;
+import org.ojai.store.Connection;
+import org.ojai.store.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Determines type of the values stored in the time field of the table, so the range condition consists of a single
+ * predicate. Type is taken from the explicit configuration in the form of comma separated
+ * <code>table:field=TYPE</code> entries or, if it is not configured, detected by sampling documents of the table.
+ * Detected types are cached for the configured period.
+ * <p>
+ * Note, that sampling only sees the first documents of the table. If the table contains values of different types,
+ * which are not present in the sample, documents with such values will not be matched by the range condition. Sampling
+ * is also performed by the querying thread whenever the cached type expires. So sampling is disabled by default, and
+ * types of the other fields are {@link TimeFieldType#UNKNOWN}, which keeps the condition on all of the types.
+ */
+@Component
+public class TimeFieldTypeDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(TimeFieldTypeDetector.class);
+
+    private static class Detected {
+
+        final TimeFieldType type;
+        final long detectedAt;
+
+        Detected(TimeFieldType type, long detectedAt) {
+            this.type = type;
+            this.detectedAt = detectedAt;
+        }
+    }
+
+    private final Map<String, TimeFieldType> explicitTypes;
+    private final boolean samplingEnabled;
+    private final int sampleSize;
+    private final long ttlMs;
+    private final LongSupplier clock;
+    private final Map<String, Detected> detectedTypes = new ConcurrentHashMap<>();
+
+    private final LongAdder samplings = new LongAdder();
+
+    @Autowired
+    public TimeFieldTypeDetector(@Value("${query.time-field.types:}") String explicitTypes,
+                                 @Value("${query.time-field.sampling.enabled:false}") boolean samplingEnabled,
+                                 @Value("${query.time-field.sampling.sample-size:100}") int sampleSize,
+                                 @Value("${query.time-field.sampling.ttl-ms:600000}") long ttlMs) {
+
+        this(parseExplicitTypes(explicitTypes), samplingEnabled, sampleSize, ttlMs, System::currentTimeMillis);
+    }
+
+    TimeFieldTypeDetector(Map<String, TimeFieldType> explicitTypes, boolean samplingEnabled, int sampleSize,
+                          long ttlMs, LongSupplier clock) {
+
+        this.explicitTypes = explicitTypes;
+        this.samplingEnabled = samplingEnabled;
+        this.sampleSize = sampleSize;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates detector, which always reports unknown type, so the range condition covers all of the supported types.
+     *
+     * @return disabled detector.
+     */
+    public static TimeFieldTypeDetector disabled() {
+        return new TimeFieldTypeDetector(Collections.emptyMap(), false, 0, 0, System::currentTimeMillis);
+    }
+
+    /**
+     * Returns type of the values stored in the time field of the table.
+     *
+     * @param connection OJAI connection, which is used for sampling.
+     * @param table      table path.
+     * @param timeField  time field path.
+     * @return type of the time field values or {@link TimeFieldType#UNKNOWN} if type is mixed or can not be detected.
+     */
+    public TimeFieldType detect(Connection connection, String table, String timeField) {
+
+        String key = key(table, timeField);
+        TimeFieldType explicitType = explicitTypes.get(key);
+        if (explicitType != null) {
+            return explicitType;
+        }
+
+        if (!samplingEnabled) {
+            return TimeFieldType.UNKNOWN;
+        }
+
+        long now = clock.getAsLong();
+        Detected detected = detectedTypes.get(key);
+        if (detected != null && detected.detectedAt + ttlMs > now) {
+            return detected.type;
+        }
+
+        try {
+            TimeFieldType type = sample(connection, table, timeField);
+            if (type != null) {
+                log.debug("Detected type of time field '{}' of table '{}': {}", timeField, table, type);
+                detectedTypes.put(key, new Detected(type, now));
+                return type;
+            }
+        } catch (Exception e) {
+            log.warn("Can not detect type of time field '{}' of table '{}'. Cause: {}", timeField, table,
+                    e.getMessage());
+        }
+
+        return TimeFieldType.UNKNOWN;
+    }
+
+    public Map<String, Long> statistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("timeFields.samplings", samplings.sum());
+        statistics.put("timeFields.detected", (long) detectedTypes.size());
+        return statistics;
+    }
+
+    /**
+     * Samples documents of the table and returns type of the time field values.
+     *
+     * @return type of the sampled values, {@link TimeFieldType#UNKNOWN} if sampled values are of different types or
+     * <code>null</code> if table contains no documents with the time field.
+     */
+    private TimeFieldType sample(Connection connection, String table, String timeField) {
+
+        samplings.increment();
+        Query query = connection.newQuery()
+                .select(timeField)
+                .where(connection.newCondition().exists(timeField).build())
+                .limit(sampleSize)
+                .build();
+
+        TimeFieldType sampledType = null;
+        try (DocumentStream documentStream = connection.getStore(table).findQuery(query)) {
+            for (Document document : documentStream) {
+
+                org.ojai.Value value = document.getValue(timeField);
+                TimeFieldType type = TimeFieldType.of(value != null ? value.getType() : null);
+                if (sampledType == null) {
+                    sampledType = type;
+                } else if (sampledType != type) {
+                    return TimeFieldType.UNKNOWN;
+                }
+            }
+        }
+
+        return sampledType;
+    }
+
+    static Map<String, TimeFieldType> parseExplicitTypes(String explicitTypes) {
+
+        Map<String, TimeFieldType> types = new HashMap<>();
+        if (explicitTypes == null || explicitTypes.trim().isEmpty()) {
+            return types;
+        }
+
+        for (String entry : explicitTypes.split(",")) {
+
+            int typeSeparator = entry.lastIndexOf('=');
+            int fieldSeparator = entry.lastIndexOf(':', typeSeparator);
+            if (typeSeparator < 0 || fieldSeparator < 0) {
+                throw new IllegalArgumentException("Invalid time field type entry: '" + entry +
+                        "'. Expected format is 'table:field=TYPE'");
+            }
+
+            String table = entry.substring(0, fieldSeparator).trim();
+            String field = entry.substring(fieldSeparator + 1, typeSeparator).trim();
+            TimeFieldType type = TimeFieldType.valueOf(entry.substring(typeSeparator + 1).trim().toUpperCase());
+            types.put(key(table, field), type);
+        }
+
+        return types;
+    }
+
+    private static String key(String table, String timeField) {
+        return table + ':' + timeField;
+    }
+}
@@ -0,0 +1,471 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.config.ExecutorConfig;
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.timeseries.TimeSeriesMeta;
+import com.mapr.grafana.plugin.util.TimeFieldType;
+import org.ojai.Document;
+import org.ojai.DocumentReader;
+import org.ojai.DocumentStream;
+import org.ojai.store.Connection;
+import org.ojai.store.DocumentStore;
+import org.ojai.store.Query;
+import org.ojai.store.QueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Scans documents of the time range, which are ordered by the time field. Large ranges can be split into contiguous
+ * slices aligned to the interval, which are scanned concurrently with their own document streams, so the cluster
+ * parallelism is used instead of a single client-side cursor. Documents of the slices are passed to the consumer in
+ * time order, so the result is identical to the sequential scan.
+ * <p>
+ * Range condition is inclusive on both ends, so slices are only used for time fields of
+ * {@link TimeFieldType#TIMESTAMP} and {@link TimeFieldType#LONG} types, where slices can be made disjoint with
+ * millisecond precision. Each slice is scanned with the whole limit, since any slice may turn out to be the first
+ * one, which contains documents. Slices, which are scanned ahead of the consumer, share the buffer of the limit size,
+ * so at most twice the limit of documents is kept in memory regardless of the number of slices. Slices, which are
+ * rejected by the saturated slice executor, are scanned by the target thread once the consumer reaches them.
+ */
+@Component
+public class TimeSlicedScanner {
+
+    private static final Logger log = LoggerFactory.getLogger(TimeSlicedScanner.class);
+
+    /**
+     * Number of documents between the checks of the scan deadline.
+     */
+    private static final int DEADLINE_CHECK_PERIOD = 256;
+
+    /**
+     * Outcome of the scan.
+     */
+    public static class ScanResult {
+
+        private final long scanned;
+        private final String truncationReason;
+        private final List<Document> queryPlans;
+
+        ScanResult(long scanned, String truncationReason, List<Document> queryPlans) {
+            this.scanned = scanned;
+            this.truncationReason = truncationReason;
+            this.queryPlans = queryPlans;
+        }
+
+        /**
+         * Returns number of documents passed to the consumer.
+         */
+        public long getScanned() {
+            return scanned;
+        }
+
+        /**
+         * Returns whether the scan was stopped while there were documents left to scan.
+         */
+        public boolean isTruncated() {
+            return truncationReason != null;
+        }
+
+        /**
+         * Returns {@link TimeSeriesMeta#DOCUMENT_LIMIT_REASON}, {@link TimeSeriesMeta#TIME_LIMIT_REASON} or
+         * <code>null</code> if the scan was not truncated.
+         */
+        public String getTruncationReason() {
+            return truncationReason;
+        }
+
+        /**
+         * Returns plans of the queries in order of the slices. Empty if the plans were not requested or the store
+         * does not report them.
+         */
+        public List<Document> getQueryPlans() {
+            return queryPlans;
+        }
+    }
+
+    private final boolean enabled;
+    private final int slices;
+    private final long minRangeMs;
+    private final ExecutorService sliceExecutor;
+
+    private final LongAdder slicedScans = new LongAdder();
+    private final LongAdder sequentialScans = new LongAdder();
+
+    @Autowired
+    public TimeSlicedScanner(@Value("${query.slicing.enabled:false}") boolean enabled,
+                             @Value("${query.slicing.slices:4}") int slices,
+                             @Value("${query.slicing.min-range-ms:86400000}") long minRangeMs,
+                             @Qualifier(ExecutorConfig.TIME_SLICE_SCAN_EXECUTOR) ExecutorService sliceExecutor) {
+
+        this.enabled = enabled;
+        this.slices = slices;
+        this.minRangeMs = minRangeMs;
+        this.sliceExecutor = sliceExecutor;
+    }
+
+    /**
+     * Creates scanner, which always scans the range sequentially.
+     *
+     * @return sequential scanner.
+     */
+    public static TimeSlicedScanner sequential() {
+        return new TimeSlicedScanner(false, 1, Long.MAX_VALUE, Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * Scans documents of the range and passes them to the consumer in time order.
+     *
+     * @param connection    OJAI connection.
+     * @param table         table path.
+     * @param range         range to scan.
+     * @param intervalMs    interval, which slice boundaries are aligned to.
+     * @param timeFieldType type of the time field values.
+     * @param limit         maximum number of documents to pass to the consumer.
+     * @param deadline      epoch millis, after which the scan is stopped.
+     * @param queryForRange constructs built query ordered by the time field for the specified range.
+     * @param explain       whether the plans of the queries are requested.
+     * @param consumer      consumes scanned documents.
+     * @return outcome of the scan.
+     */
+    public ScanResult scan(Connection connection, String table, GrafanaQueryRequest.Range range, long intervalMs,
+                           TimeFieldType timeFieldType, long limit, long deadline,
+                           Function<GrafanaQueryRequest.Range, Query> queryForRange, boolean explain,
+                           Consumer<Document> consumer) {
+
+        List<GrafanaQueryRequest.Range> sliceRanges = slice(range, intervalMs, timeFieldType);
+        if (sliceRanges.size() < 2) {
+            return scanSequentially(connection, table, queryForRange.apply(range), limit, deadline, explain,
+                    consumer);
+        }
+
+        DocumentStore store = connection.getStore(table);
+
+        slicedScans.increment();
+        log.debug("Scanning range {} of table '{}' in {} slices", range, table, sliceRanges.size());
+
+        SliceBuffers buffers = new SliceBuffers(sliceRanges.size(), limit);
+        List<Query> sliceQueries = new ArrayList<>();
+        List<Future<ScanResult>> sliceFutures = new ArrayList<>();
+        for (int i = 0; i < sliceRanges.size(); i++) {
+            int slice = i;
+            Query query = queryForRange.apply(sliceRanges.get(slice));
+            sliceQueries.add(query);
+            sliceFutures.add(submit(() -> scan(store, query, limit, deadline, explain, stream -> stream,
+                    document -> buffers.put(slice, document))));
+        }
+
+        long consumed = 0;
+        List<Document> queryPlans = new ArrayList<>();
+        try {
+            for (int slice = 0; slice < sliceFutures.size(); slice++) {
+
+                // Documents of the head slice are consumed as they are scanned, so they are not buffered
+                buffers.advanceTo(slice);
+                Future<ScanResult> sliceFuture = sliceFutures.get(slice);
+                if (sliceFuture == null) {
+
+                    // Slice was rejected by the executor, so it is scanned in order by the target thread
+                    ScanResult sliceResult = scan(store, sliceQueries.get(slice), limit - consumed, deadline, explain,
+                            stream -> stream, consumer);
+                    consumed += sliceResult.getScanned();
+                    queryPlans.addAll(sliceResult.getQueryPlans());
+                    if (sliceResult.isTruncated()) {
+                        return new ScanResult(consumed, sliceResult.getTruncationReason(), queryPlans);
+                    }
+                    continue;
+                }
+
+                while (true) {
+
+                    Document document = buffers.poll(slice);
+                    if (document == null) {
+                        if (!sliceFuture.isDone()) {
+                            continue;
+                        }
+
+                        // Slice may have put its last documents right before it was done
+                        document = buffers.poll(slice);
+                        if (document == null) {
+                            break;
+                        }
+                    }
+
+                    if (consumed >= limit) {
+                        return new ScanResult(consumed, TimeSeriesMeta.DOCUMENT_LIMIT_REASON, queryPlans);
+                    }
+                    consumer.accept(document);
+                    consumed++;
+                }
+
+                ScanResult sliceResult = sliceFuture.get();
+                queryPlans.addAll(sliceResult.getQueryPlans());
+
+                // Documents of the later slices can not be used, since they would leave a gap in the series
+                if (sliceResult.isTruncated()) {
+                    return new ScanResult(consumed, sliceResult.getTruncationReason(), queryPlans);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning slices of table: " + table, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Exception occurred while scanning slice of table: " + table,
+                    e.getCause());
+        } finally {
+            sliceFutures.stream().filter(Objects::nonNull).forEach(sliceFuture -> sliceFuture.cancel(true));
+        }
+
+        return new ScanResult(consumed, null, queryPlans);
+    }
+
+    /**
+     * Submits scan of the slice to the slice executor. Returns <code>null</code> if the executor is saturated, since
+     * the slice, which is scanned by the calling thread ahead of the consumer, would wait for the buffer permits,
+     * which are only released by the consumer of the same thread.
+     */
+    private Future<ScanResult> submit(Callable<ScanResult> sliceScan) {
+        try {
+            return sliceExecutor.submit(sliceScan);
+        } catch (RejectedExecutionException e) {
+            log.debug("Slice executor is saturated, slice is scanned by the target thread");
+            return null;
+        }
+    }
+
+    /**
+     * Scans documents of the query using single document stream.
+     *
+     * @param connection OJAI connection.
+     * @param table      table path.
+     * @param query      built query.
+     * @param limit      maximum number of documents to pass to the consumer.
+     * @param deadline   epoch millis, after which the scan is stopped.
+     * @param explain    whether the plan of the query is requested.
+     * @param consumer   consumes scanned documents.
+     * @return outcome of the scan.
+     */
+    public ScanResult scanSequentially(Connection connection, String table, Query query, long limit, long deadline,
+                                       boolean explain, Consumer<Document> consumer) {
+
+        sequentialScans.increment();
+        return scan(connection.getStore(table), query, limit, deadline, explain, stream -> stream, consumer);
+    }
+
+    /**
+     * Scans documents of the query using single document stream and passes their readers to the consumer, so the
+     * documents are not materialized. Note, that the reader is only valid within the consumer invocation.
+     *
+     * @param connection OJAI connection.
+     * @param table      table path.
+     * @param query      built query.
+     * @param limit      maximum number of documents to pass to the consumer.
+     * @param deadline   epoch millis, after which the scan is stopped.
+     * @param explain    whether the plan of the query is requested.
+     * @param consumer   consumes readers of the scanned documents.
+     * @return outcome of the scan.
+     */
+    public ScanResult scanReadersSequentially(Connection connection, String table, Query query, long limit,
+                                              long deadline, boolean explain, Consumer<DocumentReader> consumer) {
+
+        sequentialScans.increment();
+        return scan(connection.getStore(table), query, limit, deadline, explain, DocumentStream::documentReaders,
+                consumer);
+    }
+
+    public Map<String, Long> statistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("slicing.slicedScans", slicedScans.sum());
+        statistics.put("slicing.sequentialScans", sequentialScans.sum());
+        return statistics;
+    }
+
+    /**
+     * Splits the range into contiguous disjoint slices aligned to the interval. Range, which can not be sliced, such
+     * as the range without either bound, is returned as the only slice.
+     */
+    List<GrafanaQueryRequest.Range> slice(GrafanaQueryRequest.Range range, long intervalMs,
+                                          TimeFieldType timeFieldType) {
+
+        List<GrafanaQueryRequest.Range> sliceRanges = new ArrayList<>();
+        boolean disjointSlicesSupported = timeFieldType == TimeFieldType.TIMESTAMP ||
+                timeFieldType == TimeFieldType.LONG;
+
+        if (!enabled || slices < 2 || intervalMs <= 0 || !disjointSlicesSupported || range.getFrom() == null ||
+                range.getTo() == null) {
+            sliceRanges.add(range);
+            return sliceRanges;
+        }
+
+        long from = range.getFrom().getTime();
+        long to = range.getTo().getTime();
+        if (to - from < minRangeMs) {
+            sliceRanges.add(range);
+            return sliceRanges;
+        }
+
+        long intervals = -Math.floorDiv(-(to - from), intervalMs);
+        long sliceMs = -Math.floorDiv(-intervals, slices) * intervalMs;
+        for (long sliceFrom = from; sliceFrom <= to; sliceFrom += sliceMs) {
+
+            // Last slice includes the end of the range, others end right before the next slice
+            boolean last = sliceFrom + sliceMs >= to;
+            GrafanaQueryRequest.Range sliceRange = new GrafanaQueryRequest.Range();
+            sliceRange.setFrom(new Date(sliceFrom));
+            sliceRange.setTo(new Date(last ? to : sliceFrom + sliceMs - 1));
+            sliceRanges.add(sliceRange);
+
+            if (last) {
+                break;
+            }
+        }
+
+        return sliceRanges;
+    }
+
+    /**
+     * Scans the query. Plan of the query is only requested from the store if it is explained, since it is not free
+     * to obtain.
+     */
+    private static <T> ScanResult scan(DocumentStore store, Query query, long limit, long deadline, boolean explain,
+                                       Function<DocumentStream, Iterable<T>> elements, Consumer<T> consumer) {
+
+        long scanned = 0;
+        try (DocumentStream documentStream = store.findQuery(query)) {
+            List<Document> queryPlans = explain ? queryPlans(documentStream) : Collections.emptyList();
+            for (T document : elements.apply(documentStream)) {
+
+                if (scanned >= limit) {
+                    return new ScanResult(scanned, TimeSeriesMeta.DOCUMENT_LIMIT_REASON, queryPlans);
+                }
+
+                if (scanned % DEADLINE_CHECK_PERIOD == 0 && System.currentTimeMillis() >= deadline) {
+                    return new ScanResult(scanned, TimeSeriesMeta.TIME_LIMIT_REASON, queryPlans);
+                }
+
+                consumer.accept(document);
+                scanned++;
+            }
+
+            return new ScanResult(scanned, null, queryPlans);
+        }
+    }
+
+    /**
+     * Returns plan of the query, which is reported by the MapR-DB query result, or empty list if the plan is not
+     * available.
+     */
+    static List<Document> queryPlans(DocumentStream documentStream) {
+
+        if (!(documentStream instanceof QueryResult)) {
+            return Collections.emptyList();
+        }
+
+        try {
+            Document plan = ((QueryResult) documentStream).getQueryPlan();
+            return (plan != null) ? Collections.singletonList(plan) : Collections.emptyList();
+        } catch (Exception e) {
+            log.debug("Can not get query plan. Cause: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Documents of the slices, which are scanned but not consumed yet. Slices ahead of the head one, which is being
+     * consumed, take a permit per buffered document, so they wait for the consumer once the limit of documents is
+     * buffered. Head slice does not take permits, since the consumer waits for it, so it is bounded by the limit of
+     * its own scan.
+     */
+    private static class SliceBuffers {
+
+        private static final long POLL_TIMEOUT_MS = 10;
+
+        private final List<BlockingQueue<Buffered>> queues = new ArrayList<>();
+        private final Semaphore permits;
+        private volatile int head;
+
+        SliceBuffers(int slices, long limit) {
+            for (int i = 0; i < slices; i++) {
+                queues.add(new LinkedBlockingQueue<>());
+            }
+            this.permits = new Semaphore((int) Math.min(limit, Integer.MAX_VALUE));
+        }
+
+        void advanceTo(int slice) {
+            this.head = slice;
+        }
+
+        /**
+         * Buffers the scanned document of the slice, waiting for the consumer if the buffer is full.
+         *
+         * @throws CancellationException if the scan is cancelled while waiting.
+         */
+        void put(int slice, Document document) {
+
+            boolean permitted = false;
+            try {
+                while (slice > head && !permitted) {
+                    permitted = permits.tryAcquire(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Scan of the slice is cancelled");
+            }
+
+            queues.get(slice).add(new Buffered(document, permitted));
+        }
+
+        /**
+         * Returns next document of the slice or <code>null</code> if the slice has no buffered documents for a while.
+         */
+        Document poll(int slice) throws InterruptedException {
+
+            Buffered buffered = queues.get(slice).poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (buffered == null) {
+                return null;
+            }
+
+            if (buffered.permitted) {
+                permits.release();
+            }
+
+            return buffered.document;
+        }
+    }
+
+    private static class Buffered {
+
+        final Document document;
+        final boolean permitted;
+
+        Buffered(Document document, boolean permitted) {
+            this.document = document;
+            this.permitted = permitted;
+        }
+    }
+}
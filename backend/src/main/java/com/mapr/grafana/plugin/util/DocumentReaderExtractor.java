@@ -0,0 +1,214 @@
+package com.mapr.grafana.plugin.util;
+
+import org.ojai.DocumentReader;
+
+/**
+ * Reads time and optional metric fields from the event stream of the {@link DocumentReader}, so the rest of the
+ * document is not materialized. Maps, which do not lead to the extracted fields, and arrays are skipped as a whole
+ * without reading their values. Reader is always consumed up to the end of the document, since streams, such as JSON
+ * ones, expect the previous reader to be exhausted before the next one.
+ * <p>
+ * Only simple field paths, which consist of dot separated field names, are supported, see {@link #supports(String)}.
+ * Extractor keeps the values of the last read document, so it must be confined to a single thread.
+ */
+public final class DocumentReaderExtractor {
+
+    private final String[] timePath;
+    private final String[] metricPath;
+
+    private long timestamp;
+    private double value;
+
+    /**
+     * @param timeFieldPath   time field path.
+     * @param metricFieldPath metric field path or <code>null</code> if only the time field is extracted.
+     * @throws IllegalArgumentException if any of the field paths is not supported.
+     */
+    public DocumentReaderExtractor(String timeFieldPath, String metricFieldPath) {
+
+        if (!supports(timeFieldPath) || (metricFieldPath != null && !supports(metricFieldPath))) {
+            throw new IllegalArgumentException("Field paths '" + timeFieldPath + "' and '" + metricFieldPath +
+                    "' can not be read from the document reader");
+        }
+
+        this.timePath = timeFieldPath.split("\\.");
+        this.metricPath = (metricFieldPath != null) ? metricFieldPath.split("\\.") : null;
+    }
+
+    /**
+     * Returns whether the field path can be read by the extractor. Paths with array indexes or quoted field names are
+     * not supported.
+     *
+     * @param fieldPath field path.
+     * @return <code>true</code> if the path consists of dot separated field names.
+     */
+    public static boolean supports(String fieldPath) {
+        return fieldPath != null && fieldPath.matches("[^.\\[\\]`\"]+(\\.[^.\\[\\]`\"]+)*");
+    }
+
+    /**
+     * Reads the fields of the next document of the reader.
+     *
+     * @param reader reader positioned before the start of the document.
+     * @return <code>true</code> if the document contains valid timestamp and, if it is extracted, numeric metric.
+     */
+    public boolean read(DocumentReader reader) {
+
+        this.timestamp = FieldExtractor.MISSING_TIMESTAMP;
+        this.value = (metricPath != null) ? Double.NaN : 0;
+
+        boolean timeFound = false;
+        boolean metricFound = metricPath == null;
+
+        // Number of open maps and number of leading path segments, which are matched by the open maps
+        int depth = 0;
+        int timeMatched = 0;
+        int metricMatched = 0;
+
+        DocumentReader.EventType event;
+        while ((event = reader.next()) != null) {
+
+            switch (event) {
+                case START_MAP:
+                    if (depth == 0) {
+                        depth = 1;
+                        break;
+                    }
+
+                    String mapName = reader.getFieldName();
+                    boolean timeParent = leads(timePath, timeMatched, depth, mapName);
+                    boolean metricParent = metricPath != null && leads(metricPath, metricMatched, depth, mapName);
+                    if (!timeParent && !metricParent) {
+                        skipContainer(reader);
+                        break;
+                    }
+
+                    depth++;
+                    timeMatched = timeParent ? depth - 1 : timeMatched;
+                    metricMatched = metricParent ? depth - 1 : metricMatched;
+                    break;
+                case END_MAP:
+                    depth--;
+                    if (depth == 0) {
+                        return isValid();
+                    }
+                    timeMatched = Math.min(timeMatched, depth - 1);
+                    metricMatched = Math.min(metricMatched, depth - 1);
+                    break;
+                case START_ARRAY:
+                    skipContainer(reader);
+                    break;
+                case END_ARRAY:
+                    break;
+                default:
+                    String fieldName = reader.getFieldName();
+                    if (!timeFound && matches(timePath, timeMatched, depth, fieldName)) {
+                        this.timestamp = timestamp(reader, event);
+                        timeFound = true;
+                    } else if (!metricFound && matches(metricPath, metricMatched, depth, fieldName)) {
+                        this.value = number(reader, event);
+                        metricFound = true;
+                    }
+            }
+        }
+
+        return isValid();
+    }
+
+    private boolean isValid() {
+        return timestamp != FieldExtractor.MISSING_TIMESTAMP && !Double.isNaN(value);
+    }
+
+    /**
+     * Returns timestamp of the last read document or {@link FieldExtractor#MISSING_TIMESTAMP} if it is not valid.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns metric value of the last read document or {@link Double#NaN} if it is not valid.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Whether the map field at the depth continues the path, which is matched by its parents.
+     */
+    private static boolean leads(String[] path, int matched, int depth, String fieldName) {
+        return matched == depth - 1 && path.length > depth && path[depth - 1].equals(fieldName);
+    }
+
+    /**
+     * Whether the scalar field at the depth is the last segment of the path, which is matched by its parents.
+     */
+    private static boolean matches(String[] path, int matched, int depth, String fieldName) {
+        return path != null && matched == depth - 1 && path.length == depth && path[depth - 1].equals(fieldName);
+    }
+
+    private static void skipContainer(DocumentReader reader) {
+
+        int nested = 1;
+        DocumentReader.EventType event;
+        while (nested > 0 && (event = reader.next()) != null) {
+            if (event == DocumentReader.EventType.START_MAP || event == DocumentReader.EventType.START_ARRAY) {
+                nested++;
+            } else if (event == DocumentReader.EventType.END_MAP || event == DocumentReader.EventType.END_ARRAY) {
+                nested--;
+            }
+        }
+    }
+
+    private static long timestamp(DocumentReader reader, DocumentReader.EventType event) {
+        switch (event) {
+            case TIMESTAMP:
+                return reader.getTimestampLong();
+            case DATE:
+                return reader.getDate().toDate().getTime();
+            case TIME:
+                return reader.getTime().toDate().getTime();
+            case LONG:
+                return reader.getLong();
+            case INT:
+                return reader.getInt();
+            case DOUBLE:
+                return (long) reader.getDouble();
+            case STRING:
+                try {
+                    return Long.parseLong(reader.getString());
+                } catch (NumberFormatException e) {
+                    return FieldExtractor.MISSING_TIMESTAMP;
+                }
+            default:
+                return FieldExtractor.MISSING_TIMESTAMP;
+        }
+    }
+
+    private static double number(DocumentReader reader, DocumentReader.EventType event) {
+        switch (event) {
+            case DOUBLE:
+                return reader.getDouble();
+            case FLOAT:
+                return reader.getFloat();
+            case LONG:
+                return reader.getLong();
+            case INT:
+                return reader.getInt();
+            case SHORT:
+                return reader.getShort();
+            case BYTE:
+                return reader.getByte();
+            case DECIMAL:
+                return reader.getDecimal().doubleValue();
+            case STRING:
+                try {
+                    return Double.parseDouble(reader.getString());
+                } catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            default:
+                return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.mapr.grafana.plugin.util;
+
+import org.ojai.Document;
+import org.ojai.FieldPath;
+import org.ojai.Value;
+
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reads numeric values of a single field of the documents. Field path is parsed once, and conversion is specialized
+ * to the type of the first value, so documents of the same type are converted without walking through all of the
+ * supported types. Values, which can not be converted, are reported as {@link #MISSING_TIMESTAMP} or
+ * {@link Double#NaN} instead of exceptions, so the callers can skip such documents cheaply.
+ * <p>
+ * Extractors keep the specialization state, so each one must be confined to a single thread.
+ */
+public final class FieldExtractor {
+
+    /**
+     * Timestamp, which is returned if the field is missing or its value can not be converted to the timestamp.
+     */
+    public static final long MISSING_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final long NUMBER_SEED = 0x5bd1e9955bd1e995L;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String fieldPath;
+    private final FieldPath path;
+
+    private Value.Type timestampType;
+    private ToLongFunction<Value> timestampConverter;
+
+    private Value.Type numberType;
+    private ToDoubleFunction<Value> numberConverter;
+
+    private FieldExtractor(String fieldPath) {
+        this.fieldPath = fieldPath;
+        this.path = FieldPath.parseFrom(fieldPath);
+    }
+
+    /**
+     * Creates extractor of the specified field.
+     *
+     * @param fieldPath field path.
+     * @return extractor of the field.
+     * @throws IllegalArgumentException if the field path is not specified.
+     */
+    public static FieldExtractor of(String fieldPath) {
+
+        if (fieldPath == null || fieldPath.isEmpty()) {
+            throw new IllegalArgumentException("Field path can not be empty");
+        }
+
+        return new FieldExtractor(fieldPath);
+    }
+
+    public String getFieldPath() {
+        return fieldPath;
+    }
+
+    public FieldPath getPath() {
+        return path;
+    }
+
+    /**
+     * Returns value of the field as epoch millis. ODate, OTime, OTimestamp, numbers and numeric strings are supported.
+     *
+     * @param document document.
+     * @return epoch millis or {@link #MISSING_TIMESTAMP} if the field is missing or can not be converted.
+     */
+    public long timestamp(Document document) {
+        return timestamp(document.getValue(path));
+    }
+
+    public long timestamp(Value value) {
+
+        if (value == null) {
+            return MISSING_TIMESTAMP;
+        }
+
+        Value.Type type = value.getType();
+        if (type != timestampType) {
+            ToLongFunction<Value> converter = timestampConverter(type);
+            if (converter == null) {
+                return MISSING_TIMESTAMP;
+            }
+            this.timestampType = type;
+            this.timestampConverter = converter;
+        }
+
+        return timestampConverter.applyAsLong(value);
+    }
+
+    /**
+     * Returns value of the field as double. Numbers and numeric strings are supported.
+     *
+     * @param document document.
+     * @return value of the field or {@link Double#NaN} if the field is missing or can not be converted.
+     */
+    public double doubleValue(Document document) {
+        return doubleValue(document.getValue(path));
+    }
+
+    public double doubleValue(Value value) {
+
+        if (value == null) {
+            return Double.NaN;
+        }
+
+        Value.Type type = value.getType();
+        if (type != numberType) {
+            ToDoubleFunction<Value> converter = numberConverter(type);
+            if (converter == null) {
+                return Double.NaN;
+            }
+            this.numberType = type;
+            this.numberConverter = converter;
+        }
+
+        return numberConverter.applyAsDouble(value);
+    }
+
+    /**
+     * Returns 64-bit hash of the value, which is the same for the equal numbers of different types, so
+     * <code>5</code> and <code>5.0</code> are the same value. Strings and numbers are hashed directly, other
+     * types are hashed by their JSON representation.
+     *
+     * @param value value of the field, not <code>null</code>.
+     * @return hash of the value.
+     */
+    public static long hash(Value value) {
+        switch (value.getType()) {
+            case STRING:
+                return hash(value.getString());
+            case DOUBLE:
+            case FLOAT:
+            case LONG:
+            case INT:
+            case SHORT:
+            case BYTE:
+            case DECIMAL:
+                // Adding zero makes negative zero positive, so both zeros are the same number
+                double number = numberConverter(value.getType()).applyAsDouble(value) + 0.0;
+                return mix(Double.doubleToLongBits(number) ^ NUMBER_SEED);
+            default:
+                return hash(value.asJsonString());
+        }
+    }
+
+    /**
+     * Returns string key of the value, which groups and counts equal values regardless of where they come from.
+     * Strings are keyed as they are, other types by their JSON representation.
+     *
+     * @param value value of the field, not <code>null</code>.
+     * @return key of the value.
+     */
+    public static String key(Value value) {
+        return (value.getType() == Value.Type.STRING) ? value.getString() : value.asJsonString();
+    }
+
+    /**
+     * FNV-1a hash of the characters, which is finalized by {@link #mix(long)}, since FNV does not spread the short
+     * strings over the high bits.
+     */
+    private static long hash(String string) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < string.length(); i++) {
+            hash = (hash ^ string.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of the MurmurHash3, which makes every bit of the result depend on every bit of the argument.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static ToLongFunction<Value> timestampConverter(Value.Type type) {
+        switch (type) {
+            case TIMESTAMP:
+                return Value::getTimestampAsLong;
+            case DATE:
+                return value -> value.getDate().toDate().getTime();
+            case TIME:
+                return value -> value.getTime().toDate().getTime();
+            case LONG:
+                return Value::getLong;
+            case INT:
+                return Value::getInt;
+            case DOUBLE:
+                return value -> (long) value.getDouble();
+            case STRING:
+                return FieldExtractor::parseLong;
+            default:
+                return null;
+        }
+    }
+
+    private static ToDoubleFunction<Value> numberConverter(Value.Type type) {
+        switch (type) {
+            case DOUBLE:
+                return Value::getDouble;
+            case FLOAT:
+                return Value::getFloat;
+            case LONG:
+                return Value::getLong;
+            case INT:
+                return Value::getInt;
+            case SHORT:
+                return Value::getShort;
+            case BYTE:
+                return Value::getByte;
+            case DECIMAL:
+                return value -> value.getDecimal().doubleValue();
+            case STRING:
+                return FieldExtractor::parseDouble;
+            default:
+                return null;
+        }
+    }
+
+    private static long parseLong(Value value) {
+        try {
+            return Long.parseLong(value.getString());
+        } catch (NumberFormatException e) {
+            return MISSING_TIMESTAMP;
+        }
+    }
+
+    private static double parseDouble(Value value) {
+        try {
+            return Double.parseDouble(value.getString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FieldExtractor{" +
+                "fieldPath='" + fieldPath + '\'' +
+                ", timestampType=" + timestampType +
+                ", numberType=" + numberType +
+                '}';
+    }
+}
@@ -22,13 +22,21 @@ public final class MetricsQueryBuilder {
 
     private static final Logger log = LoggerFactory.getLogger(MetricsQueryBuilder.class);
 
+    /**
+     * MapR-DB query option, which makes the optimizer use the specified secondary index.
+     */
+    public static final String INDEX_HINT_OPTION = "ojai.mapr.query.hint-using-index";
+
     private Connection connection;
     private Long limit;
     private String timeField;
     private String jsonCondition;
     private GrafanaQueryRequest.Range range;
+    private TimeFieldType timeFieldType = TimeFieldType.UNKNOWN;
     private Set<String> selectFields;
     private Set<String> orderByFields;
+    private String indexHint;
+    private boolean selectedFieldsRequired = true;
 
     private MetricsQueryBuilder(Connection connection) {
         this.connection = connection;
@@ -67,6 +75,43 @@ public final class MetricsQueryBuilder {
         return this;
     }
 
+    /**
+     * Specifies type of the time field values, so the range condition consists of the single predicate instead of
+     * covering all of the supported types.
+     *
+     * @param timeFieldType type of the time field values. {@link TimeFieldType#UNKNOWN} if type is mixed or unknown.
+     * @return this builder.
+     */
+    public MetricsQueryBuilder withTimeFieldType(TimeFieldType timeFieldType) {
+        this.timeFieldType = (timeFieldType != null) ? timeFieldType : TimeFieldType.UNKNOWN;
+        return this;
+    }
+
+    /**
+     * Specifies secondary index, which is passed to the optimizer as a hint.
+     *
+     * @param indexName name of the index or <code>null</code> to leave the choice to the optimizer.
+     * @return this builder.
+     */
+    public MetricsQueryBuilder withIndexHint(String indexName) {
+        this.indexHint = indexName;
+        return this;
+    }
+
+    /**
+     * Specifies whether documents must contain all of the selected fields. Required fields are checked by the
+     * 'exists' predicates, which can keep the optimizer from using an index, so consumers, which skip incomplete
+     * documents by themselves, should not require them. Time field is never checked, since the range condition
+     * matches only documents, which contain it.
+     *
+     * @param required whether the selected fields must exist. Defaults to <code>true</code>.
+     * @return this builder.
+     */
+    public MetricsQueryBuilder withSelectedFieldsRequired(boolean required) {
+        this.selectedFieldsRequired = required;
+        return this;
+    }
+
     public MetricsQueryBuilder withJsonConditon(String jsonConditon) {
         this.jsonCondition = jsonConditon;
         return this;
@@ -150,13 +195,22 @@ public final class MetricsQueryBuilder {
         QueryCondition selectedFieldsExist = null;
         if (this.selectFields != null && !this.selectFields.isEmpty()) {
 
-            selectedFieldsExist = connection.newCondition()
-                    .and();
-            for(String fieldPath : this.selectFields) {
+            List<String> requiredFields = new ArrayList<>();
+            if (this.selectedFieldsRequired) {
+                this.selectFields.stream()
+                        .filter(fieldPath -> !(rangeSpecified && fieldPath.equals(this.timeField)))
+                        .forEach(requiredFields::add);
+            }
+
+            if (!requiredFields.isEmpty()) {
+                selectedFieldsExist = connection.newCondition()
+                        .and();
+                for (String fieldPath : requiredFields) {
 
-                selectedFieldsExist = selectedFieldsExist.exists(FieldPath.parseFrom(fieldPath));
+                    selectedFieldsExist = selectedFieldsExist.exists(FieldPath.parseFrom(fieldPath));
+                }
+                selectedFieldsExist.close().build();
             }
-            selectedFieldsExist.close().build();
 
             FieldPath[] toSelect = this.selectFields.stream().map(FieldPath::parseFrom).toArray(FieldPath[]::new);
             query.select(toSelect);
@@ -187,6 +241,10 @@ public final class MetricsQueryBuilder {
             query.orderBy(this.orderByFields.toArray(new String[this.orderByFields.size()]));
         }
 
+        if (this.indexHint != null && !this.indexHint.isEmpty()) {
+            query.setOption(INDEX_HINT_OPTION, this.indexHint);
+        }
+
         return query;
     }
 
@@ -208,8 +266,8 @@ public final class MetricsQueryBuilder {
     }
 
     /**
-     * At the time of query construction we don't know actual type of the specified field path values. Field path can
-     * point to the ODate, OTime, OTimestamp, so we construct query to cover all of these.
+     * Constructs range condition for the specified time field type. If the type is unknown, field path can point to
+     * the ODate, OTime, OTimestamp or Unix timestamp, so we construct query to cover all of these.
      * TODO  add support pattern of non-ojai types using time pattern parameter.
      *
      * @param connection OJAI connection.
@@ -218,6 +276,22 @@ public final class MetricsQueryBuilder {
      * @return non-built query condition, which can be used to querying documents within the specified time range.
      */
     private QueryCondition timeRangeCondition(Connection connection, String fieldPath, GrafanaQueryRequest.Range range) {
+
+        switch (this.timeFieldType) {
+            case TIMESTAMP:
+                return rangeOTimestampCondition(connection, fieldPath, range);
+            case TIME:
+                return rangeOTimeCondition(connection, fieldPath, range);
+            case DATE:
+                return rangeODateCondition(connection, fieldPath, range);
+            case LONG:
+                return rangeUnixTimestampCondition(connection, fieldPath, range);
+            default:
+                return anyTypeRangeCondition(connection, fieldPath, range);
+        }
+    }
+
+    private QueryCondition anyTypeRangeCondition(Connection connection, String fieldPath, GrafanaQueryRequest.Range range) {
         return connection.newCondition()
                 .or()
                 .condition(
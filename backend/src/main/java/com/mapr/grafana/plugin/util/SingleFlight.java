@@ -0,0 +1,180 @@
+package com.mapr.grafana.plugin.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations of the same key: the first caller starts the computation, while the callers that
+ * arrive before the computation is completed wait for it and get the same value instead of computing it again.
+ * Completed values are not retained.
+ * <p>
+ * Computations are performed by the executor rather than by the callers, so the caller, which is interrupted while
+ * waiting, such as the target which exceeded its request timeout, is detached without failing the other callers.
+ * Computation is cancelled once all of its callers are detached. When the executor is saturated, computation is
+ * performed by the first caller, which is then cancelled along with it.
+ *
+ * @param <K> key type. Must implement {@link Object#equals(Object)} and {@link Object#hashCode()}.
+ * @param <V> value type.
+ */
+public final class SingleFlight<K, V> {
+
+    /**
+     * Computation in flight along with the number of its callers, which are still waiting for it. Number of callers
+     * is only changed within the atomic operations of the in-flight map.
+     */
+    private static final class Flight<V> {
+
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        int callers = 1;
+
+        private Future<?> computation;
+        private boolean cancelled;
+
+        synchronized void startedAs(Future<?> computation) {
+            this.computation = computation;
+            if (cancelled) {
+                computation.cancel(true);
+            }
+        }
+
+        synchronized void cancel() {
+            this.cancelled = true;
+            if (computation != null) {
+                computation.cancel(true);
+            }
+            result.completeExceptionally(new CancellationException("All callers of the computation are detached"));
+        }
+    }
+
+    private final ExecutorService executor;
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param executor performs the computations.
+     */
+    public SingleFlight(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Computes the value using specified supplier, unless computation of the same key is already in flight.
+     *
+     * @param key      key of computation.
+     * @param supplier computes the value.
+     * @return computed value, which may be shared with concurrent callers.
+     * @throws IllegalStateException if the caller is interrupted while waiting for the value.
+     */
+    public V execute(K key, Supplier<V> supplier) {
+
+        boolean[] created = new boolean[1];
+        Flight<V> flight = inFlight.compute(key, (k, existing) -> {
+            if (existing != null) {
+                existing.callers++;
+                return existing;
+            }
+            created[0] = true;
+            return new Flight<>();
+        });
+
+        if (created[0]) {
+            executed.increment();
+            start(key, flight, supplier);
+        } else {
+            coalesced.increment();
+        }
+
+        return await(key, flight);
+    }
+
+    private void start(K key, Flight<V> flight, Supplier<V> supplier) {
+
+        // Computation is no longer in flight by the time its callers get the value, so the later callers compute it
+        // again instead of getting the completed value
+        Runnable computation = () -> {
+            try {
+                V value = supplier.get();
+                inFlight.remove(key, flight);
+                flight.result.complete(value);
+            } catch (RuntimeException | Error e) {
+                inFlight.remove(key, flight);
+                flight.result.completeExceptionally(e);
+            }
+        };
+
+        try {
+            flight.startedAs(executor.submit(computation));
+        } catch (RejectedExecutionException e) {
+            computation.run();
+        }
+    }
+
+    private V await(K key, Flight<V> flight) {
+
+        try {
+            return flight.result.get();
+        } catch (InterruptedException e) {
+            detach(key, flight);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for in-flight computation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Detaches the caller from the computation, which is cancelled if it has no callers left. Computation, which is
+     * no longer in flight, is already completed, so there is nothing to cancel.
+     */
+    private void detach(K key, Flight<V> flight) {
+
+        boolean[] abandoned = new boolean[1];
+        inFlight.computeIfPresent(key, (k, existing) -> {
+            if (existing != flight || --existing.callers > 0) {
+                return existing;
+            }
+            abandoned[0] = true;
+            return null;
+        });
+
+        if (abandoned[0]) {
+            flight.cancel();
+        }
+    }
+
+    /**
+     * @return number of computations which were actually performed.
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * @return number of callers which were served by computations of the other callers.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return number of computations which are in flight at the moment.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
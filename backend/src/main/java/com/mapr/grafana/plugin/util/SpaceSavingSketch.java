@@ -0,0 +1,206 @@
+package com.mapr.grafana.plugin.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving sketch of the most frequent values. Sketch monitors at most {@link #getCapacity()} values, so its
+ * memory does not depend on the number of distinct values. Once all counters are taken, the value, which is not
+ * monitored, replaces the value of the minimum counter and inherits its count as the error. So the count of a
+ * monitored value overestimates its true count by at most its error, which is bounded by
+ * <code>total / capacity</code>, and every value, which occurs more often than that, is monitored.
+ * <p>
+ * Counters are kept in the min-heap, which is indexed by the map of the monitored values, so each value is added in
+ * <code>O(log capacity)</code>. Sketch must be confined to a single thread.
+ */
+public final class SpaceSavingSketch {
+
+    /**
+     * Counter of the monitored value.
+     */
+    public static final class Counter {
+
+        private final String value;
+        private final long count;
+        private final long error;
+
+        Counter(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Returns estimated count, which is not less than the true count of the value.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns maximum overestimation of the count, so the true count is at least <code>count - error</code>.
+         */
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Counter{" +
+                    "value='" + value + '\'' +
+                    ", count=" + count +
+                    ", error=" + error +
+                    '}';
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Integer> heapIndexes;
+
+    // Min-heap of the counters by count, which is stored in the parallel arrays
+    private final String[] values;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+    private long total;
+
+    /**
+     * @param capacity maximum number of the monitored values.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public SpaceSavingSketch(int capacity) {
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, but was " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.heapIndexes = new HashMap<>(Math.min(capacity, 1 << 16) * 2);
+        this.values = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+    }
+
+    /**
+     * Counts the occurrence of the value.
+     *
+     * @param value value, not <code>null</code>.
+     */
+    public void add(String value) {
+
+        total++;
+
+        Integer index = heapIndexes.get(value);
+        if (index != null) {
+            counts[index]++;
+            siftDown(index);
+            return;
+        }
+
+        if (size < capacity) {
+            values[size] = value;
+            counts[size] = 1;
+            errors[size] = 0;
+            heapIndexes.put(value, size);
+            siftUp(size++);
+            return;
+        }
+
+        // Value of the minimum counter is replaced, and its count becomes the error of the new value
+        heapIndexes.remove(values[0]);
+        values[0] = value;
+        errors[0] = counts[0];
+        counts[0]++;
+        heapIndexes.put(value, 0);
+        siftDown(0);
+    }
+
+    /**
+     * Returns counters of at most <code>k</code> most frequent values ordered by count, and then by value.
+     *
+     * @param k number of values.
+     * @return counters of the top values.
+     */
+    public List<Counter> top(int k) {
+
+        List<Counter> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            counters.add(new Counter(values[i], counts[i], errors[i]));
+        }
+
+        counters.sort(Comparator.comparingLong(Counter::getCount).reversed().thenComparing(Counter::getValue));
+        return counters.subList(0, Math.min(k, counters.size()));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns number of added values, including repeated ones.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (counts[parent] <= counts[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (2 * index + 1 < size) {
+
+            int child = 2 * index + 1;
+            if (child + 1 < size && counts[child + 1] < counts[child]) {
+                child++;
+            }
+
+            if (counts[index] <= counts[child]) {
+                return;
+            }
+
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+
+        String value = values[i];
+        long count = counts[i];
+        long error = errors[i];
+
+        values[i] = values[j];
+        counts[i] = counts[j];
+        errors[i] = errors[j];
+        values[j] = value;
+        counts[j] = count;
+        errors[j] = error;
+
+        heapIndexes.put(values[i], i);
+        heapIndexes.put(values[j], j);
+    }
+
+    @Override
+    public String toString() {
+        return "SpaceSavingSketch{" +
+                "capacity=" + capacity +
+                ", size=" + size +
+                ", total=" + total +
+                '}';
+    }
+}
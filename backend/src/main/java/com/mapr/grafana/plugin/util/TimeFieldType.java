@@ -0,0 +1,38 @@
+package com.mapr.grafana.plugin.util;
+
+import org.ojai.Value;
+
+/**
+ * Type of the values stored in the time field. Range condition for the field of known type consists of a single
+ * predicate, while {@link #UNKNOWN} type requires condition, which covers all of the supported types.
+ */
+public enum TimeFieldType {
+
+    TIMESTAMP, TIME, DATE, LONG, UNKNOWN;
+
+    /**
+     * Returns time field type, which corresponds to the specified OJAI value type.
+     *
+     * @param valueType OJAI value type.
+     * @return time field type or {@link #UNKNOWN} if values of the specified type can not be used as time.
+     */
+    public static TimeFieldType of(Value.Type valueType) {
+
+        if (valueType == null) {
+            return UNKNOWN;
+        }
+
+        switch (valueType) {
+            case TIMESTAMP:
+                return TIMESTAMP;
+            case TIME:
+                return TIME;
+            case DATE:
+                return DATE;
+            case LONG:
+                return LONG;
+            default:
+                return UNKNOWN;
+        }
+    }
+}
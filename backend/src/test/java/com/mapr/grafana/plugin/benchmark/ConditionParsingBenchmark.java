@@ -0,0 +1,52 @@
+package com.mapr.grafana.plugin.benchmark;
+
+import com.mapr.db.util.ConditionParser;
+import org.ojai.store.QueryCondition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures per target cost of the JSON condition parsing by the MapR client {@link ConditionParser}, which bounds the
+ * savings of caching the parsed conditions. Can be run from the IDE or using test classpath:
+ * <pre>
+ *     mvn test-compile exec:java -Dexec.mainClass=com.mapr.grafana.plugin.benchmark.ConditionParsingBenchmark \
+ *         -Dexec.classpathScope=test
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ConditionParsingBenchmark {
+
+    private static final String CONDITION = "{\"$and\":[" +
+            "{\"$or\":[{\"$eq\":{\"user.lang\":\"en\"}},{\"$eq\":{\"user.lang\":\"de\"}},{\"$eq\":{\"user.lang\":\"fr\"}}]}," +
+            "{\"$or\":[{\"$ge\":{\"likes\":10}},{\"$ge\":{\"retweets\":5}}]}," +
+            "{\"$ne\":{\"source\":\"bot\"}}," +
+            "{\"$like\":{\"text\":\"%mapr%\"}}," +
+            "{\"$between\":{\"followers\":[100,100000]}}" +
+            "]}";
+
+    @Benchmark
+    public QueryCondition parse() {
+        return new ConditionParser().parseCondition(CONDITION).build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConditionParsingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,116 @@
+package com.mapr.grafana.plugin.benchmark;
+
+import com.mapr.grafana.plugin.model.timeseries.AccumulatorTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.MetricAccumulators;
+import org.ojai.Document;
+import org.ojai.DocumentReader;
+import org.ojai.DocumentStream;
+import org.ojai.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures aggregation of wide documents from the materialized {@link Document} objects against the
+ * {@link DocumentReader} event stream, which only decodes the time and metric fields. Documents are parsed from the
+ * JSON stream on each invocation, so both of the paths pay for decoding. Allocation rate is reported by the GC
+ * profiler as <code>gc.alloc.rate.norm</code>. Can be run from the IDE or using test classpath:
+ * <pre>
+ *     mvn test-compile exec:java -Dexec.mainClass=com.mapr.grafana.plugin.benchmark.DocumentReaderBenchmark \
+ *         -Dexec.classpathScope=test
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentReaderBenchmark {
+
+    private static final String TIME_FIELD = "time";
+    private static final String METRIC_FIELD = "likes";
+    private static final long INTERVAL_MS = 60_000;
+    private static final int DOCUMENTS = 10_000;
+
+    @Param({"2", "20", "100"})
+    private int extraFields;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+
+        StringBuilder stream = new StringBuilder();
+        for (int i = 0; i < DOCUMENTS; i++) {
+
+            Document user = Json.newDocument();
+            for (int field = 0; field < extraFields; field++) {
+                user.set("attribute_" + field, "value of the attribute " + field);
+            }
+
+            Document document = Json.newDocument()
+                    .set(TIME_FIELD, i * 1000L)
+                    .set("user", user)
+                    .set(METRIC_FIELD, (double) (i % 100));
+            for (int field = 0; field < extraFields; field++) {
+                document.set("field_" + field, "value of the field " + field);
+            }
+
+            stream.append(document.asJsonString()).append('\n');
+        }
+
+        json = stream.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public double documents() {
+
+        AccumulatorTimeSeries series = new AccumulatorTimeSeries(MetricAccumulators.AVG, "avg", TIME_FIELD,
+                METRIC_FIELD, INTERVAL_MS);
+        try (DocumentStream stream = Json.newDocumentStream(new ByteArrayInputStream(json))) {
+            for (Document document : stream) {
+                series.addDocument(document);
+            }
+        }
+
+        return series.getBucketValue(0);
+    }
+
+    @Benchmark
+    public double documentReaders() {
+
+        AccumulatorTimeSeries series = new AccumulatorTimeSeries(MetricAccumulators.AVG, "avg", TIME_FIELD,
+                METRIC_FIELD, INTERVAL_MS);
+        try (DocumentStream stream = Json.newDocumentStream(new ByteArrayInputStream(json))) {
+            for (DocumentReader reader : stream.documentReaders()) {
+                series.addDocumentReader(reader);
+            }
+        }
+
+        return series.getBucketValue(0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DocumentReaderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+package com.mapr.grafana.plugin.benchmark;
+
+import com.mapr.grafana.plugin.model.timeseries.AccumulatorTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.MetricAccumulators;
+import org.ojai.Document;
+import org.ojai.FieldPath;
+import org.ojai.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures averaging of a single dense bucket by the running sum of the AVG accumulator against the previous
+ * implementation, which kept every value of the bucket and recomputed the average on each document. Can be run from
+ * the IDE or using test classpath:
+ * <pre>
+ *     mvn test-compile exec:java -Dexec.mainClass=com.mapr.grafana.plugin.benchmark.FieldAverageBenchmark \
+ *         -Dexec.classpathScope=test
+ * </pre>
+ * Running sum is linear in the number of documents, while the value list is quadratic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAverageBenchmark {
+
+    private static final String TIME_FIELD = "time";
+    private static final String METRIC_FIELD = "likes";
+    private static final long INTERVAL_MS = 3600_000;
+
+    @Param({"1000", "10000", "100000"})
+    private int documentsPerBucket;
+
+    private List<Document> documents;
+
+    /**
+     * Previous averaging algorithm: every value of the current bucket is kept and the average is recomputed by
+     * streaming all of them on each document.
+     */
+    private static class ListAverage {
+
+        private final List<Double> bucketValues = new ArrayList<>();
+        private double average;
+
+        void addDocument(Document document) {
+            bucketValues.add(document.getValue(FieldPath.parseFrom(METRIC_FIELD)).getDouble());
+            OptionalDouble bucketAverage = bucketValues.stream().mapToDouble(Double::doubleValue).average();
+            average = bucketAverage.orElse(average);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        documents = new ArrayList<>(documentsPerBucket);
+        for (int i = 0; i < documentsPerBucket; i++) {
+            documents.add(Json.newDocument()
+                    .set(TIME_FIELD, (long) i)
+                    .set(METRIC_FIELD, (double) (i % 100)));
+        }
+    }
+
+    @Benchmark
+    public double accumulator() {
+        AccumulatorTimeSeries series = new AccumulatorTimeSeries(MetricAccumulators.AVG, "avg", TIME_FIELD,
+                METRIC_FIELD, INTERVAL_MS);
+        documents.forEach(series::addDocument);
+        return series.getBucketValue(0);
+    }
+
+    @Benchmark
+    public double valueList() {
+        ListAverage listAverage = new ListAverage();
+        documents.forEach(listAverage::addDocument);
+        return listAverage.average;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FieldAverageBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,152 @@
+package com.mapr.grafana.plugin.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mapr.grafana.plugin.model.GrafanaMetrics;
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.GrafanaQueryTarget;
+import com.mapr.grafana.plugin.model.timeseries.AccumulatorTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.MetricAccumulators;
+import com.mapr.grafana.plugin.service.MapRDBService;
+import com.mapr.grafana.plugin.util.GrafanaTestQueryRequestBuilder;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.AsyncListener;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
+
+public class AsyncQueryControllerTest {
+
+    private static final long TIMEOUT_MS = 5000;
+    private static final long ASYNC_RESULT_WAIT_MS = 5000;
+
+    private final MapRDBService service = mock(MapRDBService.class);
+    private final ExecutorService queryIoExecutor = Executors.newSingleThreadExecutor();
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        released.countDown();
+        queryIoExecutor.shutdownNow();
+    }
+
+    private MockMvc mockMvc(ExecutorService executor) {
+        return standaloneSetup(new AsyncQueryController(service, executor, TIMEOUT_MS)).build();
+    }
+
+    private static String queryJson() throws Exception {
+
+        GrafanaQueryRequest request = new GrafanaTestQueryRequestBuilder()
+                .withTimeSeriesTarget()
+                .withTable("/table")
+                .withTarget("count")
+                .withTimeField("time")
+                .withMetric(GrafanaQueryTarget.DOCUMENT_COUNT_METRIC)
+                .addTarget()
+                .build();
+
+        return new ObjectMapper().writeValueAsString(request);
+    }
+
+    @Test
+    public void queriedMetricsShouldBeReturnedByAsyncDispatch() throws Exception {
+
+        Set<GrafanaMetrics> metrics = Collections.singleton(
+                new AccumulatorTimeSeries(MetricAccumulators.COUNT, "count", "time", null, 60000));
+        when(service.query(any(GrafanaQueryRequest.class))).thenReturn(metrics);
+
+        MockMvc mockMvc = mockMvc(queryIoExecutor);
+        MvcResult started = mockMvc.perform(post("/query").contentType(APPLICATION_JSON).content(queryJson()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        started.getAsyncResult(ASYNC_RESULT_WAIT_MS);
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].target").value("count"));
+    }
+
+    @Test
+    public void requestShouldTimeOutWithGatewayTimeout() throws Exception {
+
+        when(service.query(any(GrafanaQueryRequest.class))).thenAnswer(invocation -> {
+            released.await();
+            return Collections.emptySet();
+        });
+
+        MockMvc mockMvc = mockMvc(queryIoExecutor);
+        MvcResult started = mockMvc.perform(post("/query").contentType(APPLICATION_JSON).content(queryJson()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Mock servlet container does not time out async requests by itself
+        MockAsyncContext asyncContext = (MockAsyncContext) started.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(null);
+        }
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    public void queryFailureShouldBeReturnedAsErrorResult() throws Exception {
+
+        IllegalStateException failure = new IllegalStateException("OJAI connection is not established");
+        when(service.query(any(GrafanaQueryRequest.class))).thenThrow(failure);
+
+        MvcResult started = mockMvc(queryIoExecutor)
+                .perform(post("/query").contentType(APPLICATION_JSON).content(queryJson()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertSame(failure, started.getAsyncResult(ASYNC_RESULT_WAIT_MS));
+    }
+
+    @Test
+    public void requestShouldBeRejectedWhenExecutorIsSaturated() throws Exception {
+
+        when(service.query(any(GrafanaQueryRequest.class))).thenAnswer(invocation -> {
+            released.await();
+            return Collections.emptySet();
+        });
+
+        ExecutorService saturated = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+                new ThreadPoolExecutor.AbortPolicy());
+        try {
+            MockMvc mockMvc = mockMvc(saturated);
+            mockMvc.perform(post("/query").contentType(APPLICATION_JSON).content(queryJson()));
+
+            MvcResult rejected = mockMvc.perform(post("/query").contentType(APPLICATION_JSON).content(queryJson()))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(rejected))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            released.countDown();
+            saturated.shutdownNow();
+        }
+    }
+}
@@ -289,7 +289,7 @@ public class QueryControllerIntegrationTest {
                 .andExpect(content().contentType(contentType))
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].target", is("TweetsByTime")))
-                .andExpect(jsonPath("$[0].datapoints", hasSize(5)));
+                .andExpect(jsonPath("$[0].datapoints", hasSize(6)));
     }
 
     @Test
@@ -334,9 +334,9 @@ public class QueryControllerIntegrationTest {
                 .andExpect(jsonPath("$[0].target", isIn(targets)))
                 .andExpect(jsonPath("$[1].target", isIn(targets)))
                 .andExpect(jsonPath("$[2].target", isIn(targets)))
-                .andExpect(jsonPath("$[0].datapoints", hasSize(isIn(Arrays.asList(1, 3)))))
-                .andExpect(jsonPath("$[1].datapoints", hasSize(isIn(Arrays.asList(1, 3)))))
-                .andExpect(jsonPath("$[2].datapoints", hasSize(isIn(Arrays.asList(1, 3)))));
+                .andExpect(jsonPath("$[0].datapoints", hasSize(isIn(Arrays.asList(1, 2, 3)))))
+                .andExpect(jsonPath("$[1].datapoints", hasSize(isIn(Arrays.asList(1, 2, 3)))))
+                .andExpect(jsonPath("$[2].datapoints", hasSize(isIn(Arrays.asList(1, 2, 3)))));
     }
 
     @Test
@@ -365,12 +365,13 @@ public class QueryControllerIntegrationTest {
                 .andExpect(content().contentType(contentType))
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].target", is("TweetsLikesByTime")))
-                .andExpect(jsonPath("$[0].datapoints", hasSize(5)))
+                .andExpect(jsonPath("$[0].datapoints", hasSize(6)))
                 .andExpect(jsonPath("$[0].datapoints[0][0]", isIn(validLikeNums)))
                 .andExpect(jsonPath("$[0].datapoints[1][0]", isIn(validLikeNums)))
                 .andExpect(jsonPath("$[0].datapoints[2][0]", isIn(validLikeNums)))
                 .andExpect(jsonPath("$[0].datapoints[3][0]", isIn(validLikeNums)))
-                .andExpect(jsonPath("$[0].datapoints[4][0]", isIn(validLikeNums)));
+                .andExpect(jsonPath("$[0].datapoints[4][0]", isIn(validLikeNums)))
+                .andExpect(jsonPath("$[0].datapoints[5][0]", isIn(validLikeNums)));
     }
 
     @Test
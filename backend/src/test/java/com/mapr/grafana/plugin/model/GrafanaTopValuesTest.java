@@ -0,0 +1,47 @@
+package com.mapr.grafana.plugin.model;
+
+import org.junit.Test;
+import org.ojai.Document;
+import org.ojai.FieldPath;
+import org.ojai.Value;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GrafanaTopValuesTest {
+
+    private static final String DATE_JSON = "{\"$date\":\"2018-01-01\"}";
+
+    private static Value value(Value.Type type, String json) {
+
+        Value value = mock(Value.class);
+        when(value.getType()).thenReturn(type);
+        when(value.asJsonString()).thenReturn(json);
+        return value;
+    }
+
+    @Test
+    public void arrayElementsShouldBeKeyedAsScalarValues() {
+
+        Document scalar = mock(Document.class);
+        Value date = value(Value.Type.DATE, DATE_JSON);
+        when(scalar.getValue(FieldPath.parseFrom("created"))).thenReturn(date);
+
+        // Elements of the list are Java objects, which are not rendered as JSON, so they are read as values
+        Document array = mock(Document.class);
+        Value dates = value(Value.Type.ARRAY, "[" + DATE_JSON + "]");
+        when(dates.getList()).thenReturn(Collections.singletonList(new Object()));
+        when(array.getValue(FieldPath.parseFrom("created"))).thenReturn(dates);
+        when(array.getValue(FieldPath.parseFrom("created[0]"))).thenReturn(date);
+
+        GrafanaTopValues topValues = new GrafanaTopValues("created", 10);
+        topValues.addDocument(scalar);
+        topValues.addDocument(array);
+
+        assertEquals(Collections.singletonList(Arrays.asList(DATE_JSON, 2L, 0L)), topValues.getRows());
+    }
+}
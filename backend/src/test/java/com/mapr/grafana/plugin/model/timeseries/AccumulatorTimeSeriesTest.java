@@ -0,0 +1,154 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mapr.grafana.plugin.config.JacksonConfig;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.mapr.grafana.plugin.util.FakeDocuments.document;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.MINUTE;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.START;
+import static org.junit.Assert.assertEquals;
+
+public class AccumulatorTimeSeriesTest {
+
+    @Test
+    public void averageShouldBeComputedPerBucketInAnyOrder() {
+
+        AccumulatorTimeSeries series = new AccumulatorTimeSeries(MetricAccumulators.AVG, "avg", "time", "likes",
+                MINUTE);
+
+        series.addDocument(document("time", START + MINUTE, 10));
+        series.addDocument(document("time", START, 1));
+        series.addDocument(document("time", START + MINUTE + 1, 20));
+        series.addDocument(document("time", START + 2, 2));
+        series.addDocument(document("time", START + MINUTE + 2, 60));
+
+        List<AbstractGrafanaTimeSeries.Datapoint> datapoints = series.getDatapoints();
+        assertEquals(2, datapoints.size());
+        assertEquals(1.5, datapoints.get(0).getValue(), 0);
+        assertEquals(30, datapoints.get(1).getValue(), 0);
+    }
+
+    @Test
+    public void completedAverageShouldBeKeptAsIs() {
+
+        AccumulatorTimeSeries series = new AccumulatorTimeSeries(MetricAccumulators.AVG, "avg", "time", "likes",
+                MINUTE);
+        series.addCompletedDatapoints(Collections.singletonList(new AbstractGrafanaTimeSeries.Datapoint(7.5, START)));
+        series.addDocument(document("time", START + MINUTE, 3));
+
+        List<AbstractGrafanaTimeSeries.Datapoint> datapoints = series.getDatapoints();
+        assertEquals(7.5, datapoints.get(0).getValue(), 0);
+        assertEquals(3, datapoints.get(1).getValue(), 0);
+    }
+
+    @Test
+    public void documentsWithoutMetricShouldBeSkipped() {
+
+        AccumulatorTimeSeries series = new AccumulatorTimeSeries(MetricAccumulators.AVG, "avg", "time", "likes",
+                MINUTE);
+        series.addDocument(document("time", START, 4));
+        series.addDocument(document("time", START + 1));
+        series.addDocument(null);
+
+        assertEquals(1, series.getDatapointCount());
+        assertEquals(4, series.getBucketValue(0), 0);
+        assertEquals(2, series.getSkippedDocuments());
+    }
+
+    @Test
+    public void valueOfEarliestDocumentShouldBeKeptRegardlessOfOrder() {
+
+        AccumulatorTimeSeries series = new AccumulatorTimeSeries(MetricAccumulators.VALUE, "value", "time", "likes",
+                MINUTE);
+
+        series.addDocument(document("time", START + 30, 3));
+        series.addDocument(document("time", START + 10, 1));
+        series.addDocument(document("time", START + 20, 2));
+
+        // Buckets grow towards the past, so value timestamps must be moved along with values
+        series.addDocument(document("time", START - 100 * MINUTE + 5, 5));
+        series.addDocument(document("time", START - 100 * MINUTE + 4, 4));
+        series.addDocument(document("time", START + 10, 6));
+
+        List<AbstractGrafanaTimeSeries.Datapoint> datapoints = series.getDatapoints();
+        assertEquals(2, datapoints.size());
+        assertEquals(4, datapoints.get(0).getValue(), 0);
+        assertEquals(1, datapoints.get(1).getValue(), 0);
+    }
+
+
+    @Test
+    public void documentsShouldBeCountedInEpochAlignedBuckets() {
+
+        AccumulatorTimeSeries series = documentCount(MINUTE);
+        series.allocateBuckets(START, START + 10 * MINUTE);
+
+        series.addDocument(document("time", START + MINUTE / 2));
+        series.addDocument(document("time", START + MINUTE + 1));
+        series.addDocument(document("time", START + 2 * MINUTE - 1));
+        series.addDocument(document("time", START + 10 * MINUTE));
+
+        List<AbstractGrafanaTimeSeries.Datapoint> datapoints = series.getDatapoints();
+        assertEquals(3, datapoints.size());
+        assertEquals(START, datapoints.get(0).getTimestamp());
+        assertEquals(1, datapoints.get(0).getValue(), 0);
+        assertEquals(START + MINUTE, datapoints.get(1).getTimestamp());
+        assertEquals(2, datapoints.get(1).getValue(), 0);
+        assertEquals(START + 10 * MINUTE, datapoints.get(2).getTimestamp());
+        assertEquals(11, series.getBucketCount());
+    }
+
+    @Test
+    public void bucketsShouldGrowInBothDirections() {
+
+        AccumulatorTimeSeries series = documentCount(MINUTE);
+
+        series.addDocument(document("time", START));
+        series.addDocument(document("time", START + 100 * MINUTE));
+        series.addDocument(document("time", START - 50 * MINUTE));
+        series.addDocument(document("time", START + 100 * MINUTE + 1));
+
+        List<AbstractGrafanaTimeSeries.Datapoint> datapoints = series.getDatapoints();
+        assertEquals(3, datapoints.size());
+        assertEquals(START - 50 * MINUTE, datapoints.get(0).getTimestamp());
+        assertEquals(START, datapoints.get(1).getTimestamp());
+        assertEquals(START + 100 * MINUTE, datapoints.get(2).getTimestamp());
+        assertEquals(2, datapoints.get(2).getValue(), 0);
+        assertEquals(Long.valueOf(START + 100 * MINUTE), series.getLastDatapointTimestamp());
+        assertEquals(Long.valueOf(START + 100 * MINUTE + 1), series.getLastValueTimestamp());
+    }
+
+    @Test
+    public void documentsBeyondMaxBucketsShouldBeSkipped() {
+
+        AccumulatorTimeSeries series = documentCount(1);
+
+        series.addDocument(document("time", START));
+        series.addDocument(document("time", START + AbstractGrafanaTimeSeries.MAX_BUCKETS));
+
+        assertEquals(1, series.getDatapointCount());
+    }
+
+    @Test
+    public void seriesShouldBeSerializedFromBuckets() throws Exception {
+
+        AccumulatorTimeSeries series = documentCount(MINUTE);
+        series.allocateBuckets(START, START + 3 * MINUTE);
+        series.addDocument(document("time", START));
+        series.addDocument(document("time", START + 2 * MINUTE));
+        series.setMeta(TimeSeriesMeta.complete(2));
+
+        ObjectMapper mapper = new JacksonConfig().objectMapperBuilder().build();
+
+        assertEquals("{\"target\":\"count\",\"datapoints\":[[1.0," + START + "],[1.0," + (START + 2 * MINUTE) + "]]," +
+                "\"meta\":{\"truncated\":false,\"scanned_documents\":2}}", mapper.writeValueAsString(series));
+    }
+
+    private static AccumulatorTimeSeries documentCount(long intervalMs) {
+        return new AccumulatorTimeSeries(MetricAccumulators.COUNT, "count", "time", null, intervalMs);
+    }
+}
@@ -0,0 +1,76 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.mapr.grafana.plugin.util.FakeDocuments.document;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.MINUTE;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DownsampledFieldValueTimeSeriesTest {
+
+    @Test
+    public void peaksShouldBeSelectedRegardlessOfOrder() {
+
+        DownsampledFieldValueTimeSeries series = new DownsampledFieldValueTimeSeries("value", "time", "likes", MINUTE);
+
+        series.addDocument(document("time", START + 10, 5));
+        series.addDocument(document("time", START + 20, 6));
+
+        // Spike in the middle bucket, which would be lost by the value of the earliest document
+        series.addDocument(document("time", START + MINUTE + 30, 100));
+        series.addDocument(document("time", START + MINUTE + 10, 5));
+        series.addDocument(document("time", START + MINUTE + 50, 6));
+
+        // Dip in the last bucket
+        series.addDocument(document("time", START + 2 * MINUTE + 40, -50));
+        series.addDocument(document("time", START + 2 * MINUTE + 10, 5));
+
+        List<AbstractGrafanaTimeSeries.Datapoint> datapoints = series.getDatapoints();
+        assertEquals(3, datapoints.size());
+        assertEquals(100, datapoints.get(1).getValue(), 0);
+        assertEquals(-50, datapoints.get(2).getValue(), 0);
+
+        // Extremes are placed at the timestamps of their documents
+        assertEquals(START + MINUTE + 30, datapoints.get(1).getTimestamp());
+        assertEquals(START + 2 * MINUTE + 40, datapoints.get(2).getTimestamp());
+    }
+
+    @Test
+    public void completedDatapointsShouldKeepTheirTimestamps() {
+
+        DownsampledFieldValueTimeSeries series = new DownsampledFieldValueTimeSeries("value", "time", "likes", MINUTE);
+        series.addDocument(document("time", START + 10, 5));
+        series.addDocument(document("time", START + 40, 60));
+
+        DownsampledFieldValueTimeSeries restored = new DownsampledFieldValueTimeSeries("value", "time", "likes",
+                MINUTE);
+        restored.addCompletedDatapoints(series.getDatapoints());
+
+        assertEquals(1, restored.getDatapoints().size());
+        assertEquals(START + 40, restored.getDatapoints().get(0).getTimestamp());
+        assertEquals(60, restored.getDatapoints().get(0).getValue(), 0);
+    }
+
+    @Test
+    public void intervalShouldBoundNumberOfDatapoints() {
+
+        long intervalMs = 10 * 1000;
+        long rangeMs = 24 * 60 * MINUTE;
+        long maxDataPoints = 100;
+
+        long downsampledMs = DownsampledFieldValueTimeSeries.intervalFor(rangeMs, intervalMs, maxDataPoints);
+        assertEquals(0, downsampledMs % intervalMs);
+
+        // Range, which is not aligned to the interval, spans one more bucket on each side
+        long from = START + 1;
+        long to = from + rangeMs;
+        long buckets = Math.floorDiv(to, downsampledMs) - Math.floorDiv(from, downsampledMs) + 2;
+        assertTrue("Range must fit into " + maxDataPoints + " buckets, but took " + buckets, buckets <= maxDataPoints);
+
+        assertEquals(intervalMs, DownsampledFieldValueTimeSeries.intervalFor(MINUTE, intervalMs, maxDataPoints));
+    }
+}
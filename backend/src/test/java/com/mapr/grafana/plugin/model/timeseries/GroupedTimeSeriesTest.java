@@ -0,0 +1,101 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import com.mapr.grafana.plugin.model.GrafanaMetrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.mapr.grafana.plugin.util.FakeDocuments.document;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.MINUTE;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GroupedTimeSeriesTest {
+
+    @Test
+    public void groupsOverLimitShouldBeMergedIntoOtherSeries() {
+
+        GroupedTimeSeries grouped = countsByAuthor(100, 2);
+        addDocuments(grouped, "alice", 5);
+        addDocuments(grouped, "bob", 3);
+        addDocuments(grouped, "carol", 2);
+        addDocuments(grouped, "dave", 1);
+        grouped.selectTopGroups();
+
+        List<AbstractGrafanaTimeSeries> series = grouped.getSeries();
+        assertEquals(3, series.size());
+        assertSeries("tweets alice", 5, series.get(0));
+        assertSeries("tweets bob", 3, series.get(1));
+        assertSeries("tweets" + GroupedTimeSeries.OTHER_GROUP_SUFFIX, 3, series.get(2));
+    }
+
+    @Test
+    public void documentsOfValuesOverCapShouldBeAggregatedIntoOtherSeries() {
+
+        GroupedTimeSeries grouped = countsByAuthor(2, 10);
+        addDocuments(grouped, "alice", 2);
+        addDocuments(grouped, "bob", 2);
+        addDocuments(grouped, "carol", 4);
+        addDocuments(grouped, "alice", 1);
+        grouped.selectTopGroups();
+
+        List<AbstractGrafanaTimeSeries> series = grouped.getSeries();
+        assertEquals(4, grouped.getOverflowDocuments());
+        assertSeries("tweets alice", 3, series.get(0));
+        assertSeries("tweets bob", 2, series.get(1));
+        assertSeries("tweets" + GroupedTimeSeries.OTHER_GROUP_SUFFIX, 4, series.get(2));
+    }
+
+    @Test
+    public void groupedSeriesShouldBeReplacedByItsGroupsInResponse() {
+
+        GroupedTimeSeries grouped = countsByAuthor(100, 10);
+        addDocuments(grouped, "alice", 1);
+        addDocuments(grouped, "bob", 1);
+        grouped.selectTopGroups();
+
+        List<GrafanaMetrics> metrics = new ArrayList<>();
+        CompositeTimeSeries.addTo(metrics, grouped);
+
+        assertEquals(2, metrics.size());
+        assertTrue(metrics.containsAll(grouped.getSeries()));
+    }
+
+    @Test
+    public void seriesShouldBeCreatedForPresentGroupsOnly() {
+
+        List<String> created = new ArrayList<>();
+        GroupedTimeSeries grouped = new GroupedTimeSeries("tweets", "author", name -> {
+            created.add(name);
+            return new AccumulatorTimeSeries(MetricAccumulators.COUNT, name, "time", null, MINUTE);
+        }, 100, 10);
+
+        assertTrue(created.isEmpty());
+        addDocuments(grouped, "alice", 2);
+        addDocuments(grouped, "bob", 1);
+        grouped.selectTopGroups();
+
+        assertEquals(Arrays.asList("tweets alice", "tweets bob"), created);
+    }
+
+    private static GroupedTimeSeries countsByAuthor(int maxGroups, int groupLimit) {
+        return new GroupedTimeSeries("tweets", "author",
+                name -> new AccumulatorTimeSeries(MetricAccumulators.COUNT, name, "time", null, MINUTE),
+                maxGroups, groupLimit);
+    }
+
+    private static void addDocuments(GroupedTimeSeries grouped, String author, int count) {
+        for (int i = 0; i < count; i++) {
+            grouped.addDocument(document("time", START + i * MINUTE / 10, "author", author));
+        }
+    }
+
+    private static void assertSeries(String target, double count, AbstractGrafanaTimeSeries series) {
+        assertEquals(target, series.getTarget());
+        assertEquals(1, series.getDatapointCount());
+        assertEquals(count, series.getDatapoints().get(0).getValue(), 0);
+    }
+}
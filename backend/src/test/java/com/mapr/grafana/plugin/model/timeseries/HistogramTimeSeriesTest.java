@@ -0,0 +1,75 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.mapr.grafana.plugin.util.FakeTimestamps.MINUTE;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.START;
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTimeSeriesTest {
+
+    @Test
+    public void valuesOutsideOfRangeShouldBeCountedInOuterBins() {
+
+        HistogramBins bins = HistogramBins.linear(0, 100, 10);
+
+        assertEquals(0, bins.indexOf(-5));
+        assertEquals(0, bins.indexOf(9.99));
+        assertEquals(1, bins.indexOf(10));
+        assertEquals(9, bins.indexOf(99.9));
+        assertEquals(9, bins.indexOf(1000));
+    }
+
+    @Test
+    public void logBinsShouldBeLabeledByLowerBounds() {
+
+        HistogramBins bins = HistogramBins.log(1, 1_000_000, 6);
+        List<String> labels = Arrays.asList(bins.label(0), bins.label(1), bins.label(2), bins.label(3),
+                bins.label(4), bins.label(5));
+
+        assertEquals(Arrays.asList("1", "10", "100", "1000", "10000", "100000"), labels);
+        assertEquals(1, bins.indexOf(50));
+        assertEquals(4, bins.indexOf(12_345));
+    }
+
+    @Test
+    public void histogramShouldBeReturnedAsSeriesPerBin() {
+
+        HistogramTimeSeries histogram = new HistogramTimeSeries(HistogramBins.linear(0, 30, 3), "size", "time",
+                "bytes", MINUTE);
+        histogram.addValue(START, 5);
+        histogram.addValue(START, 25);
+        histogram.addValue(START, 26);
+        histogram.addValue(START + 2 * MINUTE, 15);
+
+        List<AbstractGrafanaTimeSeries> series = histogram.getSeries();
+
+        assertEquals(Arrays.asList("0", "10", "20"),
+                series.stream().map(AbstractGrafanaTimeSeries::getTarget).collect(Collectors.toList()));
+        assertBinCounts(series.get(0), 1, 0);
+        assertBinCounts(series.get(1), 0, 1);
+        assertBinCounts(series.get(2), 2, 0);
+        assertEquals(3, histogram.getDatapoints().get(0).getValue(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void logBinsOfNonPositiveRangeShouldBeRejected() {
+        HistogramBins.log(0, 100, 10);
+    }
+
+    /**
+     * Every bin has datapoints of all non-empty buckets, so the heatmap has no gaps.
+     */
+    private static void assertBinCounts(AbstractGrafanaTimeSeries bin, double first, double second) {
+        List<AbstractGrafanaTimeSeries.Datapoint> datapoints = bin.getDatapoints();
+        assertEquals(2, datapoints.size());
+        assertEquals(START, datapoints.get(0).getTimestamp());
+        assertEquals(first, datapoints.get(0).getValue(), 0);
+        assertEquals(START + 2 * MINUTE, datapoints.get(1).getTimestamp());
+        assertEquals(second, datapoints.get(1).getValue(), 0);
+    }
+}
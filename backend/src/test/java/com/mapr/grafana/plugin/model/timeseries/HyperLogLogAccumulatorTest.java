@@ -0,0 +1,81 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.mapr.grafana.plugin.util.FakeTimestamps.MINUTE;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.START;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HyperLogLogAccumulatorTest {
+
+    @Test
+    public void distinctCountShouldBeEstimatedWithinThreeStandardErrors() {
+
+        HyperLogLogAccumulator accumulator = MetricAccumulators.distinctCount(12);
+        double standardError = 1.04 / Math.sqrt(1 << 12);
+
+        Random random = new Random(42);
+        for (int distinct : new int[]{10, 1_000, 100_000}) {
+
+            double[] state = emptyState(accumulator);
+            for (int i = 0; i < distinct; i++) {
+                long hash = random.nextLong();
+                // Every value repeats, which must not change the estimate
+                accumulator.add(state, 0, START, accumulator.encode(hash));
+                accumulator.add(state, 0, START, accumulator.encode(hash));
+            }
+
+            assertEquals("distinct " + distinct, distinct, accumulator.finish(state, 0),
+                    3 * standardError * distinct);
+        }
+    }
+
+    @Test
+    public void mergedSketchShouldBeEqualToSketchOfAllValues() {
+
+        HyperLogLogAccumulator accumulator = MetricAccumulators.distinctCount(8);
+        double[] all = emptyState(accumulator);
+        double[] first = emptyState(accumulator);
+        double[] second = emptyState(accumulator);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            double update = accumulator.encode(random.nextLong());
+            accumulator.add(all, 0, START, update);
+            accumulator.add((i % 3 == 0) ? first : second, 0, START, update);
+        }
+
+        accumulator.merge(first, 0, second, 0);
+
+        assertArrayEquals(all, first, 0);
+    }
+
+    @Test
+    public void seriesShouldCountDistinctHashesPerBucket() {
+
+        DistinctCountTimeSeries series = new DistinctCountTimeSeries(MetricAccumulators.distinctCount(12), "users",
+                "time", "user", MINUTE);
+        for (long user : new long[]{1, 2, 3, 2, 1}) {
+            series.addHash(START, user * 0x9e3779b97f4a7c15L);
+        }
+        series.addHash(START + MINUTE, 0x9e3779b97f4a7c15L);
+
+        assertEquals(Arrays.asList(3.0, 1.0), Arrays.asList(series.getDatapoints().get(0).getValue(),
+                series.getDatapoints().get(1).getValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void precisionOutOfRangeShouldBeRejected() {
+        MetricAccumulators.distinctCount(HyperLogLogAccumulator.MAX_PRECISION + 1);
+    }
+
+    private static double[] emptyState(MetricAccumulator accumulator) {
+        double[] state = new double[accumulator.stateSize()];
+        accumulator.reset(state, 0);
+        return state;
+    }
+}
@@ -0,0 +1,117 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import com.mapr.grafana.plugin.model.GrafanaQueryTarget;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.mapr.grafana.plugin.util.FakeTimestamps.MINUTE;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class MetricAccumulatorsTest {
+
+    private static final int ITERATIONS = 1000;
+
+    private static final List<MetricAccumulator> ACCUMULATORS = Arrays.asList(MetricAccumulators.COUNT,
+            MetricAccumulators.MIN, MetricAccumulators.MAX, MetricAccumulators.AVG, MetricAccumulators.VALUE);
+
+    /**
+     * Values are small integers, so sums are exact regardless of the order of additions, and timestamps repeat, so
+     * ties of the earliest value are covered as well.
+     */
+    @Test
+    public void mergedStatesShouldBeEqualToSequentialScan() {
+
+        Random random = new Random(42);
+        for (MetricAccumulator accumulator : ACCUMULATORS) {
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+
+                int size = 1 + random.nextInt(50);
+                int split = random.nextInt(size + 1);
+                long[] timestamps = new long[size];
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) {
+                    timestamps[i] = START + random.nextInt(20);
+                    values[i] = random.nextInt(200) - 100;
+                }
+
+                double[] sequential = scan(accumulator, timestamps, values, 0, size);
+                double[] merged = scan(accumulator, timestamps, values, 0, split);
+                accumulator.merge(merged, 0, scan(accumulator, timestamps, values, split, size), 0);
+
+                assertEquals(accumulator + " of " + Arrays.toString(values) + " split at " + split,
+                        accumulator.finish(sequential, 0), accumulator.finish(merged, 0), 0);
+            }
+        }
+    }
+
+    @Test
+    public void restoredStateShouldBeFinishedToItsValue() {
+        for (MetricAccumulator accumulator : ACCUMULATORS) {
+            double[] state = new double[accumulator.stateSize()];
+            accumulator.restore(state, 0, START, 7.5);
+            assertEquals(7.5, accumulator.finish(state, 0), 0);
+        }
+    }
+
+    @Test
+    public void mergedSeriesShouldBeEqualToSingleSeries() {
+
+        Random random = new Random(7);
+        AccumulatorTimeSeries single = averageSeries();
+        AccumulatorTimeSeries first = averageSeries();
+        AccumulatorTimeSeries second = averageSeries();
+        for (int i = 0; i < 500; i++) {
+
+            // Second part grows buckets in both directions, so merge has to map the slots by timestamps
+            long timestamp = START + (random.nextInt(200) - 100) * MINUTE / 10;
+            double value = random.nextInt(100);
+            single.addValue(timestamp, value);
+            (i % 2 == 0 ? first : second).addValue(timestamp, value);
+        }
+
+        first.merge(second);
+
+        assertEquals(single.getDatapointCount(), first.getDatapointCount());
+        List<AbstractGrafanaTimeSeries.Datapoint> expected = single.getDatapoints();
+        List<AbstractGrafanaTimeSeries.Datapoint> actual = first.getDatapoints();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), 0);
+        }
+    }
+
+    @Test
+    public void metricConstantsShouldHaveAccumulators() {
+        assertSame(MetricAccumulators.COUNT, accumulatorOf(GrafanaQueryTarget.DOCUMENT_COUNT_METRIC));
+        assertSame(MetricAccumulators.VALUE, accumulatorOf(GrafanaQueryTarget.FIELD_VALUE_METRIC));
+        assertSame(MetricAccumulators.MIN, accumulatorOf(GrafanaQueryTarget.FIELD_MIN_METRIC));
+        assertSame(MetricAccumulators.MAX, accumulatorOf(GrafanaQueryTarget.FIELD_MAX_METRIC));
+        assertSame(MetricAccumulators.AVG, accumulatorOf(GrafanaQueryTarget.FIELD_AVG_METRIC));
+        assertFalse(MetricAccumulators.forMetric("Field median").isPresent());
+    }
+
+    private static MetricAccumulator accumulatorOf(String metric) {
+        return MetricAccumulators.forMetric(metric).get();
+    }
+
+    private static AccumulatorTimeSeries averageSeries() {
+        return new AccumulatorTimeSeries(MetricAccumulators.AVG, "avg", "time", "likes", MINUTE);
+    }
+
+    private static double[] scan(MetricAccumulator accumulator, long[] timestamps, double[] values, int from, int to) {
+
+        double[] state = new double[accumulator.stateSize()];
+        accumulator.reset(state, 0);
+        for (int i = from; i < to; i++) {
+            accumulator.add(state, 0, timestamps[i], values[i]);
+        }
+
+        return state;
+    }
+}
@@ -0,0 +1,90 @@
+package com.mapr.grafana.plugin.model.timeseries;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PercentileAccumulatorTest {
+
+    private static final int VALUES = 100_000;
+
+    @Test
+    public void percentilesOfLargeBucketShouldBeEstimatedWithinCentroidWidth() {
+
+        // Exponential distribution, which has the long tail of the latencies
+        Random random = new Random(42);
+        double[] values = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = -Math.log(1 - random.nextDouble()) * 100;
+        }
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        for (double percentile : new double[]{50, 95, 99}) {
+
+            PercentileAccumulator accumulator = new PercentileAccumulator(percentile);
+            double[] sequential = emptyState(accumulator);
+            double[] first = emptyState(accumulator);
+            double[] second = emptyState(accumulator);
+            for (int i = 0; i < VALUES; i++) {
+                accumulator.add(sequential, 0, 0, values[i]);
+                accumulator.add((i % 3 == 0) ? first : second, 0, 0, values[i]);
+            }
+            accumulator.merge(first, 0, second, 0);
+
+            // Rank errors of this data set are 0.0006, 0.0003 and 0.0004 for p50, p95 and p99, and 0.0019, 0.0010 and
+            // 0.0006 for the merged digests
+            double quantile = percentile / 100;
+            double maxError = centroidWidth(quantile);
+            assertEquals("p" + percentile, quantile, rank(sorted, accumulator.finish(sequential, 0)), maxError);
+            assertEquals("merged p" + percentile, quantile, rank(sorted, accumulator.finish(first, 0)), maxError);
+        }
+    }
+
+    @Test
+    public void percentilesOfSmallBucketShouldBeInterpolatedBetweenValues() {
+
+        PercentileAccumulator median = new PercentileAccumulator(50);
+        double[] state = emptyState(median);
+        median.add(state, 0, 0, 3);
+        median.add(state, 0, 0, 1);
+        median.add(state, 0, 0, 2);
+
+        assertEquals(2, median.finish(state, 0), 0);
+        assertEquals(1, new PercentileAccumulator(0).finish(state, 0), 0);
+        assertEquals(3, new PercentileAccumulator(100).finish(state, 0), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileOutOfRangeShouldBeRejected() {
+        new PercentileAccumulator(101);
+    }
+
+    /**
+     * Returns the largest fraction of values, which a centroid at the quantile may contain. It is the quantile span
+     * of the unit of the scale function <code>k(q) = COMPRESSION / (2 * PI) * asin(2q - 1)</code>, which is
+     * <code>dq/dk = 2 * PI * sqrt(q * (1 - q)) / COMPRESSION</code>. Estimate is interpolated within the centroid, so
+     * its rank error does not exceed the width of the centroid.
+     */
+    private static double centroidWidth(double quantile) {
+        return 2 * Math.PI * Math.sqrt(quantile * (1 - quantile)) / PercentileAccumulator.COMPRESSION;
+    }
+
+    /**
+     * Returns fraction of the sorted values, which are less than the estimate.
+     */
+    private static double rank(double[] sorted, double estimate) {
+        int index = Arrays.binarySearch(sorted, estimate);
+        return (double) ((index >= 0) ? index : -index - 1) / sorted.length;
+    }
+
+    private static double[] emptyState(MetricAccumulator accumulator) {
+        double[] state = new double[accumulator.stateSize()];
+        accumulator.reset(state, 0);
+        return state;
+    }
+}
@@ -0,0 +1,88 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.GrafanaQueryTarget;
+import com.mapr.grafana.plugin.model.timeseries.AbstractGrafanaTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.AccumulatorTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.MetricAccumulators;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mapr.grafana.plugin.util.FakeDocuments.document;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.MINUTE;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.START;
+import static org.junit.Assert.assertEquals;
+
+public class IncrementalTimeSeriesStoreTest {
+
+    private static final long NOW = START;
+
+    private final AtomicLong clock = new AtomicLong(NOW);
+    private final IncrementalTimeSeriesStore store = new IncrementalTimeSeriesStore(true, MINUTE, 10, clock::get);
+
+    private static TargetQueryKey seriesKey() {
+        GrafanaQueryTarget target = new GrafanaQueryTarget();
+        target.setTable("/tweets");
+        target.setTarget("count");
+        target.setTimeField("time");
+        target.setMetric(GrafanaQueryTarget.DOCUMENT_COUNT_METRIC);
+        return TargetQueryKey.of(target, null, MINUTE);
+    }
+
+    private static GrafanaQueryRequest.Range range(long from, long to) {
+        GrafanaQueryRequest.Range range = new GrafanaQueryRequest.Range();
+        range.setFrom(new Date(from));
+        range.setTo(new Date(to));
+        return range;
+    }
+
+    private static AbstractGrafanaTimeSeries series() {
+        return new AccumulatorTimeSeries(MetricAccumulators.COUNT, "count", "time", null, MINUTE);
+    }
+
+    @Test
+    public void refreshShouldOnlyScanBucketsAfterWatermark() {
+
+        GrafanaQueryRequest.Range initial = range(NOW - 10 * MINUTE, NOW);
+        AbstractGrafanaTimeSeries first = series();
+        assertEquals(initial, store.resume(seriesKey(), initial, first));
+
+        first.addDocument(document("time", NOW - 9 * MINUTE - MINUTE / 2));
+        first.addDocument(document("time", NOW - 5 * MINUTE - MINUTE / 2));
+        first.addDocument(document("time", NOW - 5 * MINUTE - MINUTE / 4));
+        first.addDocument(document("time", NOW - MINUTE / 2));
+        store.checkpoint(seriesKey(), initial, MINUTE, first, false);
+
+        // Dashboard is refreshed in a minute: the range slides forward
+        clock.addAndGet(MINUTE);
+        GrafanaQueryRequest.Range refreshed = range(NOW - 9 * MINUTE, NOW + MINUTE);
+        AbstractGrafanaTimeSeries second = series();
+        GrafanaQueryRequest.Range tail = store.resume(seriesKey(), refreshed, second);
+
+        // Everything before the watermark, which lags behind by the late data window, is reused
+        assertEquals(NOW - MINUTE, tail.getFrom().getTime());
+        assertEquals(NOW + MINUTE, tail.getTo().getTime());
+        assertEquals(1, second.getDatapoints().size());
+        assertEquals(NOW - 6 * MINUTE, second.getDatapoints().get(0).getTimestamp());
+        assertEquals(2, second.getDatapoints().get(0).getValue(), 0);
+
+        second.addDocument(document("time", NOW - MINUTE / 2));
+        second.addDocument(document("time", NOW + MINUTE / 2));
+        assertEquals(3, second.getDatapoints().size());
+        assertEquals(Long.valueOf(1), store.statistics().get("incremental.resumedScans"));
+    }
+
+    @Test
+    public void truncatedScanShouldNotBeReused() {
+
+        GrafanaQueryRequest.Range initial = range(NOW - 10 * MINUTE, NOW);
+        AbstractGrafanaTimeSeries first = series();
+        first.addDocument(document("time", NOW - 5 * MINUTE));
+        store.checkpoint(seriesKey(), initial, MINUTE, first, true);
+
+        assertEquals(initial, store.resume(seriesKey(), initial, series()));
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.db.index.IndexDesc;
+import com.mapr.db.index.IndexFieldDesc;
+import org.junit.Test;
+import org.ojai.FieldPath;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IndexSelectorTest {
+
+    private static final String TABLE = "/apps/tweets";
+    private static final String TIME_FIELD = "created_at";
+    private static final String CONDITION = "{\"$and\":[{\"$eq\":{\"author\":\"John\"}},{\"$gt\":{\"likes\":3}}]}";
+
+    @Test
+    public void explicitHintShouldBeUsedWithoutListingIndexes() {
+
+        AtomicInteger listings = new AtomicInteger();
+        IndexSelector selector = new IndexSelector(true, 60000, table -> {
+            listings.incrementAndGet();
+            return Collections.emptyList();
+        }, System::currentTimeMillis);
+
+        assertEquals(Optional.of("author_idx"),
+                selector.select(TABLE, " author_idx ", TIME_FIELD, CONDITION, Collections.emptyList()));
+        assertEquals(0, listings.get());
+    }
+
+    @Test
+    public void coveringIndexLeadingWithPredicateFieldShouldBeSelected() {
+
+        List<IndexDesc> indexes = Arrays.asList(
+                index("text_idx", false, Collections.singletonList("text"), Collections.emptyList()),
+                index("author_idx", false, Arrays.asList("author", TIME_FIELD), Collections.emptyList()),
+                index("time_idx", false, Collections.singletonList(TIME_FIELD), Collections.singletonList("likes")),
+                index("disabled_idx", true, Arrays.asList("author", TIME_FIELD), Collections.singletonList("likes")));
+
+        IndexSelector selector = new IndexSelector(false, 60000, table -> indexes, System::currentTimeMillis);
+
+        assertEquals(Optional.of("author_idx"),
+                selector.select(TABLE, IndexSelector.AUTO_HINT, TIME_FIELD, CONDITION, Collections.emptyList()));
+        assertEquals(Optional.of("time_idx"),
+                selector.select(TABLE, IndexSelector.AUTO_HINT, TIME_FIELD, null, Collections.singleton("likes")));
+        assertEquals(Optional.empty(),
+                selector.select(TABLE, IndexSelector.AUTO_HINT, "updated_at", null, Collections.emptyList()));
+    }
+
+    @Test
+    public void indexesShouldBeListedOncePerPeriod() {
+
+        AtomicInteger listings = new AtomicInteger();
+        Function<String, Collection<IndexDesc>> lister = table -> {
+            listings.incrementAndGet();
+            return Collections.singletonList(index("time_idx", false, Collections.singletonList(TIME_FIELD),
+                    Collections.emptyList()));
+        };
+
+        long[] now = {1000};
+        IndexSelector selector = new IndexSelector(true, 60000, lister, () -> now[0]);
+
+        assertEquals(Optional.of("time_idx"), selector.select(TABLE, null, TIME_FIELD, null, null));
+        assertEquals(Optional.of("time_idx"), selector.select(TABLE, "", TIME_FIELD, null, null));
+        assertEquals(1, listings.get());
+
+        now[0] += 60000;
+        selector.select(TABLE, null, TIME_FIELD, null, null);
+        assertEquals(2, listings.get());
+    }
+
+    @Test
+    public void indexShouldNotBeSelectedUnlessRequested() {
+
+        IndexSelector selector = new IndexSelector(false, 60000, table -> {
+            throw new AssertionError("Indexes must not be listed");
+        }, System::currentTimeMillis);
+
+        assertFalse(selector.select(TABLE, null, TIME_FIELD, CONDITION, null).isPresent());
+    }
+
+    @Test
+    public void conditionFieldsShouldBeExtracted() {
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("author", "likes")), IndexSelector.conditionFields(CONDITION));
+        assertEquals(Collections.emptySet(), IndexSelector.conditionFields("not a condition"));
+        assertEquals(Collections.emptySet(), IndexSelector.conditionFields(null));
+    }
+
+    private static IndexDesc index(String name, boolean disabled, List<String> indexedFields,
+                                   List<String> includedFields) {
+
+        IndexDesc index = mock(IndexDesc.class);
+        when(index.getIndexName()).thenReturn(name);
+        when(index.isDisabled()).thenReturn(disabled);
+        when(index.getIndexedFields()).thenReturn(fields(indexedFields));
+        when(index.getIncludedFields()).thenReturn(fields(includedFields));
+        return index;
+    }
+
+    private static Collection<IndexFieldDesc> fields(List<String> fieldPaths) {
+
+        List<IndexFieldDesc> fields = new ArrayList<>();
+        for (String fieldPath : fieldPaths) {
+            IndexFieldDesc field = mock(IndexFieldDesc.class);
+            when(field.getFieldPath()).thenReturn(FieldPath.parseFrom(fieldPath));
+            fields.add(field);
+        }
+
+        return fields;
+    }
+}
@@ -0,0 +1,247 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.model.GrafanaMetrics;
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.GrafanaQueryTarget;
+import com.mapr.grafana.plugin.model.GrafanaTopValues;
+import com.mapr.grafana.plugin.model.timeseries.AbstractGrafanaTimeSeries;
+import com.mapr.grafana.plugin.util.FakeOjaiConnection;
+import com.mapr.grafana.plugin.util.GrafanaTestQueryRequestBuilder;
+import org.junit.Test;
+import org.ojai.Document;
+import org.ojai.store.Connection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.mapr.grafana.plugin.util.FakeDocuments.document;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.MINUTE;
+import static com.mapr.grafana.plugin.util.FakeTimestamps.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MapRDBServiceImplTest {
+
+    private static final long NO_BACKGROUND_VALIDATION = 0;
+
+    private static MapRDBServiceImpl serviceFor(Connection connection, int poolSize, long requestTimeoutMs) {
+        return serviceFor(connection, Executors.newFixedThreadPool(poolSize), requestTimeoutMs);
+    }
+
+    private static MapRDBServiceImpl serviceFor(Connection connection, ExecutorService targetQueryExecutor,
+                                                long requestTimeoutMs) {
+        return serviceFor(connection, targetQueryExecutor, requestTimeoutMs, true);
+    }
+
+    private static MapRDBServiceImpl serviceFor(Connection connection, ExecutorService targetQueryExecutor,
+                                                long requestTimeoutMs, boolean targetFusion) {
+
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(() -> connection, c -> {
+        }, NO_BACKGROUND_VALIDATION, 1000, 60000);
+        manager.start();
+
+        return new MapRDBServiceImpl(manager, targetQueryExecutor, Executors.newCachedThreadPool(),
+                TargetResultCache.disabled(), IncrementalTimeSeriesStore.disabled(), TimeFieldTypeDetector.disabled(),
+                TimeSlicedScanner.sequential(), ScanBudget.disabled(), IndexSelector.explicitOnly(),
+                QuerySettings.defaults().withRequestTimeoutMs(requestTimeoutMs).withTargetFusion(targetFusion));
+    }
+
+    private static GrafanaQueryRequest requestWithTargets(int targets) {
+
+        GrafanaTestQueryRequestBuilder builder = new GrafanaTestQueryRequestBuilder();
+        for (int i = 0; i < targets; i++) {
+            builder.withTimeSeriesTarget()
+                    .withTable("/fake-table-" + i)
+                    .withTarget("count-" + i)
+                    .withTimeField("time")
+                    .withMetric(GrafanaQueryTarget.DOCUMENT_COUNT_METRIC)
+                    .addTarget();
+        }
+
+        return builder.build();
+    }
+
+    @Test
+    public void targetsShouldBeQueriedConcurrently() {
+
+        int targets = 6;
+        long scanDelayMs = 200;
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection().withScanDelayMs(scanDelayMs);
+        MapRDBServiceImpl service = serviceFor(fakeConnection.build(), targets, 30000);
+
+        long start = System.currentTimeMillis();
+        Set<GrafanaMetrics> metrics = service.query(requestWithTargets(targets));
+        long elapsedMs = System.currentTimeMillis() - start;
+
+        assertEquals(targets, metrics.size());
+        assertEquals(targets, fakeConnection.getScans());
+        assertTrue("Wall-clock time must be close to the slowest target, but was " + elapsedMs + " ms",
+                elapsedMs < targets * scanDelayMs);
+    }
+
+    @Test
+    public void slowTargetsShouldNotExceedRequestTimeout() {
+
+        long requestTimeoutMs = 100;
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection().withScanDelayMs(2000);
+        MapRDBServiceImpl service = serviceFor(fakeConnection.build(), 2, requestTimeoutMs);
+
+        long start = System.currentTimeMillis();
+        Set<GrafanaMetrics> metrics = service.query(requestWithTargets(2));
+        long elapsedMs = System.currentTimeMillis() - start;
+
+        assertTrue(metrics.isEmpty());
+        assertTrue("Request must be completed within its timeout, but took " + elapsedMs + " ms", elapsedMs < 1000);
+    }
+
+    @Test
+    public void targetsRejectedBySaturatedPoolShouldBeSkipped() {
+
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection().withScanDelayMs(200);
+        ExecutorService singleThread = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        MapRDBServiceImpl service = serviceFor(fakeConnection.build(), singleThread, 30000);
+
+        String requestThread = Thread.currentThread().getName();
+        Set<GrafanaMetrics> metrics = service.query(requestWithTargets(3));
+
+        assertEquals(1, metrics.size());
+        assertEquals(1, fakeConnection.getScans());
+        assertNotEquals(requestThread, fakeConnection.getLastScanThread());
+    }
+
+    private static GrafanaQueryRequest requestWithMetricsOfSameField(Long limit) {
+
+        GrafanaTestQueryRequestBuilder builder = new GrafanaTestQueryRequestBuilder();
+        GrafanaTestQueryRequestBuilder.TargetBuilder count = builder.withTimeSeriesTarget().withTable("/fake-table")
+                .withTarget("count").withTimeField("time").withMetric(GrafanaQueryTarget.DOCUMENT_COUNT_METRIC);
+        if (limit != null) {
+            count.withLimit(limit);
+        }
+        count.addTarget();
+
+        for (String metric : Arrays.asList(GrafanaQueryTarget.FIELD_MIN_METRIC, GrafanaQueryTarget.FIELD_MAX_METRIC,
+                GrafanaQueryTarget.FIELD_AVG_METRIC)) {
+            GrafanaTestQueryRequestBuilder.TargetBuilder target = builder.withTimeSeriesTarget()
+                    .withTable("/fake-table").withTarget(metric).withTimeField("time").withMetric(metric)
+                    .withMetricField("likes");
+            if (limit != null) {
+                target.withLimit(limit);
+            }
+            target.addTarget();
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Returns description of the series by target, which contains their datapoints and meta.
+     */
+    private static Map<String, String> describe(Set<GrafanaMetrics> metrics) {
+
+        Map<String, String> descriptions = new HashMap<>();
+        for (GrafanaMetrics metric : metrics) {
+            AbstractGrafanaTimeSeries series = (AbstractGrafanaTimeSeries) metric;
+            StringBuilder description = new StringBuilder();
+            series.getDatapoints().forEach(datapoint -> description.append(datapoint.getTimestamp()).append('=')
+                    .append(datapoint.getValue()).append(' '));
+            description.append("truncated=").append(series.getMeta().isTruncated())
+                    .append(" scanned=").append(series.getMeta().getScannedDocuments())
+                    .append(" until=").append(series.getMeta().getScannedUntil());
+            descriptions.put(series.getTarget(), description.toString());
+        }
+
+        return descriptions;
+    }
+
+    @Test
+    public void targetsOfSameMetricFieldShouldBeComputedBySingleScan() {
+
+        long time = 100L * 24 * 60 * 60 * 1000;
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection()
+                .withDocuments(Arrays.asList(document("time", time, 3), document("time", time + 1000, 7)));
+        MapRDBServiceImpl service = serviceFor(fakeConnection.build(), 4, 30000);
+
+        Set<GrafanaMetrics> metrics = service.query(requestWithMetricsOfSameField(null));
+
+        Map<String, Double> values = new HashMap<>();
+        for (GrafanaMetrics metric : metrics) {
+            AbstractGrafanaTimeSeries series = (AbstractGrafanaTimeSeries) metric;
+            assertEquals(1, series.getDatapoints().size());
+            values.put(series.getTarget(), series.getDatapoints().get(0).getValue());
+        }
+
+        // Document count has no metric field, so it is scanned separately
+        assertEquals(2, fakeConnection.getScans());
+        assertEquals(4, values.size());
+        assertEquals(2, values.get("count"), 0);
+        assertEquals(3, values.get(GrafanaQueryTarget.FIELD_MIN_METRIC), 0);
+        assertEquals(7, values.get(GrafanaQueryTarget.FIELD_MAX_METRIC), 0);
+        assertEquals(5, values.get(GrafanaQueryTarget.FIELD_AVG_METRIC), 0);
+    }
+
+    @Test
+    public void fusedTargetsShouldYieldSameSeriesAsSeparateTargets() {
+
+        // Every third document has no metric field
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            long time = START + i * MINUTE;
+            documents.add((i % 3 == 0) ? document("time", time) : document("time", time, i));
+        }
+
+        for (Long limit : Arrays.asList(null, 5L)) {
+
+            FakeOjaiConnection fusedConnection = new FakeOjaiConnection().withDocuments(documents);
+            Set<GrafanaMetrics> fused = serviceFor(fusedConnection.build(), Executors.newFixedThreadPool(4), 30000,
+                    true).query(requestWithMetricsOfSameField(limit));
+
+            FakeOjaiConnection separateConnection = new FakeOjaiConnection().withDocuments(documents);
+            Set<GrafanaMetrics> separate = serviceFor(separateConnection.build(), Executors.newFixedThreadPool(4),
+                    30000, false).query(requestWithMetricsOfSameField(limit));
+
+            assertEquals(2, fusedConnection.getScans());
+            assertEquals(4, separateConnection.getScans());
+            assertEquals(4, fused.size());
+            assertEquals(describe(separate), describe(fused));
+        }
+    }
+
+    @Test
+    public void topValuesShouldCountWholeRangeRegardlessOfLimit() {
+
+        // Value, which dominates the range, appears only after the limit of the target
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            documents.add(document("time", START + i, "author", "author-" + i));
+        }
+        for (int i = 5; i < 25; i++) {
+            documents.add(document("time", START + i, "author", "alice"));
+        }
+
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection().withDocuments(documents);
+        MapRDBServiceImpl service = serviceFor(fakeConnection.build(), 1, 30000);
+
+        GrafanaTestQueryRequestBuilder builder = new GrafanaTestQueryRequestBuilder();
+        builder.withTopValuesTarget().withTable("/fake-table").withTimeField("time").withMetricField("author")
+                .withLimit(5).addTarget();
+        Set<GrafanaMetrics> metrics = service.query(builder.build());
+
+        assertEquals(1, metrics.size());
+        GrafanaTopValues topValues = (GrafanaTopValues) metrics.iterator().next();
+        assertEquals(Arrays.asList("alice", 20L, 0L), topValues.getRows().get(0));
+        assertFalse(topValues.isTruncated());
+        assertEquals(25, topValues.getMeta().getScannedDocuments());
+    }
+}
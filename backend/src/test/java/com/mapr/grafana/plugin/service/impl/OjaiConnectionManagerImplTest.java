@@ -0,0 +1,234 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.model.DatasourceStatus;
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.GrafanaQueryTarget;
+import com.mapr.grafana.plugin.service.OjaiConnectionManager;
+import com.mapr.grafana.plugin.util.FakeOjaiConnection;
+import com.mapr.grafana.plugin.util.GrafanaTestQueryRequestBuilder;
+import org.junit.Test;
+import org.ojai.exceptions.OjaiException;
+import org.ojai.store.Connection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OjaiConnectionManagerImplTest {
+
+    private static final long NO_BACKGROUND_VALIDATION = 0;
+
+    private static Connection leasedConnection(OjaiConnectionManager manager) {
+        try (OjaiConnectionManager.ConnectionLease lease = manager.lease()) {
+            return lease.getConnection();
+        }
+    }
+
+    @Test
+    public void shouldShareSingleConnectionAcrossRequests() {
+
+        AtomicInteger connectionsCreated = new AtomicInteger();
+        Connection fake = new FakeOjaiConnection().build();
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(() -> {
+            connectionsCreated.incrementAndGet();
+            return fake;
+        }, connection -> {
+        }, NO_BACKGROUND_VALIDATION, 1000, 60000);
+
+        manager.start();
+        for (int i = 0; i < 100; i++) {
+            try (OjaiConnectionManager.ConnectionLease lease = manager.lease()) {
+                assertSame(fake, lease.getConnection());
+            }
+        }
+
+        assertEquals(1, connectionsCreated.get());
+        assertTrue(manager.validate().isOk());
+        assertEquals(1, connectionsCreated.get());
+    }
+
+    @Test
+    public void shouldReconnectWhenValidationFails() {
+
+        AtomicBoolean broken = new AtomicBoolean();
+        Connection first = new FakeOjaiConnection().build();
+        Connection second = new FakeOjaiConnection().build();
+        AtomicInteger connectionsCreated = new AtomicInteger();
+
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(
+                () -> connectionsCreated.getAndIncrement() == 0 ? first : second,
+                connection -> {
+                    if (broken.get() && connection == first) {
+                        throw new OjaiException("Connection is broken");
+                    }
+                }, NO_BACKGROUND_VALIDATION, 1000, 60000);
+
+        manager.start();
+        assertSame(first, leasedConnection(manager));
+
+        broken.set(true);
+        assertTrue(manager.validate().isOk());
+
+        assertSame(second, leasedConnection(manager));
+        verify(first, times(1)).close();
+    }
+
+    @Test
+    public void shouldValidateManagedConnection() {
+
+        Connection fake = new FakeOjaiConnection().build();
+        List<Connection> validated = new ArrayList<>();
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(() -> fake, validated::add,
+                NO_BACKGROUND_VALIDATION, 1000, 60000);
+
+        manager.start();
+        manager.validate();
+
+        assertEquals(Arrays.asList(fake, fake), validated);
+    }
+
+    @Test
+    public void replacedConnectionShouldBeClosedOnceItIsReleased() {
+
+        AtomicBoolean broken = new AtomicBoolean();
+        Connection first = new FakeOjaiConnection().build();
+        Connection second = new FakeOjaiConnection().build();
+        AtomicInteger connectionsCreated = new AtomicInteger();
+
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(
+                () -> connectionsCreated.getAndIncrement() == 0 ? first : second,
+                connection -> {
+                    if (broken.get() && connection == first) {
+                        throw new OjaiException("Connection is broken");
+                    }
+                }, NO_BACKGROUND_VALIDATION, 1000, 60000);
+
+        manager.start();
+        OjaiConnectionManager.ConnectionLease inFlight = manager.lease();
+
+        broken.set(true);
+        assertTrue(manager.validate().isOk());
+        assertSame(second, leasedConnection(manager));
+        verify(first, never()).close();
+
+        inFlight.close();
+        inFlight.close();
+        verify(first, times(1)).close();
+        verify(second, never()).close();
+    }
+
+    @Test
+    public void statusShouldBeCachedUntilNextBackgroundValidation() throws Exception {
+
+        AtomicInteger validations = new AtomicInteger();
+        Connection fake = new FakeOjaiConnection().build();
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(() -> fake,
+                connection -> validations.incrementAndGet(), 200, 1000, 60000);
+
+        manager.start();
+        try {
+            DatasourceStatus cached = manager.getStatus();
+            for (int i = 0; i < 10; i++) {
+                assertSame(cached, manager.getStatus());
+            }
+            assertEquals(1, validations.get());
+
+            Thread.sleep(500);
+            DatasourceStatus refreshed = manager.getStatus();
+            assertTrue(validations.get() > 1);
+            assertTrue(refreshed.isOk());
+            assertTrue(refreshed.getLastProbeTimestamp() > cached.getLastProbeTimestamp());
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    @Test
+    public void statusShouldBeValidatedOnEveryCallWithoutBackgroundValidation() {
+
+        AtomicInteger validations = new AtomicInteger();
+        Connection fake = new FakeOjaiConnection().build();
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(() -> fake,
+                connection -> validations.incrementAndGet(), NO_BACKGROUND_VALIDATION, 1000, 60000);
+
+        manager.start();
+        assertTrue(manager.getStatus().isOk());
+        assertTrue(manager.getStatus().isOk());
+
+        assertEquals(3, validations.get());
+    }
+
+    @Test
+    public void shouldBackoffWhenConnectionCanNotBeEstablished() throws Exception {
+
+        AtomicInteger attempts = new AtomicInteger();
+        Connection fake = new FakeOjaiConnection().build();
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new OjaiException("Cluster is not available");
+            }
+            return fake;
+        }, connection -> {
+        }, NO_BACKGROUND_VALIDATION, 200, 1000);
+
+        manager.start();
+        assertFalse(manager.validate().isOk());
+
+        try {
+            manager.lease();
+            fail("Connection must not be attempted until backoff expires");
+        } catch (IllegalStateException expected) {
+            assertEquals(1, attempts.get());
+        }
+
+        Thread.sleep(250);
+        assertSame(fake, leasedConnection(manager));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void queryLatencyShouldBeBoundedByScanTime() {
+
+        long scanDelayMs = 20;
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection().withScanDelayMs(scanDelayMs);
+        Connection connection = fakeConnection.build();
+        OjaiConnectionManagerImpl manager = new OjaiConnectionManagerImpl(() -> connection, c -> {
+        }, NO_BACKGROUND_VALIDATION, 1000, 60000);
+        manager.start();
+
+        MapRDBServiceImpl service = new MapRDBServiceImpl(manager, Executors.newSingleThreadExecutor(),
+                Executors.newSingleThreadExecutor(), TargetResultCache.disabled(),
+                IncrementalTimeSeriesStore.disabled(), TimeFieldTypeDetector.disabled(), TimeSlicedScanner.sequential(),
+                ScanBudget.disabled(), IndexSelector.explicitOnly(), QuerySettings.defaults());
+        GrafanaQueryRequest request = new GrafanaTestQueryRequestBuilder()
+                .withTimeSeriesTarget()
+                .withTable("/fake-table")
+                .withTarget("count")
+                .withTimeField("time")
+                .withMetric(GrafanaQueryTarget.DOCUMENT_COUNT_METRIC)
+                .addTarget()
+                .build();
+
+        int requests = 21;
+        long[] latencies = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            service.query(request);
+            latencies[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+
+        Arrays.sort(latencies);
+        long p50 = latencies[requests / 2];
+        assertEquals(requests, fakeConnection.getScans());
+        assertTrue("p50 latency must be close to scan time, but was " + p50 + " ms", p50 < scanDelayMs + 500);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.model.GrafanaMetrics;
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.GrafanaQueryTarget;
+import com.mapr.grafana.plugin.model.timeseries.AccumulatorTimeSeries;
+import com.mapr.grafana.plugin.model.timeseries.MetricAccumulators;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TargetResultCacheTest {
+
+    private static final long NOW = 1_500_000_000_000L;
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private final AtomicLong clock = new AtomicLong(NOW);
+
+    private static TargetQueryKey key(String table, long to) {
+
+        GrafanaQueryTarget target = new GrafanaQueryTarget();
+        target.setType(GrafanaQueryTarget.TIME_SERIES_TYPE);
+        target.setTable(table);
+        target.setMetric(GrafanaQueryTarget.DOCUMENT_COUNT_METRIC);
+
+        GrafanaQueryRequest.Range range = new GrafanaQueryRequest.Range();
+        range.setFrom(new Date(to - 24 * HOUR));
+        range.setTo(new Date(to));
+
+        return TargetQueryKey.of(target, range, HOUR);
+    }
+
+    private static GrafanaMetrics series() {
+        return new AccumulatorTimeSeries(MetricAccumulators.COUNT, "count", "time", null, HOUR);
+    }
+
+    @Test
+    public void historicalRangesShouldOutliveRecentRanges() {
+
+        TargetResultCache cache = new TargetResultCache(true, 1024 * 1024, HOUR, 5000, 24 * HOUR, clock::get);
+        TargetQueryKey recent = key("/recent", NOW);
+        TargetQueryKey historical = key("/historical", NOW - 30 * 24 * HOUR);
+        GrafanaMetrics recentSeries = series();
+        GrafanaMetrics historicalSeries = series();
+
+        cache.put(recent, recentSeries);
+        cache.put(historical, historicalSeries);
+        assertSame(recentSeries, cache.get(recent).get());
+        assertSame(historicalSeries, cache.get(historical).get());
+
+        clock.addAndGet(10_000);
+        assertFalse(cache.get(recent).isPresent());
+        assertSame(historicalSeries, cache.get(historical).get());
+
+        assertEquals(Long.valueOf(3), cache.statistics().get("cache.hits"));
+        assertEquals(Long.valueOf(1), cache.statistics().get("cache.expirations"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesShouldBeEvictedWhenSizeLimitIsExceeded() {
+
+        TargetResultCache cache = new TargetResultCache(true, 300, HOUR, HOUR, HOUR, clock::get);
+        TargetQueryKey first = key("/first", NOW);
+        TargetQueryKey second = key("/second", NOW);
+        TargetQueryKey third = key("/third", NOW);
+
+        cache.put(first, series());
+        cache.put(second, series());
+        cache.get(first);
+        cache.put(third, series());
+
+        assertTrue(cache.get(first).isPresent());
+        assertFalse(cache.get(second).isPresent());
+        assertTrue(cache.get(third).isPresent());
+        assertEquals(Long.valueOf(1), cache.statistics().get("cache.evictions"));
+
+        cache.flush();
+        assertFalse(cache.get(first).isPresent());
+        assertEquals(Long.valueOf(0), cache.statistics().get("cache.bytes"));
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.util.FakeDocuments;
+import com.mapr.grafana.plugin.util.FakeOjaiConnection;
+import com.mapr.grafana.plugin.util.TimeFieldType;
+import org.junit.Test;
+import org.ojai.Document;
+import org.ojai.Value;
+import org.ojai.store.Connection;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TimeFieldTypeDetectorTest {
+
+    private static final String TABLE = "/apps/tweets";
+    private static final String TIME_FIELD = "created_at";
+
+    @Test
+    public void explicitTypeShouldBeUsedWithoutSampling() {
+
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection();
+        TimeFieldTypeDetector detector = new TimeFieldTypeDetector(
+                TimeFieldTypeDetector.parseExplicitTypes("/apps/tweets:created_at=timestamp, /apps/other:ts=LONG"),
+                true, 100, 60000, System::currentTimeMillis);
+
+        assertEquals(TimeFieldType.TIMESTAMP, detector.detect(fakeConnection.build(), TABLE, TIME_FIELD));
+        assertEquals(0, fakeConnection.getScans());
+    }
+
+    @Test
+    public void sampledTypeShouldBeCachedUntilExpired() {
+
+        AtomicLong now = new AtomicLong(1000);
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection().withDocuments(Arrays.asList(
+                FakeDocuments.document(TIME_FIELD, 1), FakeDocuments.document(TIME_FIELD, 2)));
+        Connection connection = fakeConnection.build();
+        TimeFieldTypeDetector detector = new TimeFieldTypeDetector(Collections.emptyMap(), true, 100, 60000,
+                now::get);
+
+        assertEquals(TimeFieldType.LONG, detector.detect(connection, TABLE, TIME_FIELD));
+        assertEquals(TimeFieldType.LONG, detector.detect(connection, TABLE, TIME_FIELD));
+        assertEquals(1, fakeConnection.getScans());
+
+        now.addAndGet(60000);
+        assertEquals(TimeFieldType.LONG, detector.detect(connection, TABLE, TIME_FIELD));
+        assertEquals(2, fakeConnection.getScans());
+    }
+
+    @Test
+    public void mixedTypesShouldBeReportedAsUnknown() {
+
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection().withDocuments(Arrays.asList(
+                FakeDocuments.document(TIME_FIELD, 1), timestampDocument()));
+        TimeFieldTypeDetector detector = new TimeFieldTypeDetector(Collections.emptyMap(), true, 100, 60000,
+                System::currentTimeMillis);
+
+        assertEquals(TimeFieldType.UNKNOWN, detector.detect(fakeConnection.build(), TABLE, TIME_FIELD));
+    }
+
+    @Test
+    public void emptyTableShouldNotBeCached() {
+
+        FakeOjaiConnection fakeConnection = new FakeOjaiConnection();
+        Connection connection = fakeConnection.build();
+        TimeFieldTypeDetector detector = new TimeFieldTypeDetector(Collections.emptyMap(), true, 100, 60000,
+                System::currentTimeMillis);
+
+        assertEquals(TimeFieldType.UNKNOWN, detector.detect(connection, TABLE, TIME_FIELD));
+        assertEquals(TimeFieldType.UNKNOWN, detector.detect(connection, TABLE, TIME_FIELD));
+        assertEquals(2, fakeConnection.getScans());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidExplicitTypeShouldBeRejected() {
+        TimeFieldTypeDetector.parseExplicitTypes("/apps/tweets=LONG");
+    }
+
+    private static Document timestampDocument() {
+
+        Value time = mock(Value.class);
+        when(time.getType()).thenReturn(Value.Type.TIMESTAMP);
+
+        Document document = mock(Document.class);
+        when(document.getValue(TIME_FIELD)).thenReturn(time);
+
+        return document;
+    }
+}
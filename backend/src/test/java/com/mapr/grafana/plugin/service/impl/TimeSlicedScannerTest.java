@@ -0,0 +1,289 @@
+package com.mapr.grafana.plugin.service.impl;
+
+import com.mapr.grafana.plugin.model.GrafanaQueryRequest;
+import com.mapr.grafana.plugin.model.timeseries.TimeSeriesMeta;
+import com.mapr.grafana.plugin.util.FakeDocuments;
+import com.mapr.grafana.plugin.util.TimeFieldType;
+import org.junit.Test;
+import org.ojai.Document;
+import org.ojai.store.Connection;
+import org.ojai.store.DocumentStore;
+import org.ojai.store.Query;
+import org.ojai.store.QueryResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TimeSlicedScannerTest {
+
+    private static final long HOUR = 3600_000;
+    private static final long DAY = 24 * HOUR;
+    private static final String TIME_FIELD = "time";
+
+    private final TimeSlicedScanner slicedScanner = new TimeSlicedScanner(true, 4, DAY,
+            Executors.newFixedThreadPool(4));
+
+    /**
+     * Queries, which are passed to the fake store, along with the ranges they were constructed for.
+     */
+    private final Map<Query, GrafanaQueryRequest.Range> queryRanges = new ConcurrentHashMap<>();
+
+    /**
+     * Number of documents, which were read from the fake store and passed to the consumer, and the maximum number of
+     * documents, which were read but not consumed yet.
+     */
+    private final AtomicInteger pulled = new AtomicInteger();
+    private final AtomicInteger consumed = new AtomicInteger();
+    private final AtomicInteger maxPending = new AtomicInteger();
+
+    /**
+     * Query results, which were returned by the fake store.
+     */
+    private final List<QueryResult> queryResults = new CopyOnWriteArrayList<>();
+
+    private static GrafanaQueryRequest.Range range(long from, long to) {
+        GrafanaQueryRequest.Range range = new GrafanaQueryRequest.Range();
+        range.setFrom(new Date(from));
+        range.setTo(new Date(to));
+        return range;
+    }
+
+    /**
+     * Creates connection, which returns documents of the query range ordered by time, just like MapR-DB does.
+     */
+    private Connection connectionWithTimestamps(List<Long> timestamps) {
+
+        DocumentStore store = mock(DocumentStore.class);
+        when(store.findQuery(any(Query.class))).thenAnswer(invocation -> {
+
+            GrafanaQueryRequest.Range range = queryRanges.get((Query) invocation.getArguments()[0]);
+            List<Document> documents = timestamps.stream()
+                    .filter(ts -> ts >= range.getFrom().getTime() && ts <= range.getTo().getTime())
+                    .sorted()
+                    .map(ts -> FakeDocuments.document(TIME_FIELD, ts))
+                    .collect(Collectors.toList());
+
+            Document plan = FakeDocuments.document(TIME_FIELD, 0);
+            QueryResult result = mock(QueryResult.class);
+            when(result.iterator()).thenAnswer(i -> countingIterator(documents.iterator()));
+            when(result.getQueryPlan()).thenReturn(plan);
+            queryResults.add(result);
+            return result;
+        });
+
+        Connection connection = mock(Connection.class);
+        when(connection.getStore(anyString())).thenReturn(store);
+
+        return connection;
+    }
+
+    private Iterator<Document> countingIterator(Iterator<Document> documents) {
+        return new Iterator<Document>() {
+
+            @Override
+            public boolean hasNext() {
+                return documents.hasNext();
+            }
+
+            @Override
+            public Document next() {
+                int pending = pulled.incrementAndGet() - consumed.get();
+                maxPending.accumulateAndGet(pending, Math::max);
+                return documents.next();
+            }
+        };
+    }
+
+    private List<Long> scan(TimeSlicedScanner scanner, Connection connection, GrafanaQueryRequest.Range range,
+                            long limit) {
+
+        List<Long> scanned = new ArrayList<>();
+        scan(scanner, connection, range, limit, Long.MAX_VALUE, scanned);
+        return scanned;
+    }
+
+    private TimeSlicedScanner.ScanResult scan(TimeSlicedScanner scanner, Connection connection,
+                                              GrafanaQueryRequest.Range range, long limit, long deadline,
+                                              List<Long> scanned) {
+
+        return scan(scanner, connection, range, limit, deadline, false,
+                document -> scanned.add(document.getValue(TIME_FIELD).getLong()));
+    }
+
+    private TimeSlicedScanner.ScanResult scan(TimeSlicedScanner scanner, Connection connection,
+                                              GrafanaQueryRequest.Range range, long limit, long deadline,
+                                              boolean explain, Consumer<Document> consumer) {
+
+        Function<GrafanaQueryRequest.Range, Query> queryForRange = sliceRange -> {
+            Query query = mock(Query.class);
+            queryRanges.put(query, sliceRange);
+            return query;
+        };
+
+        return scanner.scan(connection, "/table", range, HOUR, TimeFieldType.LONG, limit, deadline, queryForRange,
+                explain, consumer);
+    }
+
+    @Test
+    public void slicesShouldBeContiguousDisjointAndAligned() {
+
+        List<GrafanaQueryRequest.Range> slices = slicedScanner.slice(range(0, 10 * DAY), HOUR, TimeFieldType.LONG);
+
+        assertEquals(4, slices.size());
+        assertEquals(0, slices.get(0).getFrom().getTime());
+        assertEquals(10 * DAY, slices.get(slices.size() - 1).getTo().getTime());
+        for (int i = 1; i < slices.size(); i++) {
+            assertEquals(slices.get(i - 1).getTo().getTime() + 1, slices.get(i).getFrom().getTime());
+            assertEquals(0, slices.get(i).getFrom().getTime() % HOUR);
+        }
+    }
+
+    @Test
+    public void rangeShouldNotBeSlicedForTypesWithCoarsePrecision() {
+        assertEquals(1, slicedScanner.slice(range(0, 10 * DAY), HOUR, TimeFieldType.DATE).size());
+        assertEquals(1, slicedScanner.slice(range(0, 10 * DAY), HOUR, TimeFieldType.UNKNOWN).size());
+    }
+
+    @Test
+    public void rangeWithoutEitherBoundShouldNotBeSliced() {
+
+        GrafanaQueryRequest.Range withoutFrom = range(0, 10 * DAY);
+        withoutFrom.setFrom(null);
+        assertEquals(Collections.singletonList(withoutFrom),
+                slicedScanner.slice(withoutFrom, HOUR, TimeFieldType.LONG));
+
+        GrafanaQueryRequest.Range withoutTo = range(0, 10 * DAY);
+        withoutTo.setTo(null);
+        assertEquals(Collections.singletonList(withoutTo), slicedScanner.slice(withoutTo, HOUR, TimeFieldType.LONG));
+    }
+
+    @Test
+    public void slicedScanShouldBeIdenticalToSequentialScan() {
+
+        List<Long> timestamps = new ArrayList<>();
+        for (long ts = 10 * DAY; ts >= 0; ts -= 7 * HOUR + 13) {
+            timestamps.add(ts);
+        }
+        timestamps.add(5 * DAY); // slice boundary
+        Connection connection = connectionWithTimestamps(timestamps);
+        GrafanaQueryRequest.Range range = range(0, 10 * DAY);
+
+        List<Long> sequential = scan(TimeSlicedScanner.sequential(), connection, range, Long.MAX_VALUE);
+        assertEquals(timestamps.size(), sequential.size());
+        assertEquals(sequential, scan(slicedScanner, connection, range, Long.MAX_VALUE));
+
+        List<Long> truncated = scan(slicedScanner, connection, range, 10);
+        assertEquals(sequential.subList(0, 10), truncated);
+    }
+
+    @Test
+    public void slicesRejectedBySaturatedExecutorShouldBeScannedInOrder() {
+
+        List<Long> timestamps = new ArrayList<>();
+        for (long ts = 0; ts < 10 * DAY; ts += DAY / 40) {
+            timestamps.add(ts);
+        }
+        Connection connection = connectionWithTimestamps(timestamps);
+
+        ExecutorService saturated = Executors.newSingleThreadExecutor();
+        saturated.shutdown();
+        TimeSlicedScanner scanner = new TimeSlicedScanner(true, 4, DAY, saturated);
+
+        assertEquals(timestamps, scan(scanner, connection, range(0, 10 * DAY), Long.MAX_VALUE));
+        assertEquals(timestamps.subList(0, 150), scan(scanner, connection, range(0, 10 * DAY), 150));
+    }
+
+    @Test
+    public void slicesAheadOfSlowConsumerShouldNotBufferMoreThanLimit() {
+
+        // Four slices of 100 documents each
+        List<Long> timestamps = new ArrayList<>();
+        for (long ts = 0; ts < 10 * DAY; ts += DAY / 40) {
+            timestamps.add(ts);
+        }
+        Connection connection = connectionWithTimestamps(timestamps);
+
+        long limit = 150;
+        List<Long> scanned = new ArrayList<>();
+        TimeSlicedScanner.ScanResult result = scan(slicedScanner, connection, range(0, 10 * DAY), limit,
+                Long.MAX_VALUE, false, document -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    scanned.add(document.getValue(TIME_FIELD).getLong());
+                    consumed.incrementAndGet();
+                });
+
+        assertEquals(timestamps.subList(0, (int) limit), scanned);
+        assertEquals(TimeSeriesMeta.DOCUMENT_LIMIT_REASON, result.getTruncationReason());
+
+        // Head slice is bounded by the limit, and the slices ahead of it share the buffer of the limit size. Each of
+        // the waiting slices may hold one more document
+        assertTrue("Pending documents: " + maxPending.get(), maxPending.get() <= 2 * limit + 4);
+    }
+
+    @Test
+    public void truncatedScanShouldReportReason() {
+
+        Connection connection = connectionWithTimestamps(Arrays.asList(HOUR, 3 * DAY, 6 * DAY, 9 * DAY));
+        GrafanaQueryRequest.Range range = range(0, 10 * DAY);
+
+        TimeSlicedScanner.ScanResult complete = scan(slicedScanner, connection, range, 4, Long.MAX_VALUE,
+                new ArrayList<>());
+        assertFalse(complete.isTruncated());
+        assertEquals(4, complete.getScanned());
+
+        TimeSlicedScanner.ScanResult byLimit = scan(slicedScanner, connection, range, 3, Long.MAX_VALUE,
+                new ArrayList<>());
+        assertEquals(TimeSeriesMeta.DOCUMENT_LIMIT_REASON, byLimit.getTruncationReason());
+        assertEquals(3, byLimit.getScanned());
+
+        TimeSlicedScanner.ScanResult byTime = scan(TimeSlicedScanner.sequential(), connection, range, 4, 0,
+                new ArrayList<>());
+        assertEquals(TimeSeriesMeta.TIME_LIMIT_REASON, byTime.getTruncationReason());
+        assertEquals(0, byTime.getScanned());
+    }
+
+    @Test
+    public void queryPlansShouldOnlyBeRequestedForExplainedScans() {
+
+        Connection connection = connectionWithTimestamps(Arrays.asList(HOUR, 3 * DAY, 6 * DAY, 9 * DAY));
+        GrafanaQueryRequest.Range range = range(0, 10 * DAY);
+
+        TimeSlicedScanner.ScanResult plain = scan(slicedScanner, connection, range, 4, Long.MAX_VALUE, false,
+                document -> {
+                });
+        assertTrue(plain.getQueryPlans().isEmpty());
+        queryResults.forEach(result -> verify(result, never()).getQueryPlan());
+
+        TimeSlicedScanner.ScanResult explained = scan(slicedScanner, connection, range, 4, Long.MAX_VALUE, true,
+                document -> {
+                });
+        assertEquals(4, explained.getQueryPlans().size());
+    }
+}
@@ -0,0 +1,118 @@
+package com.mapr.grafana.plugin.util;
+
+import org.junit.Test;
+import org.ojai.DocumentReader;
+import org.ojai.DocumentReader.EventType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DocumentReaderExtractorTest {
+
+    @Test
+    public void nestedFieldsShouldBeReadAndOtherContainersSkipped() {
+
+        FakeReader reader = new FakeReader()
+                .event(EventType.START_MAP, null, null)
+                .event(EventType.STRING, "text", "hello")
+                .event(EventType.START_MAP, "stats", null)
+                .event(EventType.START_ARRAY, "likes", null)
+                .event(EventType.LONG, null, 7L)
+                .event(EventType.END_ARRAY, null, null)
+                .event(EventType.START_MAP, "other", null)
+                .event(EventType.DOUBLE, "likes", 100.0)
+                .event(EventType.END_MAP, null, null)
+                .event(EventType.DOUBLE, "likes", 12.5)
+                .event(EventType.END_MAP, null, null)
+                .event(EventType.LONG, "time", 1000L)
+                .event(EventType.END_MAP, null, null);
+
+        DocumentReaderExtractor extractor = new DocumentReaderExtractor("time", "stats.likes");
+
+        assertTrue(extractor.read(reader.build()));
+        assertEquals(1000, extractor.getTimestamp());
+        assertEquals(12.5, extractor.getValue(), 0);
+        assertEquals(reader.size(), reader.consumed());
+    }
+
+    @Test
+    public void documentWithoutMetricShouldBeReportedAsInvalid() {
+
+        FakeReader reader = new FakeReader()
+                .event(EventType.START_MAP, null, null)
+                .event(EventType.STRING, "time", "2000")
+                .event(EventType.STRING, "likes", "many")
+                .event(EventType.END_MAP, null, null);
+
+        DocumentReaderExtractor extractor = new DocumentReaderExtractor("time", "likes");
+
+        assertFalse(extractor.read(reader.build()));
+        assertEquals(2000, extractor.getTimestamp());
+        assertTrue(Double.isNaN(extractor.getValue()));
+    }
+
+    @Test
+    public void onlyTimeShouldBeRequiredWithoutMetricField() {
+
+        FakeReader reader = new FakeReader()
+                .event(EventType.START_MAP, null, null)
+                .event(EventType.LONG, "time", 3000L)
+                .event(EventType.END_MAP, null, null);
+
+        DocumentReaderExtractor extractor = new DocumentReaderExtractor("time", null);
+
+        assertTrue(extractor.read(reader.build()));
+        assertEquals(3000, extractor.getTimestamp());
+    }
+
+    @Test
+    public void onlySimpleFieldPathsShouldBeSupported() {
+        assertTrue(DocumentReaderExtractor.supports("user.stats.likes"));
+        assertFalse(DocumentReaderExtractor.supports("tags[0]"));
+        assertFalse(DocumentReaderExtractor.supports("`a.b`.c"));
+        assertFalse(DocumentReaderExtractor.supports("a..b"));
+    }
+
+    /**
+     * Replays the list of events, so each getter returns the value of the current event.
+     */
+    private static class FakeReader {
+
+        private final List<Object[]> events = new ArrayList<>();
+        private int position = -1;
+
+        FakeReader event(EventType type, String fieldName, Object value) {
+            events.add(new Object[]{type, fieldName, value});
+            return this;
+        }
+
+        int size() {
+            return events.size();
+        }
+
+        int consumed() {
+            return position + 1;
+        }
+
+        DocumentReader build() {
+
+            DocumentReader reader = mock(DocumentReader.class);
+            when(reader.next()).thenAnswer(invocation -> {
+                position++;
+                return (position < events.size()) ? events.get(position)[0] : null;
+            });
+            when(reader.getFieldName()).thenAnswer(invocation -> events.get(position)[1]);
+            when(reader.getLong()).thenAnswer(invocation -> events.get(position)[2]);
+            when(reader.getDouble()).thenAnswer(invocation -> events.get(position)[2]);
+            when(reader.getString()).thenAnswer(invocation -> events.get(position)[2]);
+
+            return reader;
+        }
+    }
+}
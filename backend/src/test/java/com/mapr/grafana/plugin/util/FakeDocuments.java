@@ -0,0 +1,63 @@
+package com.mapr.grafana.plugin.util;
+
+import org.ojai.Document;
+import org.ojai.FieldPath;
+import org.ojai.Value;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds fake OJAI {@link Document} instances, which contain epoch millis time field and optional numeric or string
+ * field.
+ */
+public final class FakeDocuments {
+
+    private FakeDocuments() {
+    }
+
+    public static Document document(String timeField, long timestamp) {
+        return withTime(mock(Document.class), timeField, timestamp);
+    }
+
+    public static Document document(String timeField, long timestamp, double metricValue) {
+
+        Value metric = mock(Value.class);
+        when(metric.getType()).thenReturn(Value.Type.DOUBLE);
+        when(metric.getObject()).thenReturn(metricValue);
+        when(metric.getDouble()).thenReturn(metricValue);
+
+        // Metric is returned for any field path except the time field, which is stubbed afterwards
+        Document document = mock(Document.class);
+        when(document.getValue(any(FieldPath.class))).thenReturn(metric);
+
+        return withTime(document, timeField, timestamp);
+    }
+
+    public static Document document(String timeField, long timestamp, String field, String value) {
+
+        Value string = mock(Value.class);
+        when(string.getType()).thenReturn(Value.Type.STRING);
+        when(string.getObject()).thenReturn(value);
+        when(string.getString()).thenReturn(value);
+
+        Document document = mock(Document.class);
+        when(document.getValue(FieldPath.parseFrom(field))).thenReturn(string);
+
+        return withTime(document, timeField, timestamp);
+    }
+
+    private static Document withTime(Document document, String timeField, long timestamp) {
+
+        Value time = mock(Value.class);
+        when(time.getType()).thenReturn(Value.Type.LONG);
+        when(time.getObject()).thenReturn(timestamp);
+        when(time.getLong()).thenReturn(timestamp);
+
+        when(document.getValue(timeField)).thenReturn(time);
+        when(document.getValue(FieldPath.parseFrom(timeField))).thenReturn(time);
+
+        return document;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mapr.grafana.plugin.util;
+
+import org.ojai.Document;
+import org.ojai.store.Connection;
+import org.ojai.store.DocumentStore;
+import org.ojai.store.Query;
+import org.ojai.store.QueryCondition;
+import org.ojai.store.QueryResult;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds fake OJAI {@link Connection}, which does not require MapR cluster. Every store of the connection returns the
+ * same documents for any query after the configured scan delay.
+ */
+public class FakeOjaiConnection {
+
+    /**
+     * Answer for fluent OJAI interfaces such as {@link Query} and {@link QueryCondition}: methods, which return
+     * instance of mocked type, return the mock itself.
+     */
+    private static final Answer<Object> RETURNS_SELF = invocation ->
+            invocation.getMethod().getReturnType().isInstance(invocation.getMock()) ? invocation.getMock() : null;
+
+    private final List<Document> documents = new ArrayList<>();
+    private final AtomicInteger scans = new AtomicInteger();
+    private volatile String lastScanThread;
+    private long scanDelayMs;
+
+    public FakeOjaiConnection withDocuments(List<Document> documents) {
+        this.documents.addAll(documents);
+        return this;
+    }
+
+    public FakeOjaiConnection withScanDelayMs(long scanDelayMs) {
+        this.scanDelayMs = scanDelayMs;
+        return this;
+    }
+
+    public int getScans() {
+        return scans.get();
+    }
+
+    /**
+     * Returns name of the thread, which performed the last scan.
+     */
+    public String getLastScanThread() {
+        return lastScanThread;
+    }
+
+    public Connection build() {
+
+        Connection connection = mock(Connection.class);
+        when(connection.newQuery()).thenAnswer(invocation -> mock(Query.class, RETURNS_SELF));
+        when(connection.newCondition()).thenAnswer(invocation -> mock(QueryCondition.class, RETURNS_SELF));
+
+        DocumentStore store = mock(DocumentStore.class);
+        when(store.findQuery(any(Query.class))).thenAnswer(invocation -> {
+
+            scans.incrementAndGet();
+            lastScanThread = Thread.currentThread().getName();
+            if (scanDelayMs > 0) {
+                Thread.sleep(scanDelayMs);
+            }
+
+            List<Document> snapshot = Collections.unmodifiableList(new ArrayList<>(documents));
+            QueryResult result = mock(QueryResult.class);
+            when(result.iterator()).thenAnswer(i -> snapshot.iterator());
+
+            return result;
+        });
+        when(connection.getStore(anyString())).thenReturn(store);
+
+        return connection;
+    }
+
+}
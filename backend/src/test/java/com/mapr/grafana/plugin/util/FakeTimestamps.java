@@ -0,0 +1,17 @@
+package com.mapr.grafana.plugin.util;
+
+/**
+ * Timestamps of the fake documents, which are shared by the time series tests.
+ */
+public final class FakeTimestamps {
+
+    public static final long MINUTE = 60 * 1000L;
+
+    /**
+     * Start of the test data, which is aligned to the minute, but not to the epoch multiples of the larger intervals.
+     */
+    public static final long START = 25_000_000L * MINUTE;
+
+    private FakeTimestamps() {
+    }
+}
@@ -0,0 +1,87 @@
+package com.mapr.grafana.plugin.util;
+
+import org.junit.Test;
+import org.ojai.Value;
+import org.ojai.types.OTimestamp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FieldExtractorTest {
+
+    @Test
+    public void numbersOfDifferentTypesShouldBeConverted() {
+
+        FieldExtractor extractor = FieldExtractor.of("likes");
+
+        assertEquals(1.5, extractor.doubleValue(value(Value.Type.DOUBLE, 1.5)), 0);
+        assertEquals(2.5, extractor.doubleValue(value(Value.Type.DOUBLE, 2.5)), 0);
+        assertEquals(3, extractor.doubleValue(value(Value.Type.INT, 3)), 0);
+        assertEquals(4.25, extractor.doubleValue(value(Value.Type.STRING, "4.25")), 0);
+        assertEquals(5, extractor.doubleValue(value(Value.Type.LONG, 5L)), 0);
+    }
+
+    @Test
+    public void invalidNumbersShouldBeReportedAsNaN() {
+
+        FieldExtractor extractor = FieldExtractor.of("likes");
+
+        assertTrue(Double.isNaN(extractor.doubleValue((Value) null)));
+        assertTrue(Double.isNaN(extractor.doubleValue(value(Value.Type.STRING, "many"))));
+        assertTrue(Double.isNaN(extractor.doubleValue(value(Value.Type.MAP, null))));
+        assertEquals(1, extractor.doubleValue(value(Value.Type.STRING, "1")), 0);
+    }
+
+    @Test
+    public void timestampsOfDifferentTypesShouldBeConverted() {
+
+        FieldExtractor extractor = FieldExtractor.of("created_at");
+
+        Value timestamp = value(Value.Type.TIMESTAMP, new OTimestamp(1000));
+        when(timestamp.getTimestampAsLong()).thenReturn(1000L);
+
+        assertEquals(1000, extractor.timestamp(timestamp));
+        assertEquals(2000, extractor.timestamp(value(Value.Type.LONG, 2000L)));
+        assertEquals(3000, extractor.timestamp(value(Value.Type.STRING, "3000")));
+        assertEquals(FieldExtractor.MISSING_TIMESTAMP, extractor.timestamp(value(Value.Type.STRING, "yesterday")));
+        assertEquals(FieldExtractor.MISSING_TIMESTAMP, extractor.timestamp(value(Value.Type.BOOLEAN, true)));
+        assertEquals(FieldExtractor.MISSING_TIMESTAMP, extractor.timestamp((Value) null));
+    }
+
+    @Test
+    public void equalNumbersOfDifferentTypesShouldHaveSameHash() {
+
+        long hash = FieldExtractor.hash(value(Value.Type.INT, 5));
+
+        assertEquals(hash, FieldExtractor.hash(value(Value.Type.LONG, 5L)));
+        assertEquals(hash, FieldExtractor.hash(value(Value.Type.DOUBLE, 5.0)));
+        assertNotEquals(hash, FieldExtractor.hash(value(Value.Type.STRING, "5")));
+        assertNotEquals(FieldExtractor.hash(value(Value.Type.STRING, "ab")),
+                FieldExtractor.hash(value(Value.Type.STRING, "ba")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyFieldPathShouldBeRejected() {
+        FieldExtractor.of("");
+    }
+
+    private static Value value(Value.Type type, Object object) {
+
+        Value value = mock(Value.class);
+        when(value.getType()).thenReturn(type);
+        when(value.getObject()).thenReturn(object);
+        if (object instanceof Number) {
+            Number number = (Number) object;
+            when(value.getDouble()).thenReturn(number.doubleValue());
+            when(value.getInt()).thenReturn(number.intValue());
+            when(value.getLong()).thenReturn(number.longValue());
+        } else if (object instanceof String) {
+            when(value.getString()).thenReturn((String) object);
+        }
+
+        return value;
+    }
+}
@@ -164,6 +164,10 @@ public class GrafanaTestQueryRequestBuilder {
         return new TargetBuilder(GrafanaQueryTarget.TIME_SERIES_TYPE);
     }
 
+    public TargetBuilder withTopValuesTarget() {
+        return new TargetBuilder(GrafanaQueryTarget.TOP_VALUES_TYPE);
+    }
+
     public GrafanaQueryRequest build() {
         return request;
     }
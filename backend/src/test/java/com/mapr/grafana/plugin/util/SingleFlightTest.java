@@ -0,0 +1,130 @@
+package com.mapr.grafana.plugin.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallsOfTheSameKeyShouldShareComputation() throws Exception {
+
+        int callers = 10;
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(Executors.newCachedThreadPool());
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                computations.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 42;
+            })));
+        }
+
+        while (singleFlight.getExecuted() + singleFlight.getCoalesced() < callers) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        for (Future<Integer> result : results) {
+            assertEquals(Integer.valueOf(42), result.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, computations.get());
+        assertEquals(1, singleFlight.getExecuted());
+        assertEquals(callers - 1, singleFlight.getCoalesced());
+        assertEquals(0, singleFlight.getInFlight());
+        executor.shutdown();
+    }
+
+    @Test
+    public void completedComputationsShouldNotBeRetained() {
+
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(Executors.newCachedThreadPool());
+        AtomicInteger computations = new AtomicInteger();
+
+        singleFlight.execute("key", computations::incrementAndGet);
+        singleFlight.execute("key", computations::incrementAndGet);
+
+        assertEquals(2, computations.get());
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    @Test
+    public void detachedCallerShouldNotFailOtherCallers() throws Exception {
+
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(Executors.newCachedThreadPool());
+        AtomicInteger interruptions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interruptions.incrementAndGet();
+                    throw new IllegalStateException(e);
+                }
+                return 42;
+            })));
+        }
+
+        while (singleFlight.getExecuted() + singleFlight.getCoalesced() < 2) {
+            Thread.sleep(10);
+        }
+
+        // Caller, which started the computation, exceeds its timeout first
+        results.get(0).cancel(true);
+        Thread.sleep(50);
+        release.countDown();
+
+        assertEquals(Integer.valueOf(42), results.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals(0, interruptions.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void computationShouldBeCancelledOnceAllCallersAreDetached() throws Exception {
+
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(Executors.newCachedThreadPool());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> result = executor.submit(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 42;
+        }));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        result.cancel(true);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, singleFlight.getInFlight());
+        executor.shutdown();
+    }
+}
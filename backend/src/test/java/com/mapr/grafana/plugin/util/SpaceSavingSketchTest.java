@@ -0,0 +1,68 @@
+package com.mapr.grafana.plugin.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpaceSavingSketchTest {
+
+    @Test
+    public void countsShouldBeExactWhileAllValuesAreMonitored() {
+
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+        for (String value : new String[]{"b", "a", "c", "a", "b", "a"}) {
+            sketch.add(value);
+        }
+
+        List<SpaceSavingSketch.Counter> top = sketch.top(2);
+        assertEquals(2, top.size());
+        assertCounter("a", 3, 0, top.get(0));
+        assertCounter("b", 2, 0, top.get(1));
+        assertEquals(6, sketch.getTotal());
+    }
+
+    /**
+     * Zipf-like stream of many more distinct values than the counters, so values are evicted all the time.
+     */
+    @Test
+    public void trueCountsShouldBeWithinErrorBoundsOfTopValues() {
+
+        int capacity = 100;
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+        Map<String, Long> trueCounts = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String value = "tag" + (int) Math.pow(10_000, random.nextDouble());
+            sketch.add(value);
+            trueCounts.merge(value, 1L, Long::sum);
+        }
+
+        List<SpaceSavingSketch.Counter> top = sketch.top(10);
+        for (SpaceSavingSketch.Counter counter : top) {
+            long trueCount = trueCounts.get(counter.getValue());
+            assertTrue(counter.toString(), counter.getCount() - counter.getError() <= trueCount);
+            assertTrue(counter.toString(), trueCount <= counter.getCount());
+            assertTrue(counter.toString(), counter.getError() <= sketch.getTotal() / capacity);
+        }
+
+        // Values of the stream are skewed, so the most frequent one is known exactly
+        assertCounter("tag1", trueCounts.get("tag1"), 0, top.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveCapacityShouldBeRejected() {
+        new SpaceSavingSketch(0);
+    }
+
+    private static void assertCounter(String value, long count, long error, SpaceSavingSketch.Counter counter) {
+        assertEquals(value, counter.getValue());
+        assertEquals(count, counter.getCount());
+        assertEquals(error, counter.getError());
+    }
+}
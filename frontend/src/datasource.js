@@ -24,6 +24,15 @@ export class MapRDBJSONTableDatasource {
       return this.q.when({data: []});
     }
 
+    // Histogram bins are named by their numeric bounds, which Grafana heatmap reads, so bins of several histograms
+    // of the panel would collide
+    var histograms = query.targets.filter(t => t.type === 'Timeseries' && t.metric === 'Field histogram');
+    if (histograms.length > 1) {
+      return this.q.reject({
+        message: 'Only one histogram per panel is supported, found targets ' + _.map(histograms, 'refId').join(', ')
+      });
+    }
+
     return this.doRequest({
       url: this.url + '/query',
       data: query,
@@ -113,7 +122,18 @@ export class MapRDBJSONTableDatasource {
         timeField: target.timeField,
         selectFields: (target.selectFields) ? target.selectFields.split(',').map(str => str.trim()) : [],
         metricField: target.metricField,
-        metric: target.metric
+        metric: target.metric,
+        indexHint: target.indexHint,
+        explain: target.explain || false,
+        downsampling: target.downsampling || 'None',
+        percentile: target.percentile,
+        groupBy: target.groupBy,
+        groupLimit: target.groupLimit,
+        topK: target.topK,
+        histogramScale: target.histogramScale || 'Linear',
+        histogramBins: target.histogramBins,
+        histogramMin: target.histogramMin,
+        histogramMax: target.histogramMax
       };
     });
 
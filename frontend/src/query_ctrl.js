@@ -1,6 +1,11 @@
 import {QueryCtrl} from 'app/plugins/sdk';
 import './css/query-editor.css!'
 
+// Metrics, which can not be grouped by the backend: percentiles and distinct counts keep large state per bucket,
+// while histograms and downsampled values are not aggregated per group
+const UNGROUPED_METRICS = ['Field p50', 'Field p95', 'Field p99', 'Field percentile', 'Field distinct count',
+  'Field histogram'];
+
 export class MapRDBJSONTableDatasourceQueryCtrl extends QueryCtrl {
 
 
@@ -39,6 +44,11 @@ export class MapRDBJSONTableDatasourceQueryCtrl extends QueryCtrl {
     return this.datasource.metricFindQuery(query || '');
   }
 
+  isGroupable() {
+    return this.target.type === 'Timeseries' && UNGROUPED_METRICS.indexOf(this.target.metric) < 0 &&
+      !(this.target.metric === 'Field value' && this.target.downsampling === 'LTTB');
+  }
+
   toggleEditorMode() {
     this.target.rawQuery = !this.target.rawQuery;
   }